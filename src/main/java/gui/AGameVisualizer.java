@@ -4,15 +4,149 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Абстрактный класс для визуализаторов игры с роботом.
+ * <p>
+ * Изменения положения робота не перерисовывают панель сразу: они передаются в {@link RenderScheduler},
+ * который не чаще раза за кадр вызывает {@link #renderFrame()}. Кадр запоминает положение робота
+ * и перерисовывает только объединение старых и новых границ робота и точки клика.
+ * </p>
+ * <p>
+ * Положение робота в кадре интерполируется между двумя последними шагами моделирования
+ * с отставанием на один шаг, поэтому движение остается плавным и при редких шагах модели.
+ * Пока интерполяция не дошла до последнего шага, кадры запрашиваются непрерывно.
+ * </p>
+ * <p>
+ * Поле отображается через камеру: колесо мыши меняет масштаб вокруг курсора, перетаскивание
+ * сдвигает поле. После вызова {@code super.paintComponent} графический контекст уже переведен
+ * в координаты поля, поэтому наследники рисуют робота в координатах модели. Клики переводятся
+ * в координаты поля до передачи в {@link #handleMouseClick(Point)}.
+ * </p>
+ * <p>
+ * Отрисовка разделена на слои. Статический слой (фон и все, что рисует {@link #paintStaticLayer})
+ * растеризуется плитками, привязанными к полю, и затем только копируется, так что прокрутка
+ * не перерисовывает его целиком. Плитки перестраиваются при смене масштаба экрана или внешнего вида
+ * и явном вызове {@link #invalidateStaticLayer()}. Динамические слои (робот, точка клика) рисуются
+ * поверх каждый кадр.
+ * </p>
+ * <p>
+ * Если модель ведет след робота, его можно показать под роботом. Контур следа дополняется
+ * только новыми отрезками, и перерисовывается лишь занятая ими область.
+ * </p>
  */
 public abstract class AGameVisualizer extends JPanel implements RobotModelListener {
 
+    /**
+     * Размер маркера точки клика.
+     */
+    private static final int CLICK_MARKER_SIZE = 10;
+
+    /**
+     * Размер плитки статического слоя в пикселях панели.
+     */
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * Наибольшее число плиток статического слоя в кэше.
+     */
+    private static final int MAX_CACHED_TILES = 128;
+
+    /**
+     * Число уровней масштаба на каждое удвоение.
+     */
+    private static final int ZOOM_LEVELS_PER_DOUBLING = 4;
+
+    /**
+     * Наименьший уровень масштаба: склад 20000 x 20000 помещается примерно в 160 пикселей.
+     */
+    private static final int MIN_ZOOM_LEVEL = -7 * ZOOM_LEVELS_PER_DOUBLING;
+
+    /**
+     * Наибольший уровень масштаба.
+     */
+    private static final int MAX_ZOOM_LEVEL = 3 * ZOOM_LEVELS_PER_DOUBLING;
+
+    /**
+     * Цвет следа робота.
+     */
+    private static final Color TRAIL_COLOR = new Color(0, 90, 200, 160);
+
+    /**
+     * Линия следа робота в единицах поля.
+     */
+    private static final BasicStroke TRAIL_STROKE = new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
     protected IRobotModel robotModel;
     protected Point clickPoint;
 
+    /**
+     * Планировщик кадров этого визуализатора.
+     */
+    protected final RenderScheduler renderScheduler;
+
+    /**
+     * Координата X робота, зафиксированная в последнем кадре.
+     */
+    protected double robotX;
+
+    /**
+     * Координата Y робота, зафиксированная в последнем кадре.
+     */
+    protected double robotY;
+
+    /**
+     * Направление робота, зафиксированное в последнем кадре.
+     */
+    protected double robotDirection;
+
+    /**
+     * Точка клика, нарисованная в последнем кадре.
+     */
+    private Point paintedClickPoint;
+
+    /**
+     * Кэш плиток статического слоя. Может быть null, пока конструктор JPanel вызывает {@link #updateUI()}.
+     */
+    private final StaticTileCache tileCache = new StaticTileCache(TILE_SIZE, MAX_CACHED_TILES, this::paintStaticLayer);
+
+    /**
+     * Текущий уровень масштаба: масштаб равен 2 в степени zoomLevel / ZOOM_LEVELS_PER_DOUBLING.
+     */
+    private int zoomLevel;
+
+    /**
+     * Текущий масштаб: число пикселей панели на единицу поля.
+     */
+    private double zoom = 1;
+
+    /**
+     * Координата X поля в левом верхнем углу панели.
+     */
+    private double panX;
+
+    /**
+     * Координата Y поля в левом верхнем углу панели.
+     */
+    private double panY;
+
+    /**
+     * Последняя точка перетаскивания в координатах панели.
+     */
+    private Point dragPoint;
+
+    /**
+     * Показывается ли след робота.
+     */
+    private boolean trailVisible;
+
+    /**
+     * Контур следа робота, построенный этим визуализатором.
+     */
+    private final RobotTrail.View trailView = new RobotTrail.View();
+
     /**
      * Конструктор класса AGameVisualizer.
      *
@@ -20,16 +154,45 @@ public abstract class AGameVisualizer extends JPanel implements RobotModelListen
      */
     public AGameVisualizer(IRobotModel robotModel) {
         this.robotModel = robotModel;
+        this.renderScheduler = new RenderScheduler(this);
         setDoubleBuffered(true);
         setFocusable(true);
+        capturePose(System.nanoTime());
 
-        addMouseListener(new MouseAdapter() {
+        MouseAdapter mouseHandler = new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                clickPoint = e.getPoint();
+                clickPoint = screenToWorld(e.getPoint());
                 handleMouseClick(clickPoint);
+                renderScheduler.requestFrame();
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragPoint = e.getPoint();
             }
-        });
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragPoint != null) {
+                    panBy(dragPoint.x - e.getX(), dragPoint.y - e.getY());
+                }
+                dragPoint = e.getPoint();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragPoint = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                setZoomLevel(zoomLevel - e.getWheelRotation(), e.getPoint());
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+        addMouseWheelListener(mouseHandler);
 
         robotModel.addListener(this);
     }
@@ -38,7 +201,7 @@ public abstract class AGameVisualizer extends JPanel implements RobotModelListen
     /**
      * Обрабатывает событие клика мыши и перемещает робота в указанное место.
      *
-     * @param point Точка клика.
+     * @param point Точка клика в координатах поля.
      */
     protected void handleMouseClick(Point point) {
         int x = point.x;
@@ -47,22 +210,295 @@ public abstract class AGameVisualizer extends JPanel implements RobotModelListen
     }
 
 
+    /**
+     * Переводит точку панели в координаты поля.
+     *
+     * @param point Точка в координатах панели.
+     * @return Ближайшая точка поля.
+     */
+    public Point screenToWorld(Point point) {
+        return new Point((int) Math.round(panX + point.x / zoom), (int) Math.round(panY + point.y / zoom));
+    }
+
+
+    /**
+     * Переводит прямоугольник поля в область панели, которую он занимает.
+     *
+     * @param area Прямоугольник в координатах поля.
+     * @return Область панели, округленная наружу до целых пикселей.
+     */
+    protected Rectangle worldToScreen(Rectangle2D area) {
+        int left = (int) Math.floor((area.getMinX() - panX) * zoom);
+        int top = (int) Math.floor((area.getMinY() - panY) * zoom);
+        int right = (int) Math.ceil((area.getMaxX() - panX) * zoom);
+        int bottom = (int) Math.ceil((area.getMaxY() - panY) * zoom);
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+
+    /**
+     * Возвращает видимую часть поля.
+     *
+     * @return Видимая область панели в координатах поля.
+     */
+    protected Rectangle getVisibleWorldBounds() {
+        Rectangle visible = getVisibleRect();
+        Point topLeft = screenToWorld(visible.getLocation());
+        Point bottomRight = screenToWorld(new Point(visible.x + visible.width, visible.y + visible.height));
+        return new Rectangle(topLeft.x, topLeft.y, bottomRight.x - topLeft.x + 1, bottomRight.y - topLeft.y + 1);
+    }
+
+
+    /**
+     * Возвращает уровень масштаба: масштаб удваивается через каждые четыре уровня.
+     *
+     * @return Уровень масштаба.
+     */
+    public int getZoomLevel() {
+        return zoomLevel;
+    }
+
+
+    /**
+     * Устанавливает уровень масштаба так, чтобы точка поля под заданной точкой панели осталась на месте.
+     *
+     * @param level  Новый уровень масштаба; приводится к допустимому диапазону.
+     * @param anchor Неподвижная точка в координатах панели.
+     */
+    public void setZoomLevel(int level, Point anchor) {
+        level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, level));
+        if (level == zoomLevel) {
+            return;
+        }
+        double anchorX = panX + anchor.x / zoom;
+        double anchorY = panY + anchor.y / zoom;
+        zoomLevel = level;
+        zoom = Math.pow(2, (double) level / ZOOM_LEVELS_PER_DOUBLING);
+        panX = anchorX - anchor.x / zoom;
+        panY = anchorY - anchor.y / zoom;
+        repaint();
+    }
+
+
+    /**
+     * Сдвигает поле на заданное число пикселей панели. Статический слой при этом
+     * не перерисовывается: копируются готовые плитки и строятся только открывшиеся.
+     *
+     * @param dx Сдвиг по горизонтали в пикселях панели.
+     * @param dy Сдвиг по вертикали в пикселях панели.
+     */
+    public void panBy(int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        panX += dx / zoom;
+        panY += dy / zoom;
+        repaint();
+    }
+
+
+    /**
+     * Показывает или скрывает след робота. Модель записывает след, только пока он показывается.
+     *
+     * @param visible true, чтобы показывать след.
+     */
+    public void setTrailVisible(boolean visible) {
+        robotModel.setTrailEnabled(visible);
+        trailVisible = visible;
+        renderScheduler.requestFrame();
+        repaint();
+    }
+
+
+    /**
+     * Возвращает, показывается ли след робота.
+     *
+     * @return true, если след показывается.
+     */
+    public boolean isTrailVisible() {
+        return trailVisible;
+    }
+
+
+    /**
+     * Запоминает положение робота для отрисовки кадра, интерполируя его между двумя последними
+     * шагами моделирования. Кадр отстает от модели на один шаг, чтобы всегда было между чем интерполировать.
+     *
+     * @param nowNanos Время кадра по {@link System#nanoTime()}.
+     * @return true, если робот двигался на последнем шаге и кадр еще не дошел до этого шага.
+     */
+    private boolean capturePose(long nowNanos) {
+        RobotPose current = robotModel.getCurrentPose();
+        RobotPose previous = robotModel.getPreviousPose();
+        long renderTime = nowNanos - (current.getTimeNanos() - previous.getTimeNanos());
+        RobotPose pose = RobotPose.interpolate(previous, current, renderTime);
+        robotX = pose.getX();
+        robotY = pose.getY();
+        robotDirection = pose.getDirection();
+        boolean moving = previous.getX() != current.getX() || previous.getY() != current.getY()
+                || previous.getDirection() != current.getDirection();
+        return moving && renderTime < current.getTimeNanos();
+    }
+
+
+    /**
+     * Готовит новый кадр: фиксирует положение робота и перерисовывает изменившуюся область.
+     * Вызывается планировщиком кадров в потоке обработки событий.
+     */
+    protected void renderFrame() {
+        Rectangle oldBounds = getRobotBounds(robotX, robotY, robotDirection);
+        if (capturePose(System.nanoTime())) {
+            renderScheduler.requestFrame();
+        }
+        Rectangle newBounds = getRobotBounds(robotX, robotY, robotDirection);
+        Rectangle2D trailBounds = null;
+        boolean trailRebuilt = false;
+        RobotTrail trail = robotModel.getTrail();
+        if (trailVisible && trail != null && trail.update(trailView)) {
+            trailBounds = trailView.getChangedBounds();
+            trailRebuilt = trailBounds == null;
+        }
+        if (oldBounds == null || newBounds == null || trailRebuilt) {
+            repaint();
+            paintedClickPoint = clickPoint;
+            return;
+        }
+
+        Rectangle dirty = oldBounds.union(newBounds);
+        if (clickPoint != paintedClickPoint) {
+            if (paintedClickPoint != null) {
+                dirty = dirty.union(getClickMarkerBounds(paintedClickPoint));
+            }
+            if (clickPoint != null) {
+                dirty = dirty.union(getClickMarkerBounds(clickPoint));
+            }
+            paintedClickPoint = clickPoint;
+        }
+        if (trailBounds != null) {
+            Rectangle segments = trailBounds.getBounds();
+            int margin = (int) Math.ceil(TRAIL_STROKE.getLineWidth());
+            segments.grow(margin, margin);
+            dirty = dirty.union(segments);
+        }
+        Rectangle screenDirty = worldToScreen(dirty);
+        screenDirty.grow(1, 1);
+        repaint(screenDirty);
+    }
+
+
+    /**
+     * Возвращает область поля, которую занимает робот в заданном положении.
+     * Реализация по умолчанию возвращает null: границы неизвестны, и кадр перерисовывает всю панель.
+     *
+     * @param x         Координата X робота.
+     * @param y         Координата Y робота.
+     * @param direction Направление робота в радианах.
+     * @return Границы робота или null, если они неизвестны.
+     */
+    protected Rectangle getRobotBounds(double x, double y, double direction) {
+        return null;
+    }
+
+
+    /**
+     * Возвращает масштаб отображения игрового поля: сколько пикселей панели приходится на единицу поля.
+     *
+     * @return Масштаб отображения.
+     */
+    protected double getZoom() {
+        return zoom;
+    }
+
+
+    /**
+     * Возвращает область поля, которую занимает маркер точки клика.
+     *
+     * @param point Точка клика в координатах поля.
+     * @return Границы маркера с запасом на сглаживание.
+     */
+    private Rectangle getClickMarkerBounds(Point point) {
+        int half = CLICK_MARKER_SIZE / 2 + 1;
+        return new Rectangle(point.x - half, point.y - half, 2 * half, 2 * half);
+    }
+
+
+    /**
+     * Рисует компонент и учитывает время отрисовки в статистике планировщика кадров.
+     *
+     * @param g Графический контекст для отрисовки.
+     */
+    @Override
+    public void paint(Graphics g) {
+        long start = System.nanoTime();
+        super.paint(g);
+        renderScheduler.framePainted(System.nanoTime() - start);
+    }
+
+
     /**
      * Перерисовывает компонент с учетом текущего состояния робота и точки клика мышью.
+     * Вместо очистки фона копирует плитки статического слоя, затем переводит графический
+     * контекст в координаты поля.
      *
      * @param g Графический контекст для отрисовки.
      */
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
+        tileCache.draw(g2d, zoomLevel, zoom, panX, panY, getWidth(), getHeight());
+        g2d.scale(zoom, zoom);
+        g2d.translate(-panX, -panY);
+
+        if (trailVisible && robotModel.getTrail() != null) {
+            Stroke stroke = g2d.getStroke();
+            g2d.setColor(TRAIL_COLOR);
+            g2d.setStroke(TRAIL_STROKE);
+            g2d.draw(trailView.getPath());
+            g2d.setStroke(stroke);
+        }
 
         if (clickPoint != null) {
             g2d.setColor(Color.BLACK);
-            g2d.fillOval(clickPoint.x - 5, clickPoint.y - 5, 10, 10);
+            g2d.fillOval(clickPoint.x - CLICK_MARKER_SIZE / 2, clickPoint.y - CLICK_MARKER_SIZE / 2,
+                    CLICK_MARKER_SIZE, CLICK_MARKER_SIZE);
+        }
+    }
+
+    /**
+     * Рисует статическое содержимое участка поля: то, что не меняется от кадра к кадру.
+     * Реализация по умолчанию заливает участок цветом фона. Наследники могут дорисовать
+     * сетку, препятствия и другие неподвижные объекты.
+     *
+     * @param g         Графический контекст плитки, переведенный в координаты поля.
+     * @param worldArea Участок поля, который нужно нарисовать.
+     */
+    protected void paintStaticLayer(Graphics2D g, Rectangle2D worldArea) {
+        g.setColor(getBackground());
+        g.fill(worldArea);
+    }
+
+
+    /**
+     * Помечает статический слой устаревшим. Вызывается, когда меняется статическое содержимое.
+     */
+    protected void invalidateStaticLayer() {
+        tileCache.invalidate();
+        repaint();
+    }
+
+
+    /**
+     * Обновляет внешний вид компонента и сбрасывает плитки статического слоя, так как мог измениться цвет фона.
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        if (tileCache != null) {
+            tileCache.invalidate();
         }
     }
 
+
     /**
      * Заполняет овал указанным цветом.
      *
@@ -87,6 +523,7 @@ public abstract class AGameVisualizer extends JPanel implements RobotModelListen
 
     /**
      * Обновляет координаты робота при изменении их моделью.
+     * Перерисовка откладывается до ближайшего кадра.
      *
      * @param x         Координата X робота.
      * @param y         Координата Y робота.
@@ -94,6 +531,26 @@ public abstract class AGameVisualizer extends JPanel implements RobotModelListen
      */
     @Override
     public void onRobotPositionChanged(double x, double y, double direction) {
-        repaint();
+        renderScheduler.requestFrame();
+    }
+
+
+    /**
+     * Возвращает число кадров в секунду за последнюю секунду.
+     *
+     * @return Число кадров в секунду.
+     */
+    public double getFramesPerSecond() {
+        return renderScheduler.getFramesPerSecond();
+    }
+
+
+    /**
+     * Возвращает среднее время отрисовки кадра за последнюю секунду.
+     *
+     * @return Среднее время отрисовки в миллисекундах.
+     */
+    public double getAveragePaintMillis() {
+        return renderScheduler.getAveragePaintMillis();
     }
 }
@@ -1,12 +1,40 @@
 package gui;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
 
 
 /**
  * Класс AppConfig предоставляет сохранение конфигурации окна приложения
+ * <p>
+ * Конфигурация хранится в компактном двоичном файле с сигнатурой, номером версии формата
+ * и контрольной суммой, без сериализации Java. Запись отложенная: изменения копятся в памяти,
+ * а фоновый поток пишет файл через {@link #WRITE_DELAY_MILLIS} после последнего изменения, так что
+ * серия изменений (например, сохранение всех окон) дает одну запись. Файл пишется во временный
+ * и затем атомарно заменяет старый, поэтому сбой посреди записи не портит конфигурацию.
+ * При выходе несохраненные изменения дописываются один раз ({@link #flush()}).
+ * </p>
+ * <p>
+ * Чтение файла тоже выполняется в фоновом потоке ({@link #loadConfigAsync()}), чтобы не задерживать
+ * поток обработки событий при запуске.
+ * </p>
  */
 public class AppConfig {
 
@@ -14,7 +42,31 @@ public class AppConfig {
     /**
      * Путь к файлу конфигурации окна
      */
-    private static final String CONFIG_FILE_PATH = System.getProperty("user.home") + File.separator + "appconfig.ser";
+    private static final Path CONFIG_FILE_PATH = Paths.get(System.getProperty("user.home"), "appconfig.bin");
+
+
+    /**
+     * Путь к временному файлу, который после записи заменяет файл конфигурации
+     */
+    private static final Path TEMP_FILE_PATH = Paths.get(System.getProperty("user.home"), "appconfig.bin.tmp");
+
+
+    /**
+     * Сигнатура файла конфигурации: "RCFG"
+     */
+    private static final int MAGIC = 0x52434647;
+
+
+    /**
+     * Версия формата файла конфигурации
+     */
+    private static final int FORMAT_VERSION = 1;
+
+
+    /**
+     * Задержка записи после последнего изменения
+     */
+    private static final long WRITE_DELAY_MILLIS = 500;
 
 
     /**
@@ -26,15 +78,55 @@ public class AppConfig {
     /**
      * Сохраненные состояния окон
      */
-    private Map<String, WindowState> windowStates;
+    private final Map<String, WindowState> windowStates = new ConcurrentHashMap<>();
+
+
+    /**
+     * Есть ли изменения, еще не записанные в файл
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+
+    /**
+     * Запланирована ли отложенная запись
+     */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+
+    /**
+     * Время последнего изменения по {@link System#nanoTime()}
+     */
+    private volatile long lastChangeNanos;
+
+
+    /**
+     * Загрузка конфигурации из файла или null, если она еще не начата
+     */
+    private volatile CompletableFuture<Void> loading;
+
+
+    /**
+     * Прочитан ли файл конфигурации
+     */
+    private volatile boolean loaded;
+
+
+    /**
+     * Фоновый поток загрузки и отложенной записи конфигурации
+     */
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "config-io");
+        thread.setDaemon(true);
+        return thread;
+    });
 
 
     /**
      * Приватный конструктор класса AppConfig
-     *      Инициализирует карту состояний окон
+     *      Регистрирует запись несохраненных изменений при завершении JVM
      */
     private AppConfig() {
-        windowStates = new HashMap<>();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "config-flush"));
     }
 
 
@@ -42,7 +134,7 @@ public class AppConfig {
      * Получение экземпляра AppConfig (реализация шаблона Singleton)
      *  @return единственный экземпляр AppConfig
      */
-    public static AppConfig getInstance() {
+    public static synchronized AppConfig getInstance() {
         if (instance == null) {
             instance = new AppConfig();
         }
@@ -51,7 +143,7 @@ public class AppConfig {
 
 
     /**
-     * Сохраняет состояние окна по идентификатору окна
+     * Сохраняет состояние окна по идентификатору окна. Файл будет записан позже фоновым потоком.
      *
      *  @param windowId идентификатор окна
      *  @param state    состояние окна для сохранения
@@ -74,26 +166,198 @@ public class AppConfig {
 
 
     /**
-     * Сохраняет конфигурацию в файл
+     * Отмечает конфигурацию измененной и планирует ее запись в файл, если запись еще не запланирована.
+     * Каждое изменение откладывает уже запланированную запись
      */
     public void saveConfig() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(CONFIG_FILE_PATH))) { //Создается новый ObjectOutputStream с потоком вывода FileOutputStream, который записывает данные в файл CONFIG_FILE_PATH.
-            out.writeObject(windowStates); // Записываем состояния окон в файл
+        lastChangeNanos = System.nanoTime();
+        dirty.set(true);
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.schedule(this::writeDelayed, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Выполняет запланированную запись, если с последнего изменения прошло {@link #WRITE_DELAY_MILLIS},
+     * иначе переносит ее на оставшееся время
+     */
+    private void writeDelayed() {
+        long remainingNanos = lastChangeNanos + TimeUnit.MILLISECONDS.toNanos(WRITE_DELAY_MILLIS) - System.nanoTime();
+        if (remainingNanos > 0) {
+            writer.schedule(this::writeDelayed, remainingNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        writeScheduled.set(false);
+        writeIfDirty();
+    }
+
+
+    /**
+     * Сразу записывает несохраненные изменения в файл. Вызывается при выходе из приложения
+     */
+    public void flush() {
+        writeIfDirty();
+    }
+
+
+    /**
+     * Записывает конфигурацию в файл, если в ней есть несохраненные изменения.
+     * Записи из фонового потока и при выходе не пересекаются. Начатая загрузка сначала
+     * дожидается окончания, чтобы в файл не попала конфигурация без еще не прочитанных окон
+     */
+    private synchronized void writeIfDirty() {
+        if (loading != null) {
+            readConfig();
+        }
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        ConfigSaveEvent event = new ConfigSaveEvent();
+        event.begin();
+        Map<String, WindowState> snapshot = Map.copyOf(windowStates);
+        try {
+            writeFile(snapshot);
+            event.success = true;
         } catch (IOException e) {
             e.printStackTrace();  // В случае ошибки выводим сообщение об ошибке
         }
+        event.path = CONFIG_FILE_PATH.toString();
+        event.windowCount = snapshot.size();
+        event.commit();
     }
 
 
     /**
-     * Загружает конфигурацию из файла
+     * Пишет состояния окон во временный файл, сбрасывает его на диск и атомарно заменяет им файл конфигурации.
+     * Формат: сигнатура, версия, количество окон, для каждого окна идентификатор, положение, размер
+     * и признак свернутости, затем контрольная сумма CRC32 всего предыдущего.
+     *
+     * @param states состояния окон
+     * @throws IOException если запись не удалась
+     */
+    private static void writeFile(Map<String, WindowState> states) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 48 * states.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeShort(states.size());
+        for (Map.Entry<String, WindowState> entry : states.entrySet()) {
+            WindowState state = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(state.getX());
+            out.writeInt(state.getY());
+            out.writeInt(state.getWidth());
+            out.writeInt(state.getHeight());
+            out.writeBoolean(state.isIconified());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        try (FileChannel channel = FileChannel.open(TEMP_FILE_PATH, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(true);
+        }
+        try {
+            Files.move(TEMP_FILE_PATH, CONFIG_FILE_PATH, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(TEMP_FILE_PATH, CONFIG_FILE_PATH, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * Загружает конфигурацию из файла, дожидаясь окончания загрузки. Файл читается только один раз:
+     * дальше актуальна конфигурация в памяти, даже если она еще не записана
      */
     public void loadConfig() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(CONFIG_FILE_PATH))) { //Создается новый ObjectInputStream с потоком ввода FileInputStream, который считывает данные из файла CONFIG_FILE_PATH.
-            windowStates = (Map<String, WindowState>) in.readObject(); // Читаем состояния окон из файла
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+        loadConfigAsync();
+        readConfig();
+    }
+
+
+    /**
+     * Начинает загрузку конфигурации из файла в фоновом потоке, если она еще не начата.
+     * Состояния окон, сохраненные до окончания загрузки, не заменяются прочитанными из файла
+     *
+     * @return загрузка конфигурации, завершающаяся в фоновом потоке
+     */
+    public synchronized CompletableFuture<Void> loadConfigAsync() {
+        if (loading == null) {
+            loading = CompletableFuture.runAsync(this::readConfig, writer);
         }
+        return loading;
     }
-}
 
+
+    /**
+     * Проверяет, загружена ли конфигурация из файла
+     *
+     * @return true, если загрузка завершена
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+
+    /**
+     * Читает файл конфигурации, если он еще не прочитан. Обычно вызывается в фоновом потоке,
+     * но запись, обогнавшая загрузку, выполняет ее сама
+     */
+    private void readConfig() {
+        synchronized (windowStates) {
+            if (loaded) {
+                return;
+            }
+            long begin = StartupProfiler.begin();
+            try {
+                readFile().forEach(windowStates::putIfAbsent);
+            } catch (NoSuchFileException e) {
+                // Конфигурация еще не сохранялась
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            loaded = true;
+            StartupProfiler.end("startupPhaseConfig", begin);
+        }
+    }
+
+
+    /**
+     * Читает состояния окон из файла конфигурации, проверяя сигнатуру, версию и контрольную сумму.
+     *
+     * @return состояния окон
+     * @throws IOException если файл не удалось прочитать или он поврежден
+     */
+    private static Map<String, WindowState> readFile() throws IOException {
+        byte[] bytes = Files.readAllBytes(CONFIG_FILE_PATH);
+        if (bytes.length < 12) {
+            throw new IOException("Файл конфигурации поврежден: " + CONFIG_FILE_PATH);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(bytes.length - 4);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("Неверная контрольная сумма файла конфигурации: " + CONFIG_FILE_PATH);
+        }
+        in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Неизвестный формат файла конфигурации: " + CONFIG_FILE_PATH);
+        }
+        int version = in.readUnsignedShort();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Неподдерживаемая версия файла конфигурации: " + version);
+        }
+        int count = in.readUnsignedShort();
+        Map<String, WindowState> states = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String windowId = in.readUTF();
+            states.put(windowId, new WindowState(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readBoolean()));
+        }
+        return states;
+    }
+}
@@ -0,0 +1,35 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие Java Flight Recorder для записи конфигурации окон в файл.
+ */
+@Name("robots.ConfigSave")
+@Label("Config Save")
+@Category({"Robots", "Config"})
+@Description("Запись конфигурации окон приложения в файл")
+public class ConfigSaveEvent extends Event {
+
+    /**
+     * Путь к файлу конфигурации.
+     */
+    @Label("Path")
+    public String path;
+
+    /**
+     * Количество сохраненных состояний окон.
+     */
+    @Label("Window Count")
+    public int windowCount;
+
+    /**
+     * Признак успешной записи.
+     */
+    @Label("Success")
+    public boolean success;
+}
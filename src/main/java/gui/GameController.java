@@ -1,5 +1,6 @@
 package gui;
 
+import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.Timer;
@@ -7,11 +8,94 @@ import java.util.TimerTask;
 
 /**
  * Контроллер для управления роботом в игре.
+ * <p>
+ * Один шаг модели соответствует {@link #STEP_MILLIS} миллисекундам модельного времени.
+ * Модель обновляется по таймеру, период которого можно менять: при редком таймере и при ускорении
+ * времени за одно срабатывание выполняется несколько шагов модели (подшагов), но не больше,
+ * чем помещается в отведенную долю процессорного времени. Слушатели модели уведомляются
+ * один раз за срабатывание таймера, а не на каждом подшаге.
+ * </p>
  */
 public class GameController extends MouseAdapter {
+
+    /**
+     * Модельное время одного шага модели в миллисекундах.
+     */
+    private static final long STEP_MILLIS = 10;
+
+    /**
+     * Период таймера моделирования по умолчанию в миллисекундах.
+     */
+    private static final long DEFAULT_TICK_PERIOD_MILLIS = 10;
+
+    /**
+     * Доля периода таймера, которую разрешено тратить на подшаги модели.
+     */
+    private static final double CPU_BUDGET_SHARE = 0.8;
+
+    /**
+     * Наибольший пропуск времени (в периодах таймера), который догоняется после задержки таймера.
+     */
+    private static final int MAX_CATCH_UP_TICKS = 10;
+
+    /**
+     * Коэффициент сглаживания оценки стоимости одного подшага.
+     */
+    private static final double STEP_COST_SMOOTHING = 0.2;
+
+    /**
+     * Интервал, за который вычисляется достигнутый масштаб времени, в наносекундах.
+     */
+    private static final long SPEED_WINDOW_NANOS = 1_000_000_000L;
+
     private IRobotModel robotModel;
+
+    /**
+     * Визуализатор, который переводит клики в координаты поля.
+     */
+    private final AGameVisualizer gameVisualizer;
     private Timer timer;
 
+    /**
+     * Период таймера моделирования в миллисекундах.
+     */
+    private volatile long tickPeriodMillis = DEFAULT_TICK_PERIOD_MILLIS;
+
+    /**
+     * Запрошенный масштаб времени: во сколько раз моделирование быстрее реального времени.
+     */
+    private volatile double timeScale = 1;
+
+    /**
+     * Масштаб времени, фактически достигнутый за последний интервал измерения.
+     */
+    private volatile double achievedTimeScale = 0;
+
+    /**
+     * Дробная часть шагов, не выполненная на предыдущих срабатываниях таймера.
+     */
+    private double pendingSteps;
+
+    /**
+     * Сглаженная оценка стоимости одного подшага в наносекундах.
+     */
+    private double nanosPerStep;
+
+    /**
+     * Время предыдущего срабатывания таймера.
+     */
+    private long lastTickNanos;
+
+    /**
+     * Начало текущего интервала измерения скорости.
+     */
+    private long speedWindowStartNanos;
+
+    /**
+     * Количество шагов, фактически выполненных моделью в текущем интервале измерения скорости.
+     */
+    private long speedWindowSteps;
+
     /**
      * Конструктор класса GameController.
      *
@@ -20,6 +104,7 @@ public class GameController extends MouseAdapter {
      */
     public GameController(IRobotModel robotModel, AGameVisualizer gameVisualizer) {
         this.robotModel = robotModel;
+        this.gameVisualizer = gameVisualizer;
         gameVisualizer.addMouseListener(this);
     }
 
@@ -30,16 +115,73 @@ public class GameController extends MouseAdapter {
      */
     @Override
     public void mouseClicked(MouseEvent e) {
-        int x = e.getX();
-        int y = e.getY();
-        robotModel.moveRobotTo(x, y);
+        Point target = gameVisualizer.screenToWorld(e.getPoint());
+        robotModel.moveRobotTo(target.x, target.y);
         startTimer();
     }
 
+    /**
+     * Устанавливает масштаб времени моделирования.
+     *
+     * @param timeScale Во сколько раз моделирование должно идти быстрее реального времени.
+     */
+    public void setTimeScale(double timeScale) {
+        if (timeScale <= 0) {
+            throw new IllegalArgumentException("Масштаб времени должен быть положительным");
+        }
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * Устанавливает период таймера моделирования. Редкий таймер экономит процессор:
+     * модель выполняет больше подшагов за срабатывание, а визуализатор интерполирует
+     * положение робота между срабатываниями.
+     *
+     * @param tickPeriodMillis Период таймера в миллисекундах.
+     */
+    public synchronized void setTickPeriodMillis(long tickPeriodMillis) {
+        if (tickPeriodMillis <= 0) {
+            throw new IllegalArgumentException("Период таймера должен быть положительным");
+        }
+        this.tickPeriodMillis = tickPeriodMillis;
+        if (timer != null) {
+            startTimer();
+        }
+    }
+
+    /**
+     * Возвращает период таймера моделирования.
+     *
+     * @return Период таймера в миллисекундах.
+     */
+    public long getTickPeriodMillis() {
+        return tickPeriodMillis;
+    }
+
+    /**
+     * Возвращает запрошенный масштаб времени моделирования.
+     *
+     * @return Запрошенный масштаб времени.
+     */
+    public double getTimeScale() {
+        return timeScale;
+    }
+
+    /**
+     * Возвращает масштаб времени, фактически достигнутый за последнюю секунду, по выполненным шагам модели.
+     * Может быть меньше запрошенного, если подшаги не помещаются в бюджет процессорного времени,
+     * и равен 0, пока робот стоит в цели.
+     *
+     * @return Достигнутый масштаб времени.
+     */
+    public double getAchievedTimeScale() {
+        return achievedTimeScale;
+    }
+
     /**
      * Запускает таймер для обновления модели робота.
      */
-    private void startTimer() {
+    private synchronized void startTimer() {
         if (timer != null) {
             timer.cancel();
         }
@@ -47,8 +189,74 @@ public class GameController extends MouseAdapter {
         timer.schedule(new TimerTask() {
             @Override
             public void run() {
-                robotModel.updateModel();
+                tick();
             }
-        }, 0, 10);
+        }, 0, tickPeriodMillis);
+    }
+
+    /**
+     * Останавливает таймер моделирования. Вызывается при закрытии окна, которому принадлежит контроллер;
+     * следующий клик по полю снова запустит таймер.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * Выполняет одно срабатывание таймера: столько подшагов модели, сколько требует масштаб времени
+     * и прошедшее время, но не больше, чем помещается в бюджет процессорного времени.
+     */
+    private synchronized void tick() {
+        long now = System.nanoTime();
+        long tickPeriodNanos = tickPeriodMillis * 1_000_000;
+        if (lastTickNanos == 0) {
+            lastTickNanos = now - tickPeriodNanos;
+            speedWindowStartNanos = now;
+        }
+        long elapsedNanos = Math.min(now - lastTickNanos, MAX_CATCH_UP_TICKS * tickPeriodNanos);
+        lastTickNanos = now;
+
+        pendingSteps += (double) elapsedNanos / (STEP_MILLIS * 1_000_000) * timeScale;
+        int steps = (int) pendingSteps;
+        if (nanosPerStep > 0) {
+            double budgetNanos = tickPeriodNanos * CPU_BUDGET_SHARE;
+            steps = (int) Math.min(steps, Math.max(1, budgetNanos / nanosPerStep));
+        }
+        // Невыполненные из-за бюджета шаги отбрасываются, иначе отставание будет только расти
+        pendingSteps -= (int) pendingSteps;
+
+        int executed = 0;
+        if (steps > 0) {
+            SimulationTickEvent event = new SimulationTickEvent();
+            event.begin();
+            long start = System.nanoTime();
+            executed = robotModel.advance(steps);
+            long spentNanos = System.nanoTime() - start;
+            event.end();
+            // Стоимость оценивается только по выполненным шагам: мгновенный выход робота,
+            // уже стоящего в цели, иначе занизил бы оценку и снял ограничение подшагов
+            if (executed > 0) {
+                double stepNanos = (double) spentNanos / executed;
+                nanosPerStep = nanosPerStep == 0
+                        ? stepNanos
+                        : nanosPerStep + STEP_COST_SMOOTHING * (stepNanos - nanosPerStep);
+            }
+            if (event.shouldCommit()) {
+                event.robotCount = robotModel.getRobotCount();
+                event.subSteps = executed;
+                event.commit();
+            }
+        }
+
+        speedWindowSteps += executed;
+        long windowNanos = now - speedWindowStartNanos;
+        if (windowNanos >= SPEED_WINDOW_NANOS) {
+            achievedTimeScale = speedWindowSteps * STEP_MILLIS * 1_000_000.0 / windowNanos;
+            speedWindowSteps = 0;
+            speedWindowStartNanos = now;
+        }
     }
 }
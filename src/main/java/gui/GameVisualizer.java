@@ -1,15 +1,28 @@
 package gui;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Панель для визуализации робота и обработки событий мыши.
  */
 public class GameVisualizer extends AGameVisualizer {
 
-    private final IRobotModel robotModel;
-    private Point clickPoint;
+    /**
+     * Отрисовка сетки и робота, общая с экспортом повтора. Овалы робота рисуются методами
+     * {@link #fillOval} и {@link #drawOval}, поэтому наследники могут изменить вид робота.
+     */
+    private final RobotRenderer renderer = new RobotRenderer(new RobotRenderer.OvalPainter() {
+        @Override
+        public void fillOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+            GameVisualizer.this.fillOval(g, centerX, centerY, diam1, diam2);
+        }
+
+        @Override
+        public void drawOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+            GameVisualizer.this.drawOval(g, centerX, centerY, diam1, diam2);
+        }
+    });
 
     /**
      * Конструктор класса GameVisualizer.
@@ -18,7 +31,6 @@ public class GameVisualizer extends AGameVisualizer {
      */
     public GameVisualizer(IRobotModel robotModel) {
         super(robotModel);
-        this.robotModel = robotModel;
     }
 
     /**
@@ -28,27 +40,66 @@ public class GameVisualizer extends AGameVisualizer {
      */
     @Override
     protected void paintComponent(Graphics g) {
+        VisualizerPaintEvent event = new VisualizerPaintEvent();
+        event.begin();
+        paintRobot(g);
+        event.end();
+        if (event.shouldCommit()) {
+            Rectangle clip = g.getClipBounds();
+            event.visualizer = getClass();
+            event.clipWidth = clip != null ? clip.width : getWidth();
+            event.clipHeight = clip != null ? clip.height : getHeight();
+            event.commit();
+        }
+    }
+
+    /**
+     * Рисует точку клика и робота в положении, зафиксированном в последнем кадре.
+     * Робот копируется из кэша изображений, а не рисуется заново.
+     *
+     * @param g Графический контекст для отрисовки.
+     */
+    private void paintRobot(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+        renderer.paintRobot((Graphics2D) g, robotX, robotY, robotDirection);
+    }
+
+    /**
+     * Рисует фон и сетку участка игрового поля. Результат кэшируется плитками.
+     *
+     * @param g         Графический контекст плитки, переведенный в координаты поля.
+     * @param worldArea Участок поля, который нужно нарисовать.
+     */
+    @Override
+    protected void paintStaticLayer(Graphics2D g, Rectangle2D worldArea) {
+        super.paintStaticLayer(g, worldArea);
+        renderer.paintGrid(g, worldArea);
+    }
 
-        if (clickPoint != null) {
-            g2d.setColor(Color.BLACK);
-            g2d.fillOval(clickPoint.x - 5, clickPoint.y - 5, 10, 10);
+    /**
+     * Обновляет внешний вид компонента и сбрасывает кэш изображений робота,
+     * чтобы они были построены заново для нового внешнего вида.
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        // Метод вызывается из конструктора JPanel до инициализации полей
+        if (renderer != null) {
+            renderer.invalidate();
         }
+    }
 
-        Point robotPosition = robotModel.getRobotPosition();
-        int robotCenterX = (int) robotPosition.getX();
-        int robotCenterY = (int) robotPosition.getY();
-        AffineTransform t = AffineTransform.getRotateInstance(robotModel.getRobotDirection(), robotCenterX, robotCenterY);
-        g2d.setTransform(t);
-        g2d.setColor(Color.MAGENTA);
-        fillOval(g2d, robotCenterX, robotCenterY, 30, 10);
-        g2d.setColor(Color.BLACK);
-        drawOval(g2d, robotCenterX, robotCenterY, 30, 10);
-        g2d.setColor(Color.WHITE);
-        fillOval(g2d, robotCenterX + 10, robotCenterY, 5, 5);
-        g2d.setColor(Color.BLACK);
-        drawOval(g2d, robotCenterX + 10, robotCenterY, 5, 5);
+    /**
+     * Возвращает границы повернутого корпуса робота.
+     *
+     * @param x         Координата X робота.
+     * @param y         Координата Y робота.
+     * @param direction Направление робота в радианах.
+     * @return Границы робота на панели.
+     */
+    @Override
+    protected Rectangle getRobotBounds(double x, double y, double direction) {
+        return renderer.getRobotBounds(x, y, direction);
     }
 
     /**
@@ -76,16 +127,4 @@ public class GameVisualizer extends AGameVisualizer {
     protected void drawOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
         g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
     }
-
-    /**
-     * Обновляет координаты робота при изменении их моделью.
-     *
-     * @param x         Координата X робота.
-     * @param y         Координата Y робота.
-     * @param direction Направление робота.
-     */
-    @Override
-    public void onRobotPositionChanged(double x, double y, double direction) {
-        repaint();
-    }
 }
@@ -35,12 +35,29 @@ public class GameWindow extends JInternalFrame implements Stateful, Localization
      */
     private final DefaultListModel<IRobotModel> robotsList;
 
+    /**
+     * Ключ ресурса с заголовком окна.
+     */
+    private final String titleKey;
+
 
     /**
      * Конструктор для создания нового игрового окна.
      */
     public GameWindow(IRobotModel robotModel, AGameVisualizer gameVisualizer) {
-        super(LocalizationManager.getString("gameWindowTitle"), true, true, true, true);
+        this(robotModel, gameVisualizer, "gameWindowTitle");
+    }
+
+    /**
+     * Конструктор для создания игрового окна с заданным заголовком.
+     *
+     * @param robotModel     Модель робота.
+     * @param gameVisualizer Визуализатор игрового поля.
+     * @param titleKey       Ключ ресурса с заголовком окна.
+     */
+    public GameWindow(IRobotModel robotModel, AGameVisualizer gameVisualizer, String titleKey) {
+        super(LocalizationManager.getString(titleKey), true, true, true, true);
+        this.titleKey = titleKey;
         this.robotModel = robotModel;
         this.gameVisualizer=gameVisualizer;
         gameController = new GameController(robotModel,gameVisualizer);
@@ -51,6 +68,15 @@ public class GameWindow extends JInternalFrame implements Stateful, Localization
         robotsList = new DefaultListModel<>();
     }
 
+    /**
+     * Возвращает контроллер, управляющий моделированием в этом окне.
+     *
+     * @return Контроллер игры.
+     */
+    public GameController getGameController() {
+        return gameController;
+    }
+
     /**
      * метод интерфейса Stateful, сохраняет состояние окна
      */
@@ -83,7 +109,7 @@ public class GameWindow extends JInternalFrame implements Stateful, Localization
      */
     @Override
     public void changelocale(Locale locale){
-        setTitle(LocalizationManager.getString("gameWindowTitle"));
+        setTitle(LocalizationManager.getString(titleKey));
     }
 }
 
@@ -18,6 +18,39 @@ public interface IRobotModel {
     void updateModel();
 
 
+    /**
+     * Выполняет несколько шагов модели подряд.
+     * <p>
+     * Реализация по умолчанию просто вызывает {@link #updateModel()} нужное число раз.
+     * Модели могут переопределить метод, чтобы уведомлять слушателей один раз за всю серию шагов.
+     * </p>
+     *
+     * @param steps Количество шагов модели.
+     */
+    default void updateModel(int steps) {
+        for (int i = 0; i < steps; i++) {
+            updateModel();
+        }
+    }
+
+
+    /**
+     * Выполняет несколько шагов модели подряд и сообщает, сколько из них изменили модель.
+     * <p>
+     * Нужен контроллеру, чтобы оценивать стоимость шага и достигнутую скорость только по шагам,
+     * которые действительно выполнялись. Реализация по умолчанию вызывает {@link #updateModel(int)}
+     * и считает выполненными все шаги.
+     * </p>
+     *
+     * @param steps Количество шагов модели.
+     * @return Количество выполненных шагов; 0, если модель уже стоит на месте.
+     */
+    default int advance(int steps) {
+        updateModel(steps);
+        return steps;
+    }
+
+
     /**
      * Перемещает робота в указанное положение.
      * <p>
@@ -58,4 +91,62 @@ public interface IRobotModel {
      * Возвращает текущую позицию робота.
      */
     Point getRobotPosition();
+
+
+    /**
+     * Возвращает количество роботов, которые обновляет модель за один шаг.
+     * @return Количество роботов в модели.
+     */
+    default int getRobotCount() {
+        return 1;
+    }
+
+
+    /**
+     * Возвращает положение робота после последнего шага моделирования.
+     * <p>
+     * Реализация по умолчанию строит положение из текущих координат и направления с текущим временем,
+     * поэтому интерполяция для таких моделей не выполняется.
+     * </p>
+     * @return Текущее положение робота.
+     */
+    default RobotPose getCurrentPose() {
+        Point position = getRobotPosition();
+        return new RobotPose(position.x, position.y, getRobotDirection(), System.nanoTime());
+    }
+
+
+    /**
+     * Возвращает положение робота после предпоследнего шага моделирования.
+     * Вместе с {@link #getCurrentPose()} позволяет интерполировать движение между шагами.
+     * Чтобы получить согласованную пару, сначала нужно прочитать текущее положение, затем предыдущее.
+     * @return Предыдущее положение робота.
+     */
+    default RobotPose getPreviousPose() {
+        return getCurrentPose();
+    }
+
+
+    /**
+     * Возвращает след робота.
+     * <p>
+     * Реализация по умолчанию возвращает null: модель не записывает след.
+     * </p>
+     * @return След робота или null, если модель его не ведет.
+     */
+    default RobotTrail getTrail() {
+        return null;
+    }
+
+
+    /**
+     * Включает или выключает запись следа робота. Модель может не тратить память и время на след,
+     * пока он не нужен.
+     * <p>
+     * Реализация по умолчанию ничего не делает.
+     * </p>
+     * @param enabled true, чтобы записывать след.
+     */
+    default void setTrailEnabled(boolean enabled) {
+    }
 }
@@ -0,0 +1,236 @@
+package gui;
+
+import log.LogEntry;
+import log.LogSegmentStore;
+import log.LogWindowSource;
+
+import javax.swing.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Модель списка сообщений протокола, которая не копирует сообщения.
+ * <p>
+ * Строка списка с номером i соответствует сообщению источника с порядковым номером
+ * (первый номер + i), и текст строки берется из источника только тогда, когда список ее рисует.
+ * При обновлении модель сдвигает свое окно номеров: сообщает о вытесненных из источника старых
+ * сообщениях и о новых опубликованных, не перебирая остальные.
+ * </p>
+ * <p>
+ * Если задано постоянное хранилище протокола, список начинается с самой старой сохраненной записи.
+ * Строки, которых уже нет в источнике, читаются из хранилища страницами по мере прокрутки;
+ * несколько последних прочитанных страниц держатся в памяти.
+ * </p>
+ */
+public class LogListModel extends AbstractListModel<String> {
+
+    /**
+     * Наибольшее количество строк списка: более старая история не показывается.
+     */
+    private static final int MAX_ROWS = 10_000_000;
+
+    /**
+     * Количество строк в странице, читаемой из хранилища за раз.
+     */
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * Количество страниц хранилища, которые держатся в памяти.
+     */
+    private static final int MAX_CACHED_PAGES = 64;
+
+    /**
+     * Источник сообщений протокола.
+     */
+    private final LogWindowSource logSource;
+
+    /**
+     * Постоянное хранилище протокола или null.
+     */
+    private final LogSegmentStore logStore;
+
+    /**
+     * Прочитанные из хранилища страницы по номеру страницы, в порядке последнего обращения.
+     */
+    private final Map<Long, String[]> storePages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * Порядковый номер сообщения в первой строке.
+     */
+    private long firstSequence;
+
+    /**
+     * Порядковый номер после сообщения в последней строке.
+     */
+    private long endSequence;
+
+    /**
+     * Порядковый номер последней строки при прошлом обновлении.
+     */
+    private long shownLastSequence = -1;
+
+    /**
+     * Счетчик повторов последней строки при прошлом обновлении.
+     */
+    private int shownLastRepeatCount;
+
+    /**
+     * Конструктор класса LogListModel.
+     *
+     * @param logSource Источник сообщений протокола.
+     */
+    public LogListModel(LogWindowSource logSource) {
+        this(logSource, null);
+    }
+
+    /**
+     * Конструктор класса LogListModel с постоянным хранилищем, из которого дочитывается старая история.
+     *
+     * @param logSource Источник сообщений протокола.
+     * @param logStore  Постоянное хранилище протокола или null.
+     */
+    public LogListModel(LogWindowSource logSource, LogSegmentStore logStore) {
+        this.logSource = logSource;
+        this.logStore = logStore;
+        this.firstSequence = getOldestAvailable();
+        this.endSequence = firstSequence;
+        refresh();
+    }
+
+    /**
+     * Возвращает номер самого старого сообщения, которое можно показать:
+     * из хранилища, если оно есть, иначе из источника.
+     *
+     * @return Порядковый номер.
+     */
+    private long getOldestAvailable() {
+        long oldest = logSource.getOldestSequence();
+        if (logStore != null && logStore.getNextSequence() > logStore.getOldestSequence()) {
+            oldest = Math.min(oldest, logStore.getOldestSequence());
+        }
+        return Math.max(oldest, logSource.getNextSequence() - MAX_ROWS);
+    }
+
+    /**
+     * Приводит модель в соответствие с источником: убирает вытесненные сообщения и добавляет
+     * новые опубликованные. Вызывается в потоке обработки событий.
+     *
+     * @return true, если в конец списка добавлены строки.
+     */
+    public boolean refresh() {
+        long oldest = getOldestAvailable();
+        if (oldest > firstSequence) {
+            long removeEnd = Math.min(oldest, endSequence);
+            if (removeEnd > firstSequence) {
+                int removed = (int) (removeEnd - firstSequence);
+                firstSequence = removeEnd;
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+            if (oldest > firstSequence) {
+                // Источник ушел вперед дальше всех строк модели
+                firstSequence = oldest;
+                endSequence = oldest;
+            }
+        }
+
+        // Повторы сворачиваются только в последнюю запись источника, то есть в последнюю строку
+        fireLastRowChanged();
+
+        long published = endSequence;
+        if (logStore != null) {
+            // Всё, что старше источника, уже записано в хранилище и читается оттуда
+            published = Math.max(published, logSource.getOldestSequence());
+        }
+        long next = logSource.getNextSequence();
+        while (published < next && logSource.get(published) != null) {
+            published++;
+        }
+        if (published == endSequence) {
+            return false;
+        }
+        int firstAdded = getSize();
+        endSequence = published;
+        fireIntervalAdded(this, firstAdded, getSize() - 1);
+        fireLastRowChanged();
+        return true;
+    }
+
+    /**
+     * Сообщает об изменении последней строки, если с прошлого обновления у нее изменился
+     * счетчик повторов, и запоминает ее текущее состояние.
+     */
+    private void fireLastRowChanged() {
+        long lastSequence = endSequence - 1;
+        LogEntry entry = lastSequence >= firstSequence ? logSource.get(lastSequence) : null;
+        int repeatCount = entry != null ? entry.getRepeatCount() : 1;
+        if (lastSequence == shownLastSequence && repeatCount != shownLastRepeatCount) {
+            int index = (int) (lastSequence - firstSequence);
+            fireContentsChanged(this, index, index);
+        }
+        shownLastSequence = lastSequence;
+        shownLastRepeatCount = repeatCount;
+    }
+
+    /**
+     * Возвращает количество строк.
+     *
+     * @return Количество строк.
+     */
+    @Override
+    public int getSize() {
+        return (int) (endSequence - firstSequence);
+    }
+
+    /**
+     * Возвращает текст строки; к повторявшемуся сообщению добавляется число повторов.
+     * Сообщение, вытесненное из источника, читается из хранилища;
+     * если его нет и там, возвращается пустая строка: модель уберет ее при следующем обновлении.
+     *
+     * @param index Номер строки.
+     * @return Текст сообщения.
+     */
+    @Override
+    public String getElementAt(int index) {
+        long sequence = firstSequence + index;
+        LogEntry entry = logSource.get(sequence);
+        if (entry != null) {
+            int repeatCount = entry.getRepeatCount();
+            return repeatCount > 1 ? entry.getMessage() + " [×" + repeatCount + "]" : entry.getMessage();
+        }
+        if (logStore == null) {
+            return "";
+        }
+        String message = getStorePage(sequence / PAGE_SIZE)[(int) (sequence % PAGE_SIZE)];
+        return message != null ? message : "";
+    }
+
+    /**
+     * Возвращает страницу сообщений хранилища, при необходимости прочитав ее.
+     *
+     * @param page Номер страницы.
+     * @return Сообщения страницы; отсутствующие в хранилище равны null.
+     */
+    private String[] getStorePage(long page) {
+        String[] messages = storePages.get(page);
+        if (messages == null) {
+            String[] loaded = new String[PAGE_SIZE];
+            long pageStart = page * PAGE_SIZE;
+            logStore.read(pageStart, pageStart + PAGE_SIZE, (sequence, timestampNanos, level, message) -> {
+                loaded[(int) (sequence - pageStart)] = StandardCharsets.UTF_8.decode(message).toString();
+                return true;
+            });
+            messages = loaded;
+            // Страница, на которую приходится еще пишущийся конец хранилища, не запоминается
+            if (pageStart + PAGE_SIZE <= logStore.getNextSequence()) {
+                storePages.put(page, messages);
+            }
+        }
+        return messages;
+    }
+}
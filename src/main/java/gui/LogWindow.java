@@ -2,16 +2,34 @@ package gui;
 
 import log.LogChangeListener;
 import log.LogEntry;
+import log.LogLevel;
+import log.LogSegmentStore;
 import log.LogWindowSource;
-import log.Logger;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
 
 
 /**
  * Класс LogWindow представляет окно с протоколом работы приложения.
+ * <p>
+ * Сообщения показываются списком с одинаковой высотой строк поверх {@link LogListModel}:
+ * список рисует только видимые строки, а новые сообщения добавляются в конец без перестроения
+ * всего содержимого. Если список был прокручен до конца, он следует за новыми сообщениями.
+ * </p>
+ * <p>
+ * В очереди событий одновременно стоит не больше одного обновления окна: уведомления,
+ * пришедшие до его выполнения, не ставят новых, а их сообщения подхватываются тем же обновлением.
+ * </p>
+ * <p>
+ * Строка поиска над списком ищет по словам среди хранимых сообщений с учетом выбранного наименьшего
+ * уровня ({@link LogWindowSource#search}); пока запрос не пуст, список показывает только найденные
+ * сообщения.
+ * </p>
  */
 public class LogWindow extends JInternalFrame implements LogChangeListener, Stateful, LocalizationInterface {
 
@@ -22,6 +40,12 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Stat
     private final String WINDOW_ID = "LogWindow";
 
 
+    /**
+     * наибольшее количество показываемых результатов поиска
+     */
+    private static final int MAX_SEARCH_RESULTS = 10_000;
+
+
     /**
      * источник протокола работы
      */
@@ -29,9 +53,51 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Stat
 
 
     /**
-     *  компонент TextArea для отображения содержимого протокола.
+     * модель списка сообщений протокола
+     */
+    private final LogListModel logModel;
+
+
+    /**
+     * список для отображения содержимого протокола
+     */
+    private final JList<String> logContent;
+
+
+    /**
+     * область прокрутки списка сообщений
+     */
+    private final JScrollPane logScrollPane;
+
+
+    /**
+     * подпись строки поиска
+     */
+    private final JLabel searchLabel;
+
+
+    /**
+     * строка поиска
+     */
+    private final JTextField searchField;
+
+
+    /**
+     * наименьший уровень найденных сообщений
+     */
+    private final JComboBox<LogLevel> levelFilter;
+
+
+    /**
+     * модель списка найденных сообщений
+     */
+    private final DefaultListModel<String> searchResults = new DefaultListModel<>();
+
+
+    /**
+     * поставлено ли обновление окна в очередь событий
      */
-    private final TextArea logContent;
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
 
 
     /**
@@ -40,31 +106,112 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Stat
      * @param logSource источник протокола работы
      */
     public LogWindow(LogWindowSource logSource) {
+        this(logSource, null);
+    }
+
+
+    /**
+     * Конструктор класса LogWindow с постоянным хранилищем протокола,
+     * из которого при прокрутке дочитывается старая история.
+     *
+     * @param logSource источник протокола работы
+     * @param logStore  постоянное хранилище протокола или null
+     */
+    public LogWindow(LogWindowSource logSource, LogSegmentStore logStore) {
         super(LocalizationManager.getString("logWindowTitle"), true, true, true, true);
         this.logSource = logSource;
         this.logSource.registerListener(this);
 
-        logContent = new TextArea("");
-        logContent.setSize(200, 500);
+        logModel = new LogListModel(logSource, logStore);
+        logContent = new JList<>(logModel);
+        // Высота строк задается по шрифту, поэтому список не измеряет высоту каждой строки;
+        // ширину по-прежнему определяет отрисовщик, и длинные строки прокручиваются по горизонтали
+        Insets cellInsets = ((JComponent) logContent.getCellRenderer()).getInsets();
+        logContent.setFixedCellHeight(logContent.getFontMetrics(logContent.getFont()).getHeight()
+                + cellInsets.top + cellInsets.bottom);
+        logScrollPane = new JScrollPane(logContent);
+        logScrollPane.setPreferredSize(new Dimension(200, 500));
+
+        searchLabel = new JLabel(LocalizationManager.getString("logSearchLabel"));
+        searchField = new JTextField();
+        searchField.setToolTipText(LocalizationManager.getString("logSearchTooltip"));
+        searchField.addActionListener(e -> search());
+        levelFilter = new JComboBox<>(LogLevel.values());
+        levelFilter.addActionListener(e -> search());
+
+        JPanel searchPanel = new JPanel(new BorderLayout(4, 0));
+        searchPanel.add(searchLabel, BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(levelFilter, BorderLayout.EAST);
 
         JPanel panel = new JPanel(new BorderLayout());
-        panel.add(logContent, BorderLayout.CENTER);
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(logScrollPane, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
-        updateLogContent();
+        scrollToEnd();
     }
 
 
     /**
-     * Обновляет содержимое протокола работы в окне
+     * Обновляет содержимое протокола работы в окне: добавляет новые сообщения
+     * и прокручивает список к концу, если он был прокручен до конца.
      */
     private void updateLogContent() {
-        StringBuilder content = new StringBuilder();
-        for (LogEntry entry : logSource.all()) {
-            content.append(entry.getMessage()).append("\n");
+        boolean atEnd = isScrolledToEnd();
+        if (logModel.refresh() && atEnd && logContent.getModel() == logModel) {
+            scrollToEnd();
+        }
+    }
+
+
+    /**
+     * Выполняет поиск по строке поиска и показывает найденные сообщения.
+     * При пустом запросе список снова показывает весь протокол.
+     */
+    private void search() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            logContent.setModel(logModel);
+            scrollToEnd();
+            return;
+        }
+        long[] found = logSource.search(query, (LogLevel) levelFilter.getSelectedItem(), MAX_SEARCH_RESULTS);
+        List<String> messages = new ArrayList<>(found.length);
+        for (long sequence : found) {
+            LogEntry entry = logSource.get(sequence);
+            if (entry != null) {
+                messages.add(entry.getMessage());
+            }
+        }
+        searchResults.clear();
+        searchResults.addAll(messages);
+        logContent.setModel(searchResults);
+        if (!messages.isEmpty()) {
+            logContent.ensureIndexIsVisible(messages.size() - 1);
+        }
+    }
+
+
+    /**
+     * Проверяет, прокручен ли список до конца.
+     *
+     * @return true, если видна последняя строка.
+     */
+    private boolean isScrolledToEnd() {
+        BoundedRangeModel scroll = logScrollPane.getVerticalScrollBar().getModel();
+        return scroll.getValue() + scroll.getExtent() >= scroll.getMaximum();
+    }
+
+
+    /**
+     * Прокручивает список к последней строке.
+     */
+    private void scrollToEnd() {
+        int size = logContent.getModel().getSize();
+        if (size > 0) {
+            logContent.ensureIndexIsVisible(size - 1);
         }
-        logContent.setText(content.toString());
-        logContent.invalidate();
     }
 
 
@@ -73,7 +220,12 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Stat
      */
     @Override
     public void onLogChanged() {
-        EventQueue.invokeLater(this::updateLogContent);
+        if (updateQueued.compareAndSet(false, true)) {
+            EventQueue.invokeLater(() -> {
+                updateQueued.set(false);
+                updateLogContent();
+            });
+        }
     }
 
 
@@ -110,5 +262,7 @@ public class LogWindow extends JInternalFrame implements LogChangeListener, Stat
     @Override
     public void changelocale(Locale locale){
         setTitle(LocalizationManager.getString("logWindowTitle"));
+        searchLabel.setText(LocalizationManager.getString("logSearchLabel"));
+        searchField.setToolTipText(LocalizationManager.getString("logSearchTooltip"));
     }
 }
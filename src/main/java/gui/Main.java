@@ -1,5 +1,7 @@
 package gui;
 
+import log.Logger;
+
 import java.awt.Frame;
 
 import javax.swing.SwingUtilities;
@@ -14,11 +16,23 @@ public class Main
 
   /**
    * Точка входа в программу.
-   * Задает внешний вид приложения и создает основной фрейм приложения.
+   * Начинает в фоновых потоках загрузку конфигурации и подготовку протокола, задает внешний вид
+   * приложения и создает основной фрейм приложения. Время каждой фазы запуска замеряет {@link StartupProfiler}.
    *
    * @param args Аргументы командной строки (не используются).
    */
   public static void main(String[] args) {
+    StartupProfiler.endSinceJvmStart("startupPhaseJvm");
+    AppConfig.getInstance().loadConfigAsync();
+    Thread loggerInit = new Thread(() -> {
+      long begin = StartupProfiler.begin();
+      Logger.getDefaultLogSource();
+      StartupProfiler.end("startupPhaseLogger", begin);
+    }, "logger-init");
+    loggerInit.setDaemon(true);
+    loggerInit.start();
+
+    long lookAndFeelBegin = StartupProfiler.begin();
     try {
       UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
       UIManager.put("OptionPane.yesButtonText", "Да");
@@ -30,12 +44,15 @@ public class Main
     } catch (Exception e) {
       e.printStackTrace();
     }
+    StartupProfiler.end("startupPhaseLookAndFeel", lookAndFeelBegin);
 
     SwingUtilities.invokeLater(() -> {
+      long frameBegin = StartupProfiler.begin();
       MainApplicationFrame frame = new MainApplicationFrame();
       frame.pack();
       frame.setVisible(true);
       frame.setExtendedState(Frame.MAXIMIZED_BOTH);
+      StartupProfiler.end("startupPhaseMainFrame", frameBegin);
     });
   }
 }
\ No newline at end of file
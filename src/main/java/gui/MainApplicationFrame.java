@@ -1,14 +1,20 @@
 package gui;
 
+import log.LogArchive;
+import log.LogSegmentStore;
+import log.LogSinkWorker;
 import log.Logger;
 
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -27,20 +33,30 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
     private static final long serialVersionUID = 1L;
 
     /**
-     * экземпляр окна протокола работы.
+     * экземпляр окна протокола работы или null, пока оно не создано.
      */
-    private final LogWindow logWindow;
+    private LogWindow logWindow;
 
     /**
-     * Основное игровое окно.
+     * Основное игровое окно или null, пока оно не создано.
      */
     private GameWindow gameWindow;
 
     /**
-     * Окно с координатами робота.
+     * Окно с координатами робота или null, пока оно не создано.
      */
     private RobotCoordinatesWindow robotCoordinatesWindow;
 
+    /**
+     * Момент начала создания главного окна для замера времени до первой отрисовки.
+     */
+    private final long constructionBeginNanos = StartupProfiler.begin();
+
+    /**
+     * Была ли уже первая отрисовка главного окна.
+     */
+    private boolean firstPaintDone;
+
     /**
      * Константа, содержащая идентификатор окна для сохранения состояния протокола работы.
      */
@@ -97,11 +113,86 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
      */
     private JMenuItem addLogMessageItem;
 
+    /**
+     * пункт подменю тестов "Рой роботов"
+     */
+    private JMenuItem robotSwarmItem;
+
+    /**
+     * пункт подменю тестов "Статистика архива протокола"
+     */
+    private JMenuItem logArchiveStatsItem;
+
+    /**
+     * пункт подменю тестов "Статистика получателей протокола"
+     */
+    private JMenuItem logSinkStatsItem;
+
+    /**
+     * Количество роботов в тестовом рое.
+     */
+    private static final int SWARM_SIZE = 5000;
+
     /**
      * Пункт меню для загрузки нового робота.
      */
     private JMenuItem loadRobotMenuItem;
 
+    /**
+     * пункт меню "Моделирование"
+     */
+    private JMenu simulationMenu;
+
+    /**
+     * пункт подменю моделирования "Фактическая скорость"
+     */
+    private JMenuItem simulationSpeedItem;
+
+    /**
+     * пункт подменю моделирования "Статистика отрисовки"
+     */
+    private JMenuItem renderStatsItem;
+
+    /**
+     * Доступные масштабы времени моделирования.
+     */
+    private static final double[] TIME_SCALES = {1, 10, 100, 1000};
+
+    /**
+     * Доступные периоды таймера моделирования в миллисекундах.
+     */
+    private static final long[] TICK_PERIODS_MILLIS = {10, 20, 50, 100};
+
+    /**
+     * пункт подменю моделирования "Период шага"
+     */
+    private JMenu tickPeriodMenu;
+
+    /**
+     * пункт подменю моделирования "Показывать след"
+     */
+    private JCheckBoxMenuItem showTrailItem;
+
+    /**
+     * пункт подменю моделирования "Экспорт повтора"
+     */
+    private JMenuItem exportReplayItem;
+
+    /**
+     * пункт подменю моделирования "Экспорт повтора в GIF"
+     */
+    private JMenuItem exportReplayGifItem;
+
+    /**
+     * Частота кадров экспортируемого повтора.
+     */
+    private static final double REPLAY_FRAMES_PER_SECOND = 30;
+
+    /**
+     * Запись движения текущего робота для экспорта повтора.
+     */
+    private final RobotSessionRecorder sessionRecorder;
+
     /**
      * Модель текущего робота.
      */
@@ -115,6 +206,12 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
 
     /**
      * Конструктор MainApplicationFrame
+     * <p>
+     * Внутренние окна не создаются в конструкторе: главное окно показывается пустым, а окна
+     * протокола, игры и координат создаются после его первой отрисовки ({@link #materializeWindows()})
+     * или при первом обращении к ним из меню. Конфигурация окон читается в фоновом потоке
+     * и применяется к окнам, когда она прочитана и когда окно создано.
+     * </p>
      */
     public MainApplicationFrame() {
         int inset = 50;
@@ -122,18 +219,9 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
         setBounds(inset, inset, screenSize.width - inset * 2, screenSize.height - inset * 2);
         setContentPane(desktopPane);
 
-        logWindow = createLogWindow();
-        addWindow(logWindow);
-
         this.robotModel = new RobotModel();
         this.gameVisualizer=new GameVisualizer(robotModel);
-
-
-        gameWindow = createRobotGameWindow(robotModel, gameVisualizer);
-        addWindow(gameWindow);
-
-        robotCoordinatesWindow = createRobotLocationWindow(robotModel);
-        addWindow(robotCoordinatesWindow);
+        this.sessionRecorder = new RobotSessionRecorder(robotModel);
 
 
         addLogMessageItem = new JMenuItem("Сообщение в лог", KeyEvent.VK_S);
@@ -145,6 +233,16 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
         crossplatformLookAndFeel = new JMenuItem("Универсальная схема", KeyEvent.VK_S);
         systemLookAndFeel = new JMenuItem("Системная схема", KeyEvent.VK_S);
         loadRobotMenuItem = new JMenuItem("Загрузить нового робота", KeyEvent.VK_S);
+        simulationMenu = new JMenu("Моделирование");
+        robotSwarmItem = new JMenuItem("Рой роботов");
+        logArchiveStatsItem = new JMenuItem("Статистика архива протокола");
+        logSinkStatsItem = new JMenuItem("Статистика получателей протокола");
+        simulationSpeedItem = new JMenuItem("Фактическая скорость");
+        renderStatsItem = new JMenuItem("Статистика отрисовки");
+        tickPeriodMenu = new JMenu("Период шага");
+        exportReplayItem = new JMenuItem("Экспорт повтора");
+        exportReplayGifItem = new JMenuItem("Экспорт повтора в GIF");
+        showTrailItem = new JCheckBoxMenuItem("Показывать след");
 
 
         loadRobotMenuItem.addActionListener((event) -> {
@@ -163,7 +261,87 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
 
         addWindowListener(new ConfirmExitWindowListener());
 
-        restoreState();
+        AppConfig.getInstance().loadConfigAsync().thenRun(() -> SwingUtilities.invokeLater(this::restoreState));
+    }
+
+
+    /**
+     * Отрисовывает главное окно. После первой отрисовки замеряет время до нее и ставит
+     * в очередь потока обработки событий создание внутренних окон.
+     *
+     * @param g Графический контекст.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!firstPaintDone) {
+            firstPaintDone = true;
+            StartupProfiler.end("startupPhaseFirstPaint", constructionBeginNanos);
+            SwingUtilities.invokeLater(this::materializeWindows);
+        }
+    }
+
+
+    /**
+     * Создает внутренние окна по одному на событие потока обработки событий, чтобы между ними
+     * успевала отрисовываться рабочая область, а затем пишет в протокол временную шкалу запуска.
+     */
+    private void materializeWindows() {
+        SwingUtilities.invokeLater(this::getLogWindow);
+        SwingUtilities.invokeLater(this::getGameWindow);
+        SwingUtilities.invokeLater(this::getRobotCoordinatesWindow);
+        SwingUtilities.invokeLater(StartupProfiler::report);
+    }
+
+
+    /**
+     * Возвращает окно протокола, при первом обращении создавая его и применяя к нему сохраненное состояние.
+     *
+     * @return Окно протокола.
+     */
+    private LogWindow getLogWindow() {
+        if (logWindow == null) {
+            long begin = StartupProfiler.begin();
+            logWindow = createLogWindow();
+            addWindow(logWindow);
+            applyWindowState(logWindow);
+            StartupProfiler.end("startupPhaseLogWindow", begin);
+        }
+        return logWindow;
+    }
+
+
+    /**
+     * Возвращает игровое окно, при первом обращении создавая его и применяя к нему сохраненное состояние.
+     *
+     * @return Игровое окно.
+     */
+    private GameWindow getGameWindow() {
+        if (gameWindow == null) {
+            long begin = StartupProfiler.begin();
+            gameWindow = createRobotGameWindow(robotModel, gameVisualizer);
+            addWindow(gameWindow);
+            applyWindowState(gameWindow);
+            StartupProfiler.end("startupPhaseGameWindow", begin);
+        }
+        return gameWindow;
+    }
+
+
+    /**
+     * Возвращает окно координат робота, при первом обращении создавая его и применяя к нему сохраненное состояние.
+     *
+     * @return Окно координат робота.
+     */
+    private RobotCoordinatesWindow getRobotCoordinatesWindow() {
+        if (robotCoordinatesWindow == null) {
+            long begin = StartupProfiler.begin();
+            robotCoordinatesWindow = createRobotLocationWindow(robotModel);
+            addWindow(robotCoordinatesWindow);
+            applyWindowState(robotCoordinatesWindow);
+            StartupProfiler.end("startupPhaseCoordinatesWindow", begin);
+        }
+        return robotCoordinatesWindow;
     }
 
     /**
@@ -172,7 +350,7 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
      * @return Окно журнала.
      */
     protected LogWindow createLogWindow() {
-        LogWindow logWindow = new LogWindow(Logger.getDefaultLogSource());
+        LogWindow logWindow = new LogWindow(Logger.getDefaultLogSource(), Logger.getLogStore());
         logWindow.setLocation(10, 10);
         logWindow.setSize(300, 800);
         setMinimumSize(logWindow.getSize());
@@ -227,6 +405,7 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
         JMenuBar menuBar = new JMenuBar();
         addLookAndFeelMenu(menuBar);
         addTestMenu(menuBar);
+        addSimulationMenu(menuBar);
         addSettingsMenu(menuBar);
         addLanguageMenu(menuBar);
         return menuBar;
@@ -281,6 +460,9 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
     private void addTestMenu(JMenuBar menuBar) {
         testMenu.setMnemonic(KeyEvent.VK_T);
         addLogMessageMenuItem(testMenu);
+        addRobotSwarmMenuItem(testMenu);
+        addLogArchiveStatsMenuItem(testMenu);
+        addLogSinkStatsMenuItem(testMenu);
         menuBar.add(testMenu);
     }
 
@@ -297,6 +479,199 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
     }
 
 
+    /**
+     * Добавляет подпункт "Статистика архива протокола" в меню "Тесты". Пишет в лог количество
+     * заархивированных сегментов, объем до и после сжатия и скорость сжатия и распаковки.
+     * @param testMenu Меню "Тесты".
+     */
+    private void addLogArchiveStatsMenuItem(JMenu testMenu) {
+        logArchiveStatsItem.addActionListener((event) -> {
+            LogSegmentStore store = Logger.getLogStore();
+            LogArchive archive = store != null ? store.getArchive() : null;
+            if (archive == null) {
+                Logger.info("{}: -", LocalizationManager.getString("logArchiveStatsMessage"));
+                return;
+            }
+            Logger.info("{}: {}, {} MB -> {} MB (x{}), {} / {} MB/s",
+                    LocalizationManager.getString("logArchiveStatsMessage"), archive.getArchivedSegmentCount(),
+                    round(archive.getRawBytes() / 1048576.0, 1), round(archive.getCompressedBytes() / 1048576.0, 1),
+                    round(archive.getCompressionRatio(), 2), round(archive.getCompressionMegabytesPerSecond(), 1),
+                    round(archive.getDecompressionMegabytesPerSecond(), 1));
+        });
+        testMenu.add(logArchiveStatsItem);
+    }
+
+
+    /**
+     * Округляет число для вывода в лог.
+     * @param value Число.
+     * @param digits Количество знаков после запятой.
+     * @return Округленное число.
+     */
+    private static double round(double value, int digits) {
+        double scale = Math.pow(10, digits);
+        return Math.round(value * scale) / scale;
+    }
+
+
+    /**
+     * Добавляет подпункт "Статистика получателей протокола" в меню "Тесты". Пишет в лог для каждого
+     * получателя протокола отставание в записях и миллисекундах, количество пропусков и сбоев.
+     * @param testMenu Меню "Тесты".
+     */
+    private void addLogSinkStatsMenuItem(JMenu testMenu) {
+        logSinkStatsItem.addActionListener((event) -> {
+            for (LogSinkWorker sink : Logger.getSinks()) {
+                Logger.info("{}: {}, {}, {} ms, {}, {}",
+                        LocalizationManager.getString("logSinkStatsMessage"), sink.getName(), sink.getLag(),
+                        round(sink.getLagNanos() / 1e6, 1), sink.getDroppedCount(), sink.getFailureCount());
+            }
+        });
+        testMenu.add(logSinkStatsItem);
+    }
+
+
+    /**
+     * Добавляет подпункт "Рой роботов" в меню "Тесты". Открывает окно с роем роботов,
+     * которые движутся к точке клика. При закрытии окна его таймер моделирования останавливается.
+     * @param testMenu Меню "Тесты".
+     */
+    private void addRobotSwarmMenuItem(JMenu testMenu) {
+        robotSwarmItem.addActionListener((event) -> {
+            RobotSwarm swarm = new RobotSwarm(SWARM_SIZE, desktopPane.getWidth(), desktopPane.getHeight(), System.nanoTime());
+            GameWindow swarmWindow = new GameWindow(swarm, new MultiRobotVisualizer(swarm), "swarmWindowTitle");
+            swarmWindow.setSize(600, 600);
+            swarmWindow.addInternalFrameListener(new InternalFrameAdapter() {
+                @Override
+                public void internalFrameClosed(InternalFrameEvent e) {
+                    swarmWindow.getGameController().stop();
+                }
+            });
+            addWindow(swarmWindow);
+        });
+        testMenu.add(robotSwarmItem);
+    }
+
+
+    /**
+     * Добавляет в меню приложения пункт "Моделирование" с выбором масштаба времени и периода шага,
+     * подпунктами "Фактическая скорость" и "Статистика отрисовки", которые пишут в лог
+     * достигнутую скорость моделирования и частоту кадров, переключателем "Показывать след"
+     * и подпунктами "Экспорт повтора" и "Экспорт повтора в GIF".
+     * @param menuBar Меню приложения.
+     */
+    private void addSimulationMenu(JMenuBar menuBar) {
+        simulationMenu.setMnemonic(KeyEvent.VK_M);
+        ButtonGroup timeScaleGroup = new ButtonGroup();
+        for (double timeScale : TIME_SCALES) {
+            JRadioButtonMenuItem timeScaleItem = new JRadioButtonMenuItem("x" + (int) timeScale, timeScale == 1);
+            timeScaleItem.addActionListener((event) -> getGameWindow().getGameController().setTimeScale(timeScale));
+            timeScaleGroup.add(timeScaleItem);
+            simulationMenu.add(timeScaleItem);
+        }
+        ButtonGroup tickPeriodGroup = new ButtonGroup();
+        for (long tickPeriod : TICK_PERIODS_MILLIS) {
+            JRadioButtonMenuItem tickPeriodItem = new JRadioButtonMenuItem(tickPeriod + " ms", tickPeriod == TICK_PERIODS_MILLIS[0]);
+            tickPeriodItem.addActionListener((event) -> getGameWindow().getGameController().setTickPeriodMillis(tickPeriod));
+            tickPeriodGroup.add(tickPeriodItem);
+            tickPeriodMenu.add(tickPeriodItem);
+        }
+        simulationMenu.add(tickPeriodMenu);
+        simulationMenu.addSeparator();
+        simulationSpeedItem.addActionListener((event) -> {
+            GameController gameController = getGameWindow().getGameController();
+            Logger.debug(String.format(Locale.ROOT, "%s: x%.1f / x%.0f",
+                    LocalizationManager.getString("simulationSpeedMessage"),
+                    gameController.getAchievedTimeScale(), gameController.getTimeScale()));
+        });
+        simulationMenu.add(simulationSpeedItem);
+        renderStatsItem.addActionListener((event) -> {
+            Logger.debug(String.format(Locale.ROOT, "%s: %.1f fps, %.2f ms",
+                    LocalizationManager.getString("renderStatsMessage"),
+                    gameVisualizer.getFramesPerSecond(), gameVisualizer.getAveragePaintMillis()));
+        });
+        simulationMenu.add(renderStatsItem);
+        showTrailItem.addActionListener((event) -> gameVisualizer.setTrailVisible(showTrailItem.isSelected()));
+        simulationMenu.add(showTrailItem);
+        simulationMenu.addSeparator();
+        exportReplayItem.addActionListener((event) -> exportReplay());
+        simulationMenu.add(exportReplayItem);
+        exportReplayGifItem.addActionListener((event) -> exportReplayGif());
+        simulationMenu.add(exportReplayGifItem);
+        menuBar.add(simulationMenu);
+    }
+
+
+    /**
+     * Экспортирует записанное движение робота в последовательность PNG-кадров в выбранный каталог.
+     * Экспорт выполняется в фоновом потоке, результат пишется в лог.
+     */
+    private void exportReplay() {
+        JFileChooser directoryChooser = new JFileChooser();
+        directoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (directoryChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File directory = directoryChooser.getSelectedFile();
+        runReplayExport(directory, ReplayExporter::exportPngSequence);
+    }
+
+
+    /**
+     * Экспортирует записанное движение робота в анимированный GIF в выбранный файл.
+     * Экспорт выполняется в фоновом потоке, результат пишется в лог.
+     */
+    private void exportReplayGif() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File selected = fileChooser.getSelectedFile();
+        File file = selected.getName().toLowerCase(Locale.ROOT).endsWith(".gif")
+                ? selected
+                : new File(selected.getParentFile(), selected.getName() + ".gif");
+        runReplayExport(file, ReplayExporter::exportAnimatedGif);
+    }
+
+
+    /**
+     * Способ экспорта повтора: в последовательность кадров или в один файл.
+     */
+    private interface ReplayExport {
+        int export(ReplayExporter exporter, List<RobotPose> session, File target) throws Exception;
+    }
+
+
+    /**
+     * Запускает экспорт записанного движения робота в фоновом потоке с размером кадра,
+     * равным размеру игрового поля, и пишет результат в лог.
+     *
+     * @param target Каталог или файл, куда экспортируется повтор.
+     * @param export Способ экспорта.
+     */
+    private void runReplayExport(File target, ReplayExport export) {
+        ReplayExporter exporter = new ReplayExporter(Math.max(1, gameVisualizer.getWidth()), Math.max(1, gameVisualizer.getHeight()),
+                REPLAY_FRAMES_PER_SECOND, Runtime.getRuntime().availableProcessors());
+        List<RobotPose> session = sessionRecorder.snapshot();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return export.export(exporter, session, target);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Logger.info("{}: {} -> {}", LocalizationManager.getString("exportReplayMessage"), get(), target);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    Logger.error("{}: {}", LocalizationManager.getString("exportReplayFailedMessage"), e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+
     /**
      * Устанавливает указанный класс внешнего вида LookAndFeel для приложения.
      * @param className Имя класса внешнего вида LookAndFeel.
@@ -368,6 +743,16 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
         systemLookAndFeel.setText(LocalizationManager.getString("systemLookAndFeelText"));
         addLogMessageItem.setText(LocalizationManager.getString("addLogMessageItem"));
         loadRobotMenuItem.setText(LocalizationManager.getString("loadRobotMenuItem"));
+        simulationMenu.setText(LocalizationManager.getString("simulationMenuText"));
+        simulationSpeedItem.setText(LocalizationManager.getString("simulationSpeedItem"));
+        renderStatsItem.setText(LocalizationManager.getString("renderStatsItem"));
+        tickPeriodMenu.setText(LocalizationManager.getString("tickPeriodMenuText"));
+        exportReplayItem.setText(LocalizationManager.getString("exportReplayItem"));
+        exportReplayGifItem.setText(LocalizationManager.getString("exportReplayGifItem"));
+        showTrailItem.setText(LocalizationManager.getString("showTrailItem"));
+        robotSwarmItem.setText(LocalizationManager.getString("robotSwarmItem"));
+        logArchiveStatsItem.setText(LocalizationManager.getString("logArchiveStatsItem"));
+        logSinkStatsItem.setText(LocalizationManager.getString("logSinkStatsItem"));
         UIManager.put("OptionPane.yesButtonText", LocalizationManager.getString("yesButtonText"));
         UIManager.put("OptionPane.noButtonText", LocalizationManager.getString("noButtonText"));
     }
@@ -382,6 +767,7 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
 
         if (confirmed == JOptionPane.YES_OPTION) {
             saveState(); //сохранение состояния окон
+            AppConfig.getInstance().flush(); // единственная запись файла конфигурации при выходе
             dispose();
             setDefaultCloseOperation(EXIT_ON_CLOSE);
         }
@@ -407,44 +793,74 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
         AppConfig appConfig = AppConfig.getInstance();
         // Проходим по всем окнам на рабочей области
         for (JInternalFrame frame : desktopPane.getAllFrames()) {
-            // Проверяем, является ли окно экземпляром класса, реализующего интерфейс Stateful
-            if (frame instanceof Stateful) {
-                // Определяем уникальный идентификатор окна
-                String windowId = frame instanceof LogWindow ? LOG_WINDOW_ID : (frame instanceof RobotCoordinatesWindow ? ROBOT_COORDINATES_WINDOW_ID : GAME_WINDOW_ID);
+            // Определяем уникальный идентификатор окна
+            String windowId = getWindowId(frame);
+            if (windowId != null) {
                 // Сохраняем состояние окна с помощью AppConfig
                 appConfig.saveWindowState(windowId, new WindowState(frame.getX(), frame.getY(), frame.getWidth(), frame.getHeight(), frame.isIcon()));
             }
         }
-        // Сохраняем все данные в конфигурационный файл
+        // Планируем одну запись конфигурационного файла на все окна
         appConfig.saveConfig();
     }
 
 
     /**
-     * Восстанавливает состояние окон из конфигурационного файла.
+     * Возвращает идентификатор, под которым сохраняется состояние окна.
+     * Временные окна (например, окно роя роботов) не сохраняются.
+     *
+     * @param frame Внутреннее окно.
+     * @return Идентификатор окна или null, если состояние окна не сохраняется.
+     */
+    private String getWindowId(JInternalFrame frame) {
+        if (frame instanceof LogWindow) {
+            return LOG_WINDOW_ID;
+        }
+        if (frame instanceof RobotCoordinatesWindow) {
+            return ROBOT_COORDINATES_WINDOW_ID;
+        }
+        if (frame == gameWindow) {
+            return GAME_WINDOW_ID;
+        }
+        return null;
+    }
+
+
+    /**
+     * Восстанавливает состояние созданных окон из конфигурации, если она уже прочитана.
+     * Окна, созданные позже, получают свое состояние при создании.
      */
     @Override
     public void restoreState() {
-        AppConfig appConfig = AppConfig.getInstance();
-        // Загружаем конфигурацию из файла
-        appConfig.loadConfig();
         // Проходим по всем окнам на рабочей области
         for (JInternalFrame frame : desktopPane.getAllFrames()) {
-            // Проверяем, является ли окно экземпляром класса, реализующего интерфейс Stateful
-            if (frame instanceof Stateful) {
-                // Определяем уникальный идентификатор окна
-                String windowId = frame instanceof LogWindow ? LOG_WINDOW_ID : (frame instanceof RobotCoordinatesWindow ? ROBOT_COORDINATES_WINDOW_ID : GAME_WINDOW_ID);
-                // Получаем сохраненное состояние окна из AppConfig
-                WindowState state = appConfig.getWindowState(windowId);
-                // Если состояние найдено, устанавливаем соответствующие размеры, положение и проверяем, было ли окно свернуто
-                if (state != null) {
-                    frame.setBounds(state.getX(), state.getY(), state.getWidth(), state.getHeight());
-                    try {
-                        frame.setIcon(state.isIconified());
-                    } catch (java.beans.PropertyVetoException e) {
-                        e.printStackTrace();
-                    }
-                }
+            applyWindowState(frame);
+        }
+    }
+
+
+    /**
+     * Применяет к окну сохраненные размеры, положение и свернутость, если конфигурация уже прочитана
+     * и для окна есть сохраненное состояние.
+     *
+     * @param frame Внутреннее окно.
+     */
+    private void applyWindowState(JInternalFrame frame) {
+        AppConfig appConfig = AppConfig.getInstance();
+        // Определяем уникальный идентификатор окна
+        String windowId = getWindowId(frame);
+        if (windowId == null || !appConfig.isLoaded()) {
+            return;
+        }
+        // Получаем сохраненное состояние окна из AppConfig
+        WindowState state = appConfig.getWindowState(windowId);
+        // Если состояние найдено, устанавливаем соответствующие размеры, положение и проверяем, было ли окно свернуто
+        if (state != null) {
+            frame.setBounds(state.getX(), state.getY(), state.getWidth(), state.getHeight());
+            try {
+                frame.setIcon(state.isIconified());
+            } catch (java.beans.PropertyVetoException e) {
+                e.printStackTrace();
             }
         }
     }
@@ -470,10 +886,17 @@ public class MainApplicationFrame extends JFrame implements Stateful, Localizati
             Field visualizerField = MainApplicationFrame.class.getDeclaredField("gameVisualizer");
             visualizerField.setAccessible(true);
             visualizerField.set(this, newGameVisualizer);
+            sessionRecorder.attach(newRobotModel);
+            newGameVisualizer.setTrailVisible(showTrailItem.isSelected());
 
             saveState();
-            desktopPane.remove(gameWindow);
-            desktopPane.remove(robotCoordinatesWindow);
+            if (gameWindow != null) {
+                gameWindow.getGameController().stop();
+                desktopPane.remove(gameWindow);
+            }
+            if (robotCoordinatesWindow != null) {
+                desktopPane.remove(robotCoordinatesWindow);
+            }
 
 
             gameWindow = createRobotGameWindow(newRobotModel, newGameVisualizer);
@@ -0,0 +1,330 @@
+package gui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Визуализатор роя роботов, рассчитанный на десятки тысяч роботов в кадре.
+ * <p>
+ * Роботы вне видимой области панели отбрасываются. Видимые роботы одного вида собираются
+ * в один {@link Path2D}, который заливается одним вызовом. Детализация зависит от масштаба:
+ * при крупном масштабе рисуются полные эллипсы, при мелком — точки, а при очень мелком —
+ * карта плотности по ячейкам экрана. Если видимых роботов слишком много для выбранной
+ * детализации, она дополнительно понижается, чтобы время кадра оставалось ограниченным.
+ * Детализация выбирается по всей видимой части поля, а не по перерисовываемой области,
+ * чтобы соседние области одного кадра не рисовались по-разному.
+ * </p>
+ */
+public class MultiRobotVisualizer extends AGameVisualizer {
+
+    /**
+     * Длина корпуса робота.
+     */
+    private static final double BODY_LENGTH = 30;
+
+    /**
+     * Ширина корпуса робота.
+     */
+    private static final double BODY_WIDTH = 10;
+
+    /**
+     * Смещение глаза робота от центра корпуса.
+     */
+    private static final double EYE_OFFSET = 10;
+
+    /**
+     * Диаметр глаза робота.
+     */
+    private static final double EYE_DIAMETER = 5;
+
+    /**
+     * Видимая длина робота в пикселях, начиная с которой рисуются полные эллипсы.
+     */
+    private static final double FULL_DETAIL_MIN_PIXELS = 8;
+
+    /**
+     * Видимая длина робота в пикселях, начиная с которой рисуются точки, а не карта плотности.
+     */
+    private static final double DOT_DETAIL_MIN_PIXELS = 1.5;
+
+    /**
+     * Наибольшее количество видимых роботов, которые рисуются полными эллипсами.
+     */
+    private static final int FULL_DETAIL_MAX_VISIBLE = 500;
+
+    /**
+     * Наибольшее количество видимых роботов, которые рисуются точками.
+     */
+    private static final int DOT_DETAIL_MAX_VISIBLE = 10000;
+
+    /**
+     * Размер точки робота в пикселях.
+     */
+    private static final double DOT_PIXELS = 2;
+
+    /**
+     * Размер ячейки карты плотности в пикселях.
+     */
+    private static final int HEATMAP_CELL_PIXELS = 4;
+
+    /**
+     * Количество роботов в ячейке, при котором ячейка окрашивается полностью.
+     */
+    private static final int HEATMAP_SATURATION = 16;
+
+    /**
+     * Коэффициент для приближения четверти эллипса кубической кривой Безье.
+     */
+    private static final double KAPPA = 0.5522847498;
+
+    /**
+     * Цвета ячеек карты плотности (ARGB) по количеству роботов.
+     */
+    private static final int[] HEATMAP_PALETTE = new int[HEATMAP_SATURATION + 1];
+
+    static {
+        for (int i = 1; i <= HEATMAP_SATURATION; i++) {
+            HEATMAP_PALETTE[i] = new Color(255, 0, 255, 40 + 215 * i / HEATMAP_SATURATION).getRGB();
+        }
+    }
+
+    /**
+     * Рой роботов для отображения.
+     */
+    private final RobotSwarm swarm;
+
+    /**
+     * Контур корпусов, переиспользуется между кадрами.
+     */
+    private final Path2D.Double bodies = new Path2D.Double(Path2D.WIND_NON_ZERO);
+
+    /**
+     * Контур глаз, переиспользуется между кадрами.
+     */
+    private final Path2D.Double eyes = new Path2D.Double(Path2D.WIND_NON_ZERO);
+
+    /**
+     * Изображение карты плотности: один пиксель на ячейку, переиспользуется между кадрами.
+     */
+    private BufferedImage heatmapImage;
+
+    /**
+     * Преобразование изображения карты плотности в координаты поля.
+     */
+    private final AffineTransform heatmapTransform = new AffineTransform();
+
+    /**
+     * Конструктор класса MultiRobotVisualizer.
+     *
+     * @param swarm Рой роботов для отображения.
+     */
+    public MultiRobotVisualizer(RobotSwarm swarm) {
+        super(swarm);
+        this.swarm = swarm;
+    }
+
+    /**
+     * Рисует статический слой, точку клика и всех видимых роботов роя.
+     *
+     * @param g Графический контекст для отрисовки.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+
+        Rectangle visible = getVisibleWorldBounds();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = visible;
+        }
+        double zoom = getZoom();
+        double robotPixels = BODY_LENGTH * zoom;
+        RobotSwarm.Poses poses = swarm.getPoses();
+
+        int visibleCount = robotPixels >= DOT_DETAIL_MIN_PIXELS ? countVisible(poses, visible) : 0;
+        if (robotPixels >= FULL_DETAIL_MIN_PIXELS && visibleCount <= FULL_DETAIL_MAX_VISIBLE) {
+            paintFull(g2d, poses, clip);
+        } else if (robotPixels >= DOT_DETAIL_MIN_PIXELS && visibleCount <= DOT_DETAIL_MAX_VISIBLE) {
+            paintDots(g2d, poses, clip, zoom);
+        } else {
+            paintHeatmap(g2d, poses, clip, zoom);
+        }
+    }
+
+    /**
+     * Подсчитывает роботов, центры которых находятся в видимой области.
+     *
+     * @param poses   Снимок положений роботов.
+     * @param visible Видимая область в координатах поля.
+     * @return Количество видимых роботов.
+     */
+    private int countVisible(RobotSwarm.Poses poses, Rectangle visible) {
+        double minX = visible.getMinX();
+        double maxX = visible.getMaxX();
+        double minY = visible.getMinY();
+        double maxY = visible.getMaxY();
+        int count = 0;
+        for (int i = 0; i < poses.size(); i++) {
+            double x = poses.x[i];
+            double y = poses.y[i];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Рисует видимых роботов полными эллипсами: все корпуса одной заливкой и одним контуром,
+     * все глаза — так же.
+     *
+     * @param g       Графический контекст для отрисовки.
+     * @param poses   Снимок положений роботов.
+     * @param visible Перерисовываемая область в координатах поля.
+     */
+    private void paintFull(Graphics2D g, RobotSwarm.Poses poses, Rectangle visible) {
+        double margin = BODY_LENGTH / 2 + 1;
+        double minX = visible.getMinX() - margin;
+        double maxX = visible.getMaxX() + margin;
+        double minY = visible.getMinY() - margin;
+        double maxY = visible.getMaxY() + margin;
+
+        bodies.reset();
+        eyes.reset();
+        for (int i = 0; i < poses.size(); i++) {
+            double x = poses.x[i];
+            double y = poses.y[i];
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                continue;
+            }
+            double cos = Math.cos(poses.direction[i]);
+            double sin = Math.sin(poses.direction[i]);
+            appendEllipse(bodies, x, y, BODY_LENGTH / 2, BODY_WIDTH / 2, cos, sin);
+            appendEllipse(eyes, x + EYE_OFFSET * cos, y + EYE_OFFSET * sin, EYE_DIAMETER / 2, EYE_DIAMETER / 2, cos, sin);
+        }
+
+        g.setColor(Color.MAGENTA);
+        g.fill(bodies);
+        g.setColor(Color.BLACK);
+        g.draw(bodies);
+        g.setColor(Color.WHITE);
+        g.fill(eyes);
+        g.setColor(Color.BLACK);
+        g.draw(eyes);
+    }
+
+    /**
+     * Рисует видимых роботов точками одной заливкой.
+     *
+     * @param g       Графический контекст для отрисовки.
+     * @param poses   Снимок положений роботов.
+     * @param visible Перерисовываемая область в координатах поля.
+     * @param zoom    Масштаб отображения.
+     */
+    private void paintDots(Graphics2D g, RobotSwarm.Poses poses, Rectangle visible, double zoom) {
+        double half = DOT_PIXELS / zoom / 2;
+        double minX = visible.getMinX() - half;
+        double maxX = visible.getMaxX() + half;
+        double minY = visible.getMinY() - half;
+        double maxY = visible.getMaxY() + half;
+
+        bodies.reset();
+        for (int i = 0; i < poses.size(); i++) {
+            double x = poses.x[i];
+            double y = poses.y[i];
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                continue;
+            }
+            bodies.moveTo(x - half, y - half);
+            bodies.lineTo(x + half, y - half);
+            bodies.lineTo(x + half, y + half);
+            bodies.lineTo(x - half, y + half);
+            bodies.closePath();
+        }
+        g.setColor(Color.MAGENTA);
+        g.fill(bodies);
+    }
+
+    /**
+     * Рисует карту плотности: поле делится на ячейки экрана, и каждая ячейка видимой области
+     * окрашивается тем ярче, чем больше в нее попало роботов. Сетка ячеек привязана к началу
+     * координат поля, а не к видимой области, поэтому не сдвигается от перерисовки к перерисовке.
+     * Ячейки записываются прямо в пиксели небольшого изображения, которое затем растягивается
+     * на видимую область.
+     *
+     * @param g       Графический контекст для отрисовки.
+     * @param poses   Снимок положений роботов.
+     * @param visible Перерисовываемая область в координатах поля.
+     * @param zoom    Масштаб отображения.
+     */
+    private void paintHeatmap(Graphics2D g, RobotSwarm.Poses poses, Rectangle visible, double zoom) {
+        double cellSize = HEATMAP_CELL_PIXELS / zoom;
+        double originX = Math.floor(visible.getMinX() / cellSize) * cellSize;
+        double originY = Math.floor(visible.getMinY() / cellSize) * cellSize;
+        int columns = Math.max(1, (int) Math.ceil((visible.getMaxX() - originX) / cellSize));
+        int rows = Math.max(1, (int) Math.ceil((visible.getMaxY() - originY) / cellSize));
+        if (heatmapImage == null || heatmapImage.getWidth() != columns || heatmapImage.getHeight() != rows) {
+            heatmapImage = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        }
+        // Пока идет подсчет, пиксели хранят количество роботов в ячейке, затем заменяются цветом
+        int[] cells = ((DataBufferInt) heatmapImage.getRaster().getDataBuffer()).getData();
+        Arrays.fill(cells, 0);
+
+        for (int i = 0; i < poses.size(); i++) {
+            int column = (int) Math.floor((poses.x[i] - originX) / cellSize);
+            int row = (int) Math.floor((poses.y[i] - originY) / cellSize);
+            if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                cells[row * columns + column]++;
+            }
+        }
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = HEATMAP_PALETTE[Math.min(cells[i], HEATMAP_SATURATION)];
+        }
+
+        heatmapTransform.setToTranslation(originX, originY);
+        heatmapTransform.scale(cellSize, cellSize);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(heatmapImage, heatmapTransform, null);
+    }
+
+    /**
+     * Добавляет в контур повернутый эллипс, составленный из четырех кривых Безье,
+     * без создания промежуточных фигур.
+     *
+     * @param path    Контур, в который добавляется эллипс.
+     * @param centerX Координата X центра.
+     * @param centerY Координата Y центра.
+     * @param radiusX Полуось вдоль направления.
+     * @param radiusY Полуось поперек направления.
+     * @param cos     Косинус угла поворота.
+     * @param sin     Синус угла поворота.
+     */
+    private static void appendEllipse(Path2D path, double centerX, double centerY,
+                                      double radiusX, double radiusY, double cos, double sin) {
+        // Векторы полуосей после поворота
+        double ax = radiusX * cos;
+        double ay = radiusX * sin;
+        double bx = -radiusY * sin;
+        double by = radiusY * cos;
+
+        path.moveTo(centerX + ax, centerY + ay);
+        path.curveTo(centerX + ax + KAPPA * bx, centerY + ay + KAPPA * by,
+                centerX + KAPPA * ax + bx, centerY + KAPPA * ay + by,
+                centerX + bx, centerY + by);
+        path.curveTo(centerX - KAPPA * ax + bx, centerY - KAPPA * ay + by,
+                centerX - ax + KAPPA * bx, centerY - ay + KAPPA * by,
+                centerX - ax, centerY - ay);
+        path.curveTo(centerX - ax - KAPPA * bx, centerY - ay - KAPPA * by,
+                centerX - KAPPA * ax - bx, centerY - KAPPA * ay - by,
+                centerX - bx, centerY - by);
+        path.curveTo(centerX + KAPPA * ax - bx, centerY + KAPPA * ay - by,
+                centerX + ax - KAPPA * bx, centerY + ay - KAPPA * by,
+                centerX + ax, centerY + ay);
+        path.closePath();
+    }
+}
@@ -0,0 +1,35 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие Java Flight Recorder для загрузки модели или визуализатора робота из JAR-файла.
+ */
+@Name("robots.PluginLoad")
+@Label("Plugin Load")
+@Category({"Robots", "Plugins"})
+@Description("Загрузка класса робота или визуализатора из JAR-файла")
+public class PluginLoadEvent extends Event {
+
+    /**
+     * Путь к JAR-файлу.
+     */
+    @Label("Jar File")
+    public String jarFile;
+
+    /**
+     * Полное имя загружаемого класса.
+     */
+    @Label("Class Name")
+    public String className;
+
+    /**
+     * Признак успешной загрузки.
+     */
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,162 @@
+package gui;
+
+import javax.swing.Timer;
+import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Планировщик кадров визуализатора.
+ * <p>
+ * Объединяет все запросы на перерисовку, пришедшие между кадрами, в один кадр: запрос лишь
+ * помечает визуализатор как измененный, а таймер Swing не чаще одного раза за период кадра
+ * просит визуализатор перерисовать измененную область. Если изменений долго нет, таймер
+ * останавливается и запускается снова при следующем запросе.
+ * </p>
+ * <p>
+ * Также ведет статистику отрисовки: число кадров в секунду и среднее время отрисовки кадра.
+ * </p>
+ */
+public class RenderScheduler {
+
+    /**
+     * Период кадра в миллисекундах (около 60 кадров в секунду).
+     */
+    private static final int FRAME_PERIOD_MILLIS = 16;
+
+    /**
+     * Количество кадров без изменений, после которого таймер останавливается.
+     */
+    private static final int IDLE_FRAMES_BEFORE_STOP = 30;
+
+    /**
+     * Интервал, за который вычисляется статистика отрисовки, в наносекундах.
+     */
+    private static final long STATS_WINDOW_NANOS = 1_000_000_000L;
+
+    /**
+     * Визуализатор, кадры которого планируются.
+     */
+    private final AGameVisualizer visualizer;
+
+    /**
+     * Таймер кадров, срабатывает в потоке обработки событий.
+     */
+    private final Timer frameTimer;
+
+    /**
+     * Признак того, что с прошлого кадра что-то изменилось.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Признак того, что таймер кадров запущен или его запуск уже запланирован.
+     */
+    private final AtomicBoolean active = new AtomicBoolean();
+
+    /**
+     * Количество подряд идущих кадров без изменений.
+     */
+    private int idleFrames;
+
+    /**
+     * Начало текущего интервала сбора статистики.
+     */
+    private long statsWindowStartNanos = System.nanoTime();
+
+    /**
+     * Количество отрисовок в текущем интервале.
+     */
+    private int statsFrames;
+
+    /**
+     * Суммарное время отрисовок в текущем интервале в наносекундах.
+     */
+    private long statsPaintNanos;
+
+    /**
+     * Число кадров в секунду за последний интервал.
+     */
+    private volatile double framesPerSecond;
+
+    /**
+     * Среднее время отрисовки кадра за последний интервал в миллисекундах.
+     */
+    private volatile double averagePaintMillis;
+
+    /**
+     * Создает планировщик кадров для визуализатора.
+     *
+     * @param visualizer Визуализатор, который будет перерисовываться.
+     */
+    public RenderScheduler(AGameVisualizer visualizer) {
+        this.visualizer = visualizer;
+        frameTimer = new Timer(FRAME_PERIOD_MILLIS, e -> onFrame());
+        frameTimer.setCoalesce(true);
+    }
+
+    /**
+     * Запрашивает перерисовку в ближайшем кадре. Может вызываться из любого потока.
+     */
+    public void requestFrame() {
+        dirty.set(true);
+        if (active.compareAndSet(false, true)) {
+            EventQueue.invokeLater(frameTimer::start);
+        }
+    }
+
+    /**
+     * Обрабатывает срабатывание таймера кадров.
+     */
+    private void onFrame() {
+        if (dirty.getAndSet(false)) {
+            idleFrames = 0;
+            visualizer.renderFrame();
+            return;
+        }
+        if (++idleFrames >= IDLE_FRAMES_BEFORE_STOP) {
+            frameTimer.stop();
+            active.set(false);
+            // Запрос мог прийти между проверкой и остановкой таймера
+            if (dirty.get() && active.compareAndSet(false, true)) {
+                frameTimer.start();
+            }
+        }
+    }
+
+    /**
+     * Учитывает завершенную отрисовку в статистике.
+     *
+     * @param paintNanos Время отрисовки в наносекундах.
+     */
+    public void framePainted(long paintNanos) {
+        statsFrames++;
+        statsPaintNanos += paintNanos;
+        long now = System.nanoTime();
+        long windowNanos = now - statsWindowStartNanos;
+        if (windowNanos >= STATS_WINDOW_NANOS) {
+            framesPerSecond = statsFrames * 1_000_000_000.0 / windowNanos;
+            averagePaintMillis = statsPaintNanos / 1_000_000.0 / statsFrames;
+            statsFrames = 0;
+            statsPaintNanos = 0;
+            statsWindowStartNanos = now;
+        }
+    }
+
+    /**
+     * Возвращает число кадров в секунду за последний интервал измерения.
+     *
+     * @return Число кадров в секунду.
+     */
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    /**
+     * Возвращает среднее время отрисовки кадра за последний интервал измерения.
+     *
+     * @return Среднее время отрисовки в миллисекундах.
+     */
+    public double getAveragePaintMillis() {
+        return averagePaintMillis;
+    }
+}
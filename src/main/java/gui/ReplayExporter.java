@@ -0,0 +1,312 @@
+package gui;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Экспорт записанного повтора движения робота в последовательность PNG-кадров или анимированный GIF
+ * без отображения окон.
+ * <p>
+ * Кадры рисуются тем же {@link RobotRenderer}, что и в {@link GameVisualizer} на экране, но на внеэкранных
+ * изображениях и без компонентов Swing. Отрисовка и кодирование выполняются параллельно в пуле потоков.
+ * У каждого потока свой отрисовщик и свое изображение, а число одновременно обрабатываемых кадров
+ * ограничено, поэтому расход памяти не зависит от длины повтора.
+ * </p>
+ */
+public class ReplayExporter {
+
+    /**
+     * Количество кадров в обработке на один поток пула.
+     */
+    private static final int FRAMES_IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * Цвет фона кадра.
+     */
+    private static final Color BACKGROUND = Color.WHITE;
+
+    /**
+     * Ширина кадра.
+     */
+    private final int width;
+
+    /**
+     * Высота кадра.
+     */
+    private final int height;
+
+    /**
+     * Частота кадров повтора.
+     */
+    private final double framesPerSecond;
+
+    /**
+     * Количество потоков отрисовки.
+     */
+    private final int threads;
+
+    /**
+     * Создает экспорт повтора.
+     *
+     * @param width           Ширина кадра.
+     * @param height          Высота кадра.
+     * @param framesPerSecond Частота кадров повтора.
+     * @param threads         Количество потоков отрисовки.
+     */
+    public ReplayExporter(int width, int height, double framesPerSecond, int threads) {
+        if (width <= 0 || height <= 0 || framesPerSecond <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Размер кадра, частота кадров и число потоков должны быть положительными");
+        }
+        this.width = width;
+        this.height = height;
+        this.framesPerSecond = framesPerSecond;
+        this.threads = threads;
+    }
+
+    /**
+     * Экспортирует повтор в каталог в виде файлов frame_000000.png, frame_000001.png и т.д.
+     *
+     * @param session   Записанные положения робота в порядке времени.
+     * @param directory Каталог для кадров.
+     * @return Количество записанных кадров.
+     * @throws IOException          Если не удалось записать кадр.
+     * @throws InterruptedException Если поток был прерван во время экспорта.
+     */
+    public int exportPngSequence(List<RobotPose> session, File directory) throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + directory);
+        }
+        RobotPose[] frames = sampleFrames(session);
+        ExecutorService pool = createPool();
+        ThreadLocal<FrameRenderer> renderers = ThreadLocal.withInitial(FrameRenderer::new);
+        Semaphore inFlight = new Semaphore(threads * FRAMES_IN_FLIGHT_PER_THREAD);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (int i = 0; i < frames.length && failure.get() == null; i++) {
+                RobotPose pose = frames[i];
+                File frameFile = new File(directory, String.format(Locale.ROOT, "frame_%06d.png", i));
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        ImageIO.write(renderers.get().render(pose), "png", frameFile);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw new IOException("Не удалось экспортировать кадр", failure.get());
+        }
+        return frames.length;
+    }
+
+    /**
+     * Экспортирует повтор в анимированный GIF. Кадры рисуются и переводятся в палитру параллельно,
+     * а записываются в файл по порядку.
+     *
+     * @param session Записанные положения робота в порядке времени.
+     * @param file    Файл GIF.
+     * @return Количество записанных кадров.
+     * @throws IOException          Если не удалось записать файл.
+     * @throws InterruptedException Если поток был прерван во время экспорта.
+     */
+    public int exportAnimatedGif(List<RobotPose> session, File file) throws IOException, InterruptedException {
+        RobotPose[] frames = sampleFrames(session);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        ExecutorService pool = createPool();
+        ThreadLocal<FrameRenderer> renderers = ThreadLocal.withInitial(FrameRenderer::new);
+        ArrayDeque<Future<BufferedImage>> window = new ArrayDeque<>();
+        int delayCentiseconds = Math.max(1, (int) Math.round(100 / framesPerSecond));
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            boolean first = true;
+            for (int i = 0; i < frames.length || !window.isEmpty(); ) {
+                if (i < frames.length && window.size() < threads * FRAMES_IN_FLIGHT_PER_THREAD) {
+                    RobotPose pose = frames[i++];
+                    window.addLast(pool.submit(() -> renderers.get().renderIndexed(pose)));
+                    continue;
+                }
+                BufferedImage image = window.removeFirst().get();
+                writer.writeToSequence(new IIOImage(image, null, createGifMetadata(writer, image, delayCentiseconds, first)), null);
+                first = false;
+            }
+            writer.endWriteSequence();
+        } catch (ExecutionException e) {
+            throw new IOException("Не удалось отрисовать кадр", e.getCause());
+        } finally {
+            writer.dispose();
+            pool.shutdownNow();
+        }
+        return frames.length;
+    }
+
+    /**
+     * Выбирает положения робота для кадров с постоянной частотой, интерполируя между записанными положениями.
+     *
+     * @param session Записанные положения робота в порядке времени.
+     * @return Положения робота для каждого кадра.
+     */
+    RobotPose[] sampleFrames(List<RobotPose> session) {
+        if (session.isEmpty()) {
+            return new RobotPose[0];
+        }
+        long start = session.get(0).getTimeNanos();
+        long duration = session.get(session.size() - 1).getTimeNanos() - start;
+        double frameNanos = 1_000_000_000.0 / framesPerSecond;
+        int frameCount = (int) Math.floor(duration / frameNanos + 1e-6) + 1;
+        RobotPose[] frames = new RobotPose[frameCount];
+        int index = 0;
+        for (int frame = 0; frame < frameCount; frame++) {
+            long time = start + (long) (frame * frameNanos);
+            while (index < session.size() - 2 && session.get(index + 1).getTimeNanos() <= time) {
+                index++;
+            }
+            RobotPose from = session.get(index);
+            RobotPose to = session.get(Math.min(index + 1, session.size() - 1));
+            frames[frame] = RobotPose.interpolate(from, to, time);
+        }
+        return frames;
+    }
+
+    /**
+     * Создает пул потоков отрисовки.
+     *
+     * @return Пул потоков.
+     */
+    private ExecutorService createPool() {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ReplayExporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создает метаданные кадра GIF: задержку кадра и, для первого кадра, бесконечное повторение.
+     *
+     * @param writer            Записывающий GIF.
+     * @param image             Кадр.
+     * @param delayCentiseconds Задержка кадра в сотых долях секунды.
+     * @param first             Признак первого кадра.
+     * @return Метаданные кадра.
+     * @throws IOException Если метаданные не удалось заполнить.
+     */
+    private static IIOMetadata createGifMetadata(ImageWriter writer, BufferedImage image, int delayCentiseconds,
+                                                 boolean first) throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = getOrCreateChild(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayCentiseconds));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (first) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            getOrCreateChild(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+
+    /**
+     * Возвращает дочерний узел метаданных с заданным именем, создавая его при отсутствии.
+     *
+     * @param root Родительский узел.
+     * @param name Имя дочернего узла.
+     * @return Дочерний узел.
+     */
+    private static IIOMetadataNode getOrCreateChild(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    /**
+     * Отрисовщик кадров одного потока: собственный {@link RobotRenderer} и переиспользуемое изображение.
+     */
+    private class FrameRenderer {
+
+        /**
+         * Отрисовщик поля и робота.
+         */
+        private final RobotRenderer renderer = new RobotRenderer();
+
+        /**
+         * Изображение кадра, переиспользуется между кадрами.
+         */
+        private final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        /**
+         * Рисует кадр в переиспользуемое изображение.
+         *
+         * @param pose Положение робота.
+         * @return Изображение кадра, действительное до следующего вызова в этом потоке.
+         */
+        BufferedImage render(RobotPose pose) {
+            Graphics2D g = image.createGraphics();
+            try {
+                renderer.paintFrame(g, pose, width, height, BACKGROUND);
+            } finally {
+                g.dispose();
+            }
+            return image;
+        }
+
+        /**
+         * Рисует кадр и переводит его в изображение с палитрой для GIF.
+         *
+         * @param pose Положение робота.
+         * @return Новое изображение кадра с палитрой.
+         */
+        BufferedImage renderIndexed(RobotPose pose) {
+            BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED);
+            Graphics2D g = indexed.createGraphics();
+            try {
+                g.drawImage(render(pose), 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            return indexed;
+        }
+    }
+}
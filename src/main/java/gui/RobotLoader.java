@@ -25,6 +25,11 @@ public class RobotLoader {
             JOptionPane.showMessageDialog(null, "Выбранный файл не является JAR-файлом", "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
 
+        PluginLoadEvent event = new PluginLoadEvent();
+        event.begin();
+        event.jarFile = jarFile.getPath();
+        event.className = className;
+
         // Создаем URLClassLoader для загрузки классов из .jar файла
         try (URLClassLoader classLoader = URLClassLoader.newInstance(new URL[]{jarFile.toURI().toURL()})) {
             // Загружаем класс робота
@@ -38,7 +43,10 @@ public class RobotLoader {
                 throw new IllegalArgumentException("Класс робота должен реализовывать интерфейс IRobotModel");
             }
 
+            event.success = true;
             return (IRobotModel) robotObject;
+        } finally {
+            event.commit();
         }
     }
 }
@@ -1,8 +1,9 @@
 package gui;
 
+import util.ListenerRegistry;
+
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Класс моделирует поведение движения робота в двухмерном пространстве.
@@ -55,35 +56,140 @@ public class RobotModel implements IRobotModel {
     private boolean rotationFlag = false;
 
     /**
-     * Список слушателей изменения модели робота.
+     * Список слушателей изменения модели робота. Его можно пополнять, пока поток таймера
+     * уведомляет слушателей.
+     */
+    private final ListenerRegistry<RobotModelListener> listeners = new ListenerRegistry<>();
+
+    /**
+     * Уведомление одного слушателя о текущем положении; создается один раз, чтобы уведомление
+     * не выделяло память.
      */
-    private List<RobotModelListener> listeners = new ArrayList<>();
+    private final Consumer<RobotModelListener> notifyAction =
+            listener -> listener.onRobotPositionChanged(robotPositionX, robotPositionY, robotDirection);
 
     /**
      * Модель робота, используемая в приложении.
      */
     private IRobotModel robotModel;
 
+    /**
+     * Положение робота после предпоследнего шага моделирования.
+     */
+    private volatile RobotPose previousPose = new RobotPose(robotPositionX, robotPositionY, robotDirection, System.nanoTime());
+
+    /**
+     * Положение робота после последнего шага моделирования.
+     */
+    private volatile RobotPose currentPose = previousPose;
+
+    /**
+     * Наименьшее расстояние между точками следа.
+     */
+    private static final double TRAIL_SAMPLE_SPACING = 4;
+
+    /**
+     * Наибольшее число точек следа.
+     */
+    private static final int TRAIL_MAX_POINTS = 2048;
+
+    /**
+     * След робота или null, пока запись следа ни разу не включалась. Создается по требованию,
+     * чтобы модели без отображаемого следа (например, роботы роя) не держали его буферы.
+     */
+    private volatile RobotTrail trail;
+
+    /**
+     * Записывается ли след.
+     */
+    private volatile boolean trailEnabled;
+
     public RobotModel() {
     }
 
     public RobotModel(IRobotModel robotModel) {
         this.robotModel = robotModel;
     }
+
+    /**
+     * Создает модель робота в заданном положении.
+     *
+     * @param x         Начальная координата X.
+     * @param y         Начальная координата Y.
+     * @param direction Начальное направление в радианах.
+     */
+    public RobotModel(double x, double y, double direction) {
+        robotPositionX = x;
+        robotPositionY = y;
+        robotDirection = asNormalizedRadians(direction);
+        targetPositionX = (int) x;
+        targetPositionY = (int) y;
+        previousPose = new RobotPose(robotPositionX, robotPositionY, robotDirection, System.nanoTime());
+        currentPose = previousPose;
+    }
     /**
      * Обновляет модель робота, двигая его к целевой точке.
      */
     public void updateModel() {
+        updateModel(1);
+    }
+
+
+    /**
+     * Выполняет несколько шагов движения к целевой точке, отбирая точки следа после каждого шага,
+     * если след записывается, запоминает положение с временем шага и уведомляет слушателей один раз,
+     * если робот сдвинулся.
+     *
+     * @param steps Количество шагов модели.
+     */
+    @Override
+    public void updateModel(int steps) {
+        advance(steps);
+    }
+
+
+    /**
+     * Выполняет несколько шагов движения к целевой точке так же, как {@link #updateModel(int)}.
+     *
+     * @param steps Количество шагов модели.
+     * @return Количество шагов, в которых робот сдвинулся.
+     */
+    @Override
+    public int advance(int steps) {
+        RobotTrail sampledTrail = trailEnabled ? trail : null;
+        int executed = 0;
+        while (executed < steps && step()) {
+            executed++;
+            if (sampledTrail != null) {
+                sampledTrail.sample(robotPositionX, robotPositionY);
+            }
+        }
+        // Предыдущее положение публикуется раньше текущего: читатель, увидевший новое текущее,
+        // увидит и соответствующее ему предыдущее
+        previousPose = currentPose;
+        currentPose = new RobotPose(robotPositionX, robotPositionY, robotDirection, System.nanoTime());
+        if (executed > 0) {
+            notifyListeners();
+        }
+        return executed;
+    }
+
+
+    /**
+     * Выполняет один шаг движения робота к целевой точке.
+     *
+     * @return true, если робот сдвинулся, false, если он уже достиг цели.
+     */
+    private boolean step() {
         double distance = distance(targetPositionX, targetPositionY, robotPositionX, robotPositionY);
         if (distance < 0.5) {
-            return;
+            return false;
         }
 
         double angleToTarget = angleTo (robotPositionX,robotPositionY, targetPositionX, targetPositionY );
         rotationAngle(angleToTarget);
         moveRobot();
-
-        notifyListeners();
+        return true;
     }
 
 
@@ -197,8 +303,13 @@ public class RobotModel implements IRobotModel {
      */
     @Override
     public void notifyListeners() {
-        for (RobotModelListener listener : listeners) {
-            listener.onRobotPositionChanged(robotPositionX, robotPositionY, robotDirection);
+        RobotNotifyEvent event = new RobotNotifyEvent();
+        event.begin();
+        listeners.forEach(notifyAction);
+        event.end();
+        if (event.shouldCommit()) {
+            event.listenerCount = listeners.size();
+            event.commit();
         }
     }
 
@@ -212,6 +323,72 @@ public class RobotModel implements IRobotModel {
     }
 
 
+    /**
+     * Возвращает положение робота после последнего шага моделирования.
+     * @return Текущее положение робота.
+     */
+    @Override
+    public RobotPose getCurrentPose() {
+        return currentPose;
+    }
+
+
+    /**
+     * Возвращает положение робота после предпоследнего шага моделирования.
+     * @return Предыдущее положение робота.
+     */
+    @Override
+    public RobotPose getPreviousPose() {
+        return previousPose;
+    }
+
+
+    /**
+     * Возвращает след робота.
+     *
+     * @return След робота или null, если запись следа еще не включалась.
+     */
+    @Override
+    public RobotTrail getTrail() {
+        return trail;
+    }
+
+
+    /**
+     * Включает или выключает запись следа. При первом включении след создается и начинается
+     * с текущего положения робота; выключенный след сохраняется, но не пополняется.
+     *
+     * @param enabled true, чтобы записывать след.
+     */
+    @Override
+    public synchronized void setTrailEnabled(boolean enabled) {
+        if (enabled && trail == null) {
+            RobotTrail created = new RobotTrail(TRAIL_SAMPLE_SPACING, TRAIL_MAX_POINTS);
+            created.sample(robotPositionX, robotPositionY);
+            trail = created;
+        }
+        trailEnabled = enabled;
+    }
+
+
+    /**
+     * Возвращает точную координату X робота.
+     * @return Координата X.
+     */
+    public double getRobotX() {
+        return robotPositionX;
+    }
+
+
+    /**
+     * Возвращает точную координату Y робота.
+     * @return Координата Y.
+     */
+    public double getRobotY() {
+        return robotPositionY;
+    }
+
+
     /**
      * Возвращает текущую позицию робота.
      */
@@ -0,0 +1,30 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder для рассылки уведомлений слушателям модели робота.
+ * <p>
+ * По умолчанию выключено, так как возникает на каждом шаге моделирования.
+ * </p>
+ */
+@Name("robots.RobotNotify")
+@Label("Robot Listeners Notify")
+@Category({"Robots", "Simulation"})
+@Description("Уведомление слушателей об изменении положения робота")
+@Enabled(false)
+@StackTrace(false)
+public class RobotNotifyEvent extends Event {
+
+    /**
+     * Количество уведомленных слушателей.
+     */
+    @Label("Listener Count")
+    public int listenerCount;
+}
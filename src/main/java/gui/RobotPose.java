@@ -0,0 +1,100 @@
+package gui;
+
+/**
+ * Положение и направление робота в момент времени шага моделирования. Объект неизменяемый.
+ */
+public final class RobotPose {
+
+    /**
+     * Координата X робота.
+     */
+    private final double x;
+
+    /**
+     * Координата Y робота.
+     */
+    private final double y;
+
+    /**
+     * Направление робота в радианах.
+     */
+    private final double direction;
+
+    /**
+     * Время шага моделирования по {@link System#nanoTime()}.
+     */
+    private final long timeNanos;
+
+    /**
+     * Создает положение робота.
+     *
+     * @param x         Координата X.
+     * @param y         Координата Y.
+     * @param direction Направление в радианах.
+     * @param timeNanos Время шага моделирования по {@link System#nanoTime()}.
+     */
+    public RobotPose(double x, double y, double direction, long timeNanos) {
+        this.x = x;
+        this.y = y;
+        this.direction = direction;
+        this.timeNanos = timeNanos;
+    }
+
+    /**
+     * Возвращает координату X робота.
+     * @return Координата X.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Возвращает координату Y робота.
+     * @return Координата Y.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Возвращает направление робота.
+     * @return Направление в радианах.
+     */
+    public double getDirection() {
+        return direction;
+    }
+
+    /**
+     * Возвращает время шага моделирования, к которому относится положение.
+     * @return Время по {@link System#nanoTime()}.
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * Вычисляет положение робота между двумя шагами моделирования.
+     * Направление интерполируется по кратчайшей дуге.
+     *
+     * @param from      Положение на предыдущем шаге.
+     * @param to        Положение на текущем шаге.
+     * @param timeNanos Момент времени; вне интервала шагов берется ближайший край.
+     * @return Интерполированное положение.
+     */
+    public static RobotPose interpolate(RobotPose from, RobotPose to, long timeNanos) {
+        long interval = to.timeNanos - from.timeNanos;
+        if (interval <= 0 || timeNanos >= to.timeNanos) {
+            return to;
+        }
+        if (timeNanos <= from.timeNanos) {
+            return from;
+        }
+        double alpha = (double) (timeNanos - from.timeNanos) / interval;
+        double turn = Math.IEEEremainder(to.direction - from.direction, 2 * Math.PI);
+        return new RobotPose(
+                from.x + (to.x - from.x) * alpha,
+                from.y + (to.y - from.y) * alpha,
+                Math.IEEEremainder(from.direction + turn * alpha, 2 * Math.PI),
+                timeNanos);
+    }
+}
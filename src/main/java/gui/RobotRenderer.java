@@ -0,0 +1,225 @@
+package gui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Рисование игрового поля с одним роботом без компонента Swing: сетка поля, корпус робота и его границы.
+ * <p>
+ * Используется визуализатором {@link GameVisualizer} на экране и {@link ReplayExporter} при экспорте
+ * повтора. Экспорт рисует кадры в потоках пула, где создавать компоненты Swing нельзя, поэтому
+ * отрисовка вынесена сюда и зависит только от графического контекста. Экземпляр хранит кэш
+ * изображений робота и не потокобезопасен: каждому потоку нужен свой.
+ * </p>
+ * <p>
+ * Овалы корпуса и глаза рисуются через {@link OvalPainter}, поэтому визуализатор может подменить
+ * их отрисовку своими методами {@code fillOval} и {@code drawOval}.
+ * </p>
+ */
+public class RobotRenderer {
+
+    /**
+     * Отрисовка овала с заданным центром.
+     */
+    public interface OvalPainter {
+
+        /**
+         * Заполняет овал с заданным центром.
+         *
+         * @param g       Графический контекст для отрисовки.
+         * @param centerX Координата X центра овала.
+         * @param centerY Координата Y центра овала.
+         * @param diam1   Диаметр овала по горизонтали.
+         * @param diam2   Диаметр овала по вертикали.
+         */
+        void fillOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2);
+
+        /**
+         * Рисует контур овала с заданным центром.
+         *
+         * @param g       Графический контекст для отрисовки.
+         * @param centerX Координата X центра овала.
+         * @param centerY Координата Y центра овала.
+         * @param diam1   Диаметр овала по горизонтали.
+         * @param diam2   Диаметр овала по вертикали.
+         */
+        void drawOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2);
+    }
+
+    /**
+     * Отрисовка овалов по умолчанию.
+     */
+    private static final OvalPainter DEFAULT_OVAL_PAINTER = new OvalPainter() {
+        @Override
+        public void fillOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+            g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+        }
+
+        @Override
+        public void drawOval(Graphics2D g, int centerX, int centerY, int diam1, int diam2) {
+            g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+        }
+    };
+
+    /**
+     * Длина корпуса робота.
+     */
+    private static final int BODY_LENGTH = 30;
+
+    /**
+     * Ширина корпуса робота.
+     */
+    private static final int BODY_WIDTH = 10;
+
+    /**
+     * Запас вокруг границ робота на толщину контура и сглаживание.
+     */
+    private static final int BOUNDS_MARGIN = 2;
+
+    /**
+     * Количество секторов направления в кэше изображений робота.
+     */
+    private static final int HEADING_BUCKETS = 128;
+
+    /**
+     * Шаг сетки игрового поля.
+     */
+    private static final int GRID_STEP = 50;
+
+    /**
+     * Цвет линий сетки.
+     */
+    private static final Color GRID_COLOR = new Color(0, 0, 0, 24);
+
+    /**
+     * Наименьшее расстояние между линиями сетки в пикселях: при отдалении шаг сетки удваивается.
+     */
+    private static final int MIN_GRID_PIXELS = 8;
+
+    /**
+     * Размер изображения робота: вмещает корпус при любом повороте.
+     */
+    private static final int SPRITE_SIZE = BODY_LENGTH + 2 * BOUNDS_MARGIN;
+
+    /**
+     * Отрисовка овалов корпуса и глаза.
+     */
+    private final OvalPainter ovalPainter;
+
+    /**
+     * Кэш повернутых изображений робота.
+     */
+    private final RobotSpriteCache spriteCache;
+
+    /**
+     * Конструктор класса RobotRenderer с отрисовкой овалов по умолчанию.
+     */
+    public RobotRenderer() {
+        this(DEFAULT_OVAL_PAINTER);
+    }
+
+    /**
+     * Конструктор класса RobotRenderer.
+     *
+     * @param ovalPainter Отрисовка овалов корпуса и глаза.
+     */
+    public RobotRenderer(OvalPainter ovalPainter) {
+        this.ovalPainter = ovalPainter;
+        this.spriteCache = new RobotSpriteCache(HEADING_BUCKETS, SPRITE_SIZE, this::drawRobotBody);
+    }
+
+    /**
+     * Рисует кадр целиком: фон, сетку и робота в заданном положении, без камеры (один пиксель на единицу поля).
+     *
+     * @param g          Графический контекст для отрисовки.
+     * @param pose       Положение робота.
+     * @param width      Ширина кадра.
+     * @param height     Высота кадра.
+     * @param background Цвет фона.
+     */
+    public void paintFrame(Graphics2D g, RobotPose pose, int width, int height, Color background) {
+        Rectangle2D area = new Rectangle2D.Double(0, 0, width, height);
+        g.setColor(background);
+        g.fill(area);
+        paintGrid(g, area);
+        paintRobot(g, pose.getX(), pose.getY(), pose.getDirection());
+    }
+
+    /**
+     * Рисует сетку участка поля. При отдалении шаг сетки удваивается, чтобы линии не сливались.
+     *
+     * @param g         Графический контекст, переведенный в координаты поля.
+     * @param worldArea Участок поля, который нужно нарисовать.
+     */
+    public void paintGrid(Graphics2D g, Rectangle2D worldArea) {
+        double step = GRID_STEP;
+        while (step * g.getTransform().getScaleX() < MIN_GRID_PIXELS) {
+            step *= 2;
+        }
+        g.setColor(GRID_COLOR);
+        g.setStroke(new BasicStroke(0f));
+        Line2D line = new Line2D.Double();
+        for (double x = Math.ceil(worldArea.getMinX() / step) * step; x < worldArea.getMaxX(); x += step) {
+            line.setLine(x, worldArea.getMinY(), x, worldArea.getMaxY());
+            g.draw(line);
+        }
+        for (double y = Math.ceil(worldArea.getMinY() / step) * step; y < worldArea.getMaxY(); y += step) {
+            line.setLine(worldArea.getMinX(), y, worldArea.getMaxX(), y);
+            g.draw(line);
+        }
+    }
+
+    /**
+     * Рисует робота. Робот копируется из кэша изображений, а не рисуется заново.
+     *
+     * @param g         Графический контекст, переведенный в координаты поля.
+     * @param x         Координата X центра робота.
+     * @param y         Координата Y центра робота.
+     * @param direction Направление робота в радианах.
+     */
+    public void paintRobot(Graphics2D g, double x, double y, double direction) {
+        spriteCache.draw(g, x, y, direction);
+    }
+
+    /**
+     * Возвращает границы повернутого корпуса робота.
+     *
+     * @param x         Координата X робота.
+     * @param y         Координата Y робота.
+     * @param direction Направление робота в радианах.
+     * @return Границы робота в координатах поля.
+     */
+    public Rectangle getRobotBounds(double x, double y, double direction) {
+        Rectangle body = new Rectangle((int) x - BODY_LENGTH / 2, (int) y - BODY_WIDTH / 2, BODY_LENGTH, BODY_WIDTH);
+        Rectangle bounds = AffineTransform.getRotateInstance(direction, (int) x, (int) y)
+                .createTransformedShape(body).getBounds();
+        bounds.grow(BOUNDS_MARGIN, BOUNDS_MARGIN);
+        return bounds;
+    }
+
+    /**
+     * Сбрасывает кэш изображений робота, например при смене внешнего вида.
+     */
+    public void invalidate() {
+        spriteCache.invalidate();
+    }
+
+    /**
+     * Рисует корпус робота с центром в начале координат, направленный вдоль оси X.
+     * Используется для построения кэша изображений.
+     *
+     * @param g2d Графический контекст для отрисовки.
+     */
+    private void drawRobotBody(Graphics2D g2d) {
+        g2d.setColor(Color.MAGENTA);
+        ovalPainter.fillOval(g2d, 0, 0, BODY_LENGTH, BODY_WIDTH);
+        g2d.setColor(Color.BLACK);
+        ovalPainter.drawOval(g2d, 0, 0, BODY_LENGTH, BODY_WIDTH);
+        g2d.setColor(Color.WHITE);
+        ovalPainter.fillOval(g2d, 10, 0, 5, 5);
+        g2d.setColor(Color.BLACK);
+        ovalPainter.drawOval(g2d, 10, 0, 5, 5);
+    }
+}
@@ -0,0 +1,104 @@
+package gui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Записывает положения робота во время работы для последующего экспорта повтора.
+ * <p>
+ * Хранит не больше {@link #MAX_POSES} положений: при переполнении отбрасываются самые старые.
+ * Слушатель вызывается в потоке моделирования, снимок записи можно брать из любого потока.
+ * </p>
+ */
+public class RobotSessionRecorder {
+
+    /**
+     * Наибольшее количество хранимых положений (около часа при шаге 10 мс).
+     */
+    private static final int MAX_POSES = 360_000;
+
+    /**
+     * Записываемая модель робота. Меняется под блокировкой {@link #poses}.
+     */
+    private volatile IRobotModel robotModel;
+
+    /**
+     * Записанные положения в порядке времени.
+     */
+    private final ArrayDeque<RobotPose> poses = new ArrayDeque<>();
+
+    /**
+     * Создает запись для модели робота и подписывается на ее изменения.
+     *
+     * @param robotModel Модель робота.
+     */
+    public RobotSessionRecorder(IRobotModel robotModel) {
+        attach(robotModel);
+    }
+
+    /**
+     * Начинает новую запись для другой модели робота. Модель не позволяет отписаться,
+     * поэтому уведомления прежней модели, если она еще движется, просто не записываются.
+     *
+     * @param robotModel Модель робота.
+     */
+    public void attach(IRobotModel robotModel) {
+        synchronized (poses) {
+            poses.clear();
+            this.robotModel = robotModel;
+        }
+        robotModel.addListener((x, y, direction) -> record(robotModel, x, y, direction));
+    }
+
+    /**
+     * Записывает положение робота. Если робот перед этим стоял, записывается и положение
+     * с предыдущего шага, чтобы при воспроизведении робот стоял, а не плыл через паузу.
+     *
+     * @param model     Модель, приславшая уведомление.
+     * @param x         Координата X робота.
+     * @param y         Координата Y робота.
+     * @param direction Направление робота.
+     */
+    private void record(IRobotModel model, double x, double y, double direction) {
+        if (model != robotModel) {
+            return;
+        }
+        RobotPose current = new RobotPose(x, y, direction, System.nanoTime());
+        RobotPose previous = model.getPreviousPose();
+        synchronized (poses) {
+            if (model != robotModel) {
+                return;
+            }
+            RobotPose last = poses.peekLast();
+            if (last != null && previous.getTimeNanos() > last.getTimeNanos()
+                    && previous.getTimeNanos() < current.getTimeNanos()) {
+                add(previous);
+            }
+            add(current);
+        }
+    }
+
+    /**
+     * Добавляет положение, отбрасывая самое старое при переполнении.
+     *
+     * @param pose Положение робота.
+     */
+    private void add(RobotPose pose) {
+        if (poses.size() >= MAX_POSES) {
+            poses.removeFirst();
+        }
+        poses.addLast(pose);
+    }
+
+    /**
+     * Возвращает копию записанных положений.
+     *
+     * @return Положения в порядке времени.
+     */
+    public List<RobotPose> snapshot() {
+        synchronized (poses) {
+            return new ArrayList<>(poses);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package gui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Кэш заранее отрисованных изображений робота для набора направлений.
+ * <p>
+ * Полный оборот делится на {@code headingBuckets} секторов. Для каждого сектора один раз рисуется
+ * изображение повернутого робота, после чего отрисовка робота сводится к копированию ближайшего
+ * изображения. Изображения создаются совместимыми с устройством вывода и в его масштабе, поэтому
+ * копируются без масштабирования. При смене устройства или масштаба кэш перестраивается сам,
+ * при смене внешнего вида его нужно сбросить методом {@link #invalidate()}.
+ * </p>
+ */
+public class RobotSpriteCache {
+
+    /**
+     * Рисует робота с центром в начале координат, направленного вдоль оси X.
+     */
+    public interface SpriteRenderer {
+
+        /**
+         * Рисует робота.
+         *
+         * @param g Графический контекст, уже повернутый на нужный угол.
+         */
+        void render(Graphics2D g);
+    }
+
+    /**
+     * Количество секторов направления.
+     */
+    private final int headingBuckets;
+
+    /**
+     * Размер стороны изображения в логических пикселях.
+     */
+    private final int spriteSize;
+
+    /**
+     * Процедура отрисовки робота.
+     */
+    private final SpriteRenderer renderer;
+
+    /**
+     * Изображения по секторам направления, создаются по мере надобности.
+     */
+    private BufferedImage[] sprites;
+
+    /**
+     * Конфигурация устройства, для которой построены изображения.
+     */
+    private GraphicsConfiguration configuration;
+
+    /**
+     * Масштаб устройства, для которого построены изображения.
+     */
+    private double scale;
+
+    /**
+     * Создает кэш изображений робота.
+     *
+     * @param headingBuckets Количество секторов направления.
+     * @param spriteSize     Размер стороны изображения в логических пикселях, должен вмещать повернутого робота.
+     * @param renderer       Процедура отрисовки робота.
+     */
+    public RobotSpriteCache(int headingBuckets, int spriteSize, SpriteRenderer renderer) {
+        this.headingBuckets = headingBuckets;
+        this.spriteSize = spriteSize;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Сбрасывает все построенные изображения.
+     */
+    public void invalidate() {
+        sprites = null;
+    }
+
+    /**
+     * Рисует робота копированием изображения ближайшего сектора направления.
+     *
+     * @param g         Графический контекст для отрисовки.
+     * @param x         Координата X центра робота.
+     * @param y         Координата Y центра робота.
+     * @param direction Направление робота в радианах.
+     */
+    public void draw(Graphics2D g, double x, double y, double direction) {
+        AffineTransform transform = g.getTransform();
+        double deviceScale = Math.hypot(transform.getScaleX(), transform.getShearY());
+        GraphicsConfiguration deviceConfiguration = g.getDeviceConfiguration();
+        if (sprites == null || deviceScale != scale || deviceConfiguration != configuration) {
+            sprites = new BufferedImage[headingBuckets];
+            scale = deviceScale;
+            configuration = deviceConfiguration;
+        }
+
+        int bucket = bucketOf(direction);
+        BufferedImage sprite = sprites[bucket];
+        if (sprite == null) {
+            sprite = createSprite(bucket);
+            sprites[bucket] = sprite;
+        }
+
+        Point2D center = transform.transform(new Point2D.Double(x, y), null);
+        g.setTransform(new AffineTransform());
+        g.drawImage(sprite,
+                (int) Math.round(center.getX() - sprite.getWidth() / 2.0),
+                (int) Math.round(center.getY() - sprite.getHeight() / 2.0), null);
+        g.setTransform(transform);
+    }
+
+    /**
+     * Возвращает номер сектора, ближайшего к направлению.
+     *
+     * @param direction Направление в радианах.
+     * @return Номер сектора от 0 до {@code headingBuckets - 1}.
+     */
+    private int bucketOf(double direction) {
+        int bucket = (int) Math.round(direction / (2 * Math.PI) * headingBuckets) % headingBuckets;
+        return bucket < 0 ? bucket + headingBuckets : bucket;
+    }
+
+    /**
+     * Рисует изображение робота для сектора направления.
+     *
+     * @param bucket Номер сектора.
+     * @return Изображение повернутого робота.
+     */
+    private BufferedImage createSprite(int bucket) {
+        int size = Math.max(1, (int) Math.ceil(spriteSize * scale));
+        BufferedImage sprite = configuration != null
+                ? configuration.createCompatibleImage(size, size, Transparency.TRANSLUCENT)
+                : new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(size / 2.0, size / 2.0);
+            g.scale(scale, scale);
+            g.rotate(2 * Math.PI * bucket / headingBuckets);
+            renderer.render(g);
+        } finally {
+            g.dispose();
+        }
+        return sprite;
+    }
+}
@@ -0,0 +1,253 @@
+package gui;
+
+import util.ListenerRegistry;
+
+import java.awt.Point;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Модель роя роботов: множество {@link RobotModel}, которые обновляются и перемещаются вместе.
+ * <p>
+ * Рой реализует {@link IRobotModel}, поэтому работает с тем же контроллером и окнами, что и один робот.
+ * Слушатели уведомляются один раз за шаг всего роя. Положения роботов после каждого шага
+ * копируются в снимок {@link Poses}, который визуализатор может читать из другого потока.
+ * </p>
+ */
+public class RobotSwarm implements IRobotModel {
+
+    /**
+     * Снимок положений всех роботов роя.
+     * <p>
+     * Рой использует два снимка попеременно, поэтому опубликованный снимок остается неизменным
+     * в течение следующего шага модели. Читатель должен успеть прочитать его за это время.
+     * </p>
+     */
+    public static final class Poses {
+
+        /**
+         * Координаты X роботов.
+         */
+        public final double[] x;
+
+        /**
+         * Координаты Y роботов.
+         */
+        public final double[] y;
+
+        /**
+         * Направления роботов в радианах.
+         */
+        public final double[] direction;
+
+        private Poses(int count) {
+            x = new double[count];
+            y = new double[count];
+            direction = new double[count];
+        }
+
+        /**
+         * Возвращает количество роботов в снимке.
+         *
+         * @return Количество роботов.
+         */
+        public int size() {
+            return x.length;
+        }
+    }
+
+    /**
+     * Роботы роя.
+     */
+    private final RobotModel[] robots;
+
+    /**
+     * Смещение цели каждого робота по X относительно точки, в которую направлен рой.
+     */
+    private final double[] targetOffsetX;
+
+    /**
+     * Смещение цели каждого робота по Y относительно точки, в которую направлен рой.
+     */
+    private final double[] targetOffsetY;
+
+    /**
+     * Список слушателей изменения роя. Его можно пополнять, пока поток таймера уведомляет слушателей.
+     */
+    private final ListenerRegistry<RobotModelListener> listeners = new ListenerRegistry<>();
+
+    /**
+     * Уведомление одного слушателя о положении первого робота; создается один раз, чтобы уведомление
+     * не выделяло память.
+     */
+    private final Consumer<RobotModelListener> notifyAction = this::notifyListener;
+
+    /**
+     * Последний опубликованный снимок положений.
+     */
+    private volatile Poses poses;
+
+    /**
+     * Снимок, в который записывается следующий шаг.
+     */
+    private Poses backPoses;
+
+    /**
+     * Создает рой роботов, случайно расставленных в прямоугольнике.
+     *
+     * @param count  Количество роботов.
+     * @param width  Ширина области расстановки.
+     * @param height Высота области расстановки.
+     * @param seed   Начальное значение генератора случайных чисел.
+     */
+    public RobotSwarm(int count, int width, int height, long seed) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Рой должен содержать хотя бы одного робота");
+        }
+        Random random = new Random(seed);
+        robots = new RobotModel[count];
+        targetOffsetX = new double[count];
+        targetOffsetY = new double[count];
+        // Цели роботов распределяются по кругу, площадь которого растет с числом роботов
+        double spreadRadius = 10 * Math.sqrt(count);
+        for (int i = 0; i < count; i++) {
+            robots[i] = new RobotModel(random.nextDouble() * width, random.nextDouble() * height,
+                    random.nextDouble() * 2 * Math.PI);
+            double radius = spreadRadius * Math.sqrt(random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            targetOffsetX[i] = radius * Math.cos(angle);
+            targetOffsetY[i] = radius * Math.sin(angle);
+        }
+        backPoses = new Poses(count);
+        poses = new Poses(count);
+        capturePoses(poses);
+    }
+
+    /**
+     * Обновляет всех роботов роя на один шаг.
+     */
+    @Override
+    public void updateModel() {
+        updateModel(1);
+    }
+
+    /**
+     * Выполняет несколько шагов для всех роботов роя, публикует новый снимок положений
+     * и уведомляет слушателей один раз.
+     *
+     * @param steps Количество шагов модели.
+     */
+    @Override
+    public void updateModel(int steps) {
+        advance(steps);
+    }
+
+    /**
+     * Выполняет несколько шагов для всех роботов роя так же, как {@link #updateModel(int)}.
+     *
+     * @param steps Количество шагов модели.
+     * @return Наибольшее количество шагов, выполненных одним роботом роя.
+     */
+    @Override
+    public synchronized int advance(int steps) {
+        int executed = 0;
+        for (RobotModel robot : robots) {
+            executed = Math.max(executed, robot.advance(steps));
+        }
+        Poses next = backPoses;
+        capturePoses(next);
+        backPoses = poses;
+        poses = next;
+        notifyListeners();
+        return executed;
+    }
+
+    /**
+     * Копирует положения роботов в снимок.
+     *
+     * @param target Снимок для заполнения.
+     */
+    private void capturePoses(Poses target) {
+        for (int i = 0; i < robots.length; i++) {
+            RobotModel robot = robots[i];
+            target.x[i] = robot.getRobotX();
+            target.y[i] = robot.getRobotY();
+            target.direction[i] = robot.getRobotDirection();
+        }
+    }
+
+    /**
+     * Направляет рой к точке: каждый робот движется к своей позиции вокруг нее.
+     *
+     * @param x Координата X центра роя.
+     * @param y Координата Y центра роя.
+     */
+    @Override
+    public synchronized void moveRobotTo(int x, int y) {
+        for (int i = 0; i < robots.length; i++) {
+            robots[i].moveRobotTo((int) (x + targetOffsetX[i]), (int) (y + targetOffsetY[i]));
+        }
+    }
+
+    /**
+     * Добавляет слушателя изменений роя.
+     * @param listener Слушатель для добавления.
+     */
+    @Override
+    public void addListener(RobotModelListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Уведомляет слушателей об изменении роя, передавая положение первого робота.
+     */
+    @Override
+    public void notifyListeners() {
+        listeners.forEach(notifyAction);
+    }
+
+    /**
+     * Уведомляет одного слушателя о положении первого робота роя.
+     * @param listener Слушатель.
+     */
+    private void notifyListener(RobotModelListener listener) {
+        Poses current = poses;
+        listener.onRobotPositionChanged(current.x[0], current.y[0], current.direction[0]);
+    }
+
+    /**
+     * Возвращает направление первого робота роя.
+     * @return Направление в радианах.
+     */
+    @Override
+    public double getRobotDirection() {
+        return poses.direction[0];
+    }
+
+    /**
+     * Возвращает положение первого робота роя.
+     */
+    @Override
+    public Point getRobotPosition() {
+        Poses current = poses;
+        return new Point((int) current.x[0], (int) current.y[0]);
+    }
+
+    /**
+     * Возвращает количество роботов в рое.
+     * @return Количество роботов.
+     */
+    @Override
+    public int getRobotCount() {
+        return robots.length;
+    }
+
+    /**
+     * Возвращает последний опубликованный снимок положений роботов.
+     *
+     * @return Снимок положений.
+     */
+    public Poses getPoses() {
+        return poses;
+    }
+}
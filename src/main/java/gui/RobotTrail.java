@@ -0,0 +1,288 @@
+package gui;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * След робота: ломаная через точки, в которых он побывал.
+ * <p>
+ * Точки отбираются по расстоянию: новая точка сохраняется, только если она отстоит от последней
+ * сохраненной не меньше чем на шаг отбора. Когда число точек достигает предела, ломаная упрощается
+ * алгоритмом Дугласа-Пекера, и допуск удваивается, пока точек не останется не больше половины предела.
+ * Поэтому число отрезков следа ограничено, сколько бы робот ни ездил. Каждое упрощение увеличивает
+ * поколение следа: контуры, построенные по прошлому поколению, нужно строить заново.
+ * </p>
+ * <p>
+ * Точки добавляет поток моделирования, а читает поток отрисовки через {@link #update(View)}.
+ * </p>
+ */
+public class RobotTrail {
+
+    /**
+     * Контур следа на стороне отрисовки. Дополняется новыми точками и перестраивается
+     * целиком только после упрощения следа.
+     */
+    public static final class View {
+
+        /**
+         * Контур следа.
+         */
+        private final Path2D.Double path = new Path2D.Double();
+
+        /**
+         * Поколение следа, по которому построен контур, или -1, если контур еще не строился.
+         */
+        private long generation = -1;
+
+        /**
+         * Число точек следа, перенесенных в контур.
+         */
+        private int points;
+
+        /**
+         * Границы отрезков, добавленных последним обновлением, или null, если контур перестроен целиком.
+         */
+        private Rectangle2D changedBounds;
+
+        /**
+         * Возвращает контур следа.
+         *
+         * @return Контур в координатах поля.
+         */
+        public Path2D getPath() {
+            return path;
+        }
+
+        /**
+         * Возвращает область поля, которую затронуло последнее обновление.
+         *
+         * @return Границы добавленных отрезков или null, если контур перестроен целиком.
+         */
+        public Rectangle2D getChangedBounds() {
+            return changedBounds;
+        }
+    }
+
+    /**
+     * Наименьшее расстояние между соседними точками следа.
+     */
+    private final double sampleSpacing;
+
+    /**
+     * Наибольшее число хранимых точек.
+     */
+    private final int maxPoints;
+
+    /**
+     * Координаты X точек следа.
+     */
+    private final double[] xs;
+
+    /**
+     * Координаты Y точек следа.
+     */
+    private final double[] ys;
+
+    /**
+     * Число точек следа.
+     */
+    private int count;
+
+    /**
+     * Поколение следа: увеличивается при каждом упрощении.
+     */
+    private long generation;
+
+    /**
+     * Текущий допуск упрощения. Растет по мере удлинения следа.
+     */
+    private double tolerance;
+
+    /**
+     * Координата X последней сохраненной точки. Используется только потоком моделирования.
+     */
+    private double lastX = Double.NaN;
+
+    /**
+     * Координата Y последней сохраненной точки. Используется только потоком моделирования.
+     */
+    private double lastY = Double.NaN;
+
+    /**
+     * Конструктор класса RobotTrail.
+     *
+     * @param sampleSpacing Наименьшее расстояние между соседними точками следа.
+     * @param maxPoints     Наибольшее число хранимых точек, не меньше четырех.
+     */
+    public RobotTrail(double sampleSpacing, int maxPoints) {
+        if (sampleSpacing <= 0 || maxPoints < 4) {
+            throw new IllegalArgumentException("Шаг отбора должен быть положительным, а предел точек не меньше четырех");
+        }
+        this.sampleSpacing = sampleSpacing;
+        this.maxPoints = maxPoints;
+        this.xs = new double[maxPoints];
+        this.ys = new double[maxPoints];
+        this.tolerance = sampleSpacing / 4;
+    }
+
+    /**
+     * Учитывает очередное положение робота. Точка сохраняется, только если робот
+     * отъехал от последней сохраненной точки не меньше чем на шаг отбора.
+     *
+     * @param x Координата X робота.
+     * @param y Координата Y робота.
+     */
+    public void sample(double x, double y) {
+        if (!Double.isNaN(lastX) && Math.hypot(x - lastX, y - lastY) < sampleSpacing) {
+            return;
+        }
+        lastX = x;
+        lastY = y;
+        append(x, y);
+    }
+
+    /**
+     * Добавляет точку в конец следа, при необходимости упростив его.
+     *
+     * @param x Координата X точки.
+     * @param y Координата Y точки.
+     */
+    private synchronized void append(double x, double y) {
+        if (count == maxPoints) {
+            simplify();
+        }
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+    }
+
+    /**
+     * Упрощает след, удваивая допуск, пока точек не станет не больше половины предела.
+     */
+    private void simplify() {
+        boolean[] keep = new boolean[count];
+        int kept;
+        while ((kept = markKept(keep, tolerance)) > maxPoints / 2) {
+            tolerance *= 2;
+        }
+        int target = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                xs[target] = xs[i];
+                ys[target] = ys[i];
+                target++;
+            }
+        }
+        count = kept;
+        generation++;
+    }
+
+    /**
+     * Отмечает точки, которые остаются после упрощения алгоритмом Дугласа-Пекера.
+     * Рекурсия заменена стеком отрезков, чтобы длинный след не переполнял стек вызовов.
+     *
+     * @param keep      Отметки оставляемых точек.
+     * @param tolerance Наибольшее допустимое отклонение выброшенной точки от упрощенной ломаной.
+     * @return Число оставленных точек.
+     */
+    private int markKept(boolean[] keep, double tolerance) {
+        Arrays.fill(keep, false);
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+        int[] stack = new int[2 * count];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDistance = tolerance;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegment(i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Вычисляет расстояние от точки следа до отрезка между двумя другими точками.
+     *
+     * @param point Номер точки.
+     * @param first Номер начала отрезка.
+     * @param last  Номер конца отрезка.
+     * @return Расстояние.
+     */
+    private double distanceToSegment(int point, int first, int last) {
+        double dx = xs[last] - xs[first];
+        double dy = ys[last] - ys[first];
+        double px = xs[point] - xs[first];
+        double py = ys[point] - ys[first];
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return Math.hypot(px, py);
+        }
+        double t = Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+        return Math.hypot(px - t * dx, py - t * dy);
+    }
+
+    /**
+     * Переносит в контур точки, добавленные после прошлого обновления. Если след был упрощен,
+     * контур строится заново.
+     *
+     * @param view Контур следа на стороне отрисовки.
+     * @return true, если контур изменился.
+     */
+    public synchronized boolean update(View view) {
+        int from = view.points;
+        if (view.generation != generation) {
+            view.path.reset();
+            view.generation = generation;
+            view.points = 0;
+            from = 0;
+        } else if (from == count) {
+            return false;
+        }
+
+        Rectangle2D.Double changed = null;
+        for (int i = from; i < count; i++) {
+            if (i == 0) {
+                view.path.moveTo(xs[i], ys[i]);
+            } else {
+                view.path.lineTo(xs[i], ys[i]);
+            }
+            if (from > 0) {
+                if (changed == null) {
+                    changed = new Rectangle2D.Double(xs[from - 1], ys[from - 1], 0, 0);
+                }
+                changed.add(xs[i], ys[i]);
+            }
+        }
+        view.points = count;
+        view.changedBounds = changed;
+        return true;
+    }
+
+    /**
+     * Возвращает число точек следа.
+     *
+     * @return Число точек.
+     */
+    public synchronized int getPointCount() {
+        return count;
+    }
+}
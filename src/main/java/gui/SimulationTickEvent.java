@@ -0,0 +1,37 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder для одного шага моделирования.
+ * <p>
+ * Событие частое, поэтому по умолчанию выключено: его нужно включить в настройках записи (.jfc).
+ * Пока событие выключено, его создание и фиксация практически ничего не стоят.
+ * </p>
+ */
+@Name("robots.SimulationTick")
+@Label("Simulation Tick")
+@Category({"Robots", "Simulation"})
+@Description("Один шаг таймера моделирования")
+@Enabled(false)
+@StackTrace(false)
+public class SimulationTickEvent extends Event {
+
+    /**
+     * Количество роботов, обновленных за шаг.
+     */
+    @Label("Robot Count")
+    public int robotCount;
+
+    /**
+     * Количество подшагов модели, выполненных за шаг таймера.
+     */
+    @Label("Sub-steps")
+    public int subSteps;
+}
@@ -0,0 +1,151 @@
+package gui;
+
+import log.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Замер времени запуска приложения по фазам: запуск JVM, схема оформления, загрузка конфигурации,
+ * создание главного окна, первая отрисовка, создание каждого внутреннего окна.
+ * <p>
+ * Фазы отсчитываются от запуска процесса JVM (если ОС его сообщает, иначе от загрузки класса)
+ * и могут выполняться в разных потоках. Во время запуска фазы только запоминаются, а в протокол
+ * вся временная шкала пишется одним вызовом {@link #report()}, когда приложение уже показано,
+ * чтобы сам замер не задерживал первый кадр.
+ * </p>
+ */
+public final class StartupProfiler {
+
+
+    /**
+     * Момент запуска JVM по {@link System#nanoTime()}.
+     */
+    private static final long ORIGIN_NANOS = findOriginNanos();
+
+
+    /**
+     * Завершенные фазы.
+     */
+    private static final List<Phase> phases = new ArrayList<>();
+
+
+    /**
+     * Написана ли уже временная шкала.
+     */
+    private static boolean reported;
+
+
+    /**
+     * Завершенная фаза запуска.
+     */
+    private static final class Phase {
+        private final String nameKey;
+        private final long beginNanos;
+        private final long endNanos;
+        private final String threadName;
+
+        private Phase(String nameKey, long beginNanos, long endNanos, String threadName) {
+            this.nameKey = nameKey;
+            this.beginNanos = beginNanos;
+            this.endNanos = endNanos;
+            this.threadName = threadName;
+        }
+    }
+
+
+    /**
+     * Приватный конструктор для предотвращения создания экземпляров класса.
+     */
+    private StartupProfiler() {
+    }
+
+
+    /**
+     * Возвращает момент начала фазы.
+     *
+     * @return Текущее время по {@link System#nanoTime()}.
+     */
+    public static long begin() {
+        return System.nanoTime();
+    }
+
+
+    /**
+     * Запоминает завершившуюся фазу.
+     *
+     * @param nameKey    Ключ локализации с названием фазы.
+     * @param beginNanos Момент начала фазы, полученный от {@link #begin()}.
+     */
+    public static void end(String nameKey, long beginNanos) {
+        Phase phase = new Phase(nameKey, beginNanos, System.nanoTime(), Thread.currentThread().getName());
+        synchronized (phases) {
+            phases.add(phase);
+        }
+    }
+
+
+    /**
+     * Запоминает фазу от запуска JVM до текущего момента, например до входа в {@code main}.
+     *
+     * @param nameKey Ключ локализации с названием фазы.
+     */
+    public static void endSinceJvmStart(String nameKey) {
+        end(nameKey, ORIGIN_NANOS);
+    }
+
+
+    /**
+     * Пишет в протокол временную шкалу запуска: для каждой фазы начало и длительность в миллисекундах
+     * и поток, а затем время до первого кадра. Повторные вызовы ничего не делают.
+     */
+    public static void report() {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            snapshot = new ArrayList<>(phases);
+        }
+        snapshot.sort(Comparator.comparingLong((Phase phase) -> phase.beginNanos).thenComparingLong(phase -> phase.endNanos));
+        String label = LocalizationManager.getString("startupTimelineMessage");
+        for (Phase phase : snapshot) {
+            Logger.info("{}: {}, {} ms, +{} ms, {}", label, LocalizationManager.getString(phase.nameKey),
+                    toMillis(phase.beginNanos - ORIGIN_NANOS), toMillis(phase.endNanos - phase.beginNanos), phase.threadName);
+        }
+        for (Phase phase : snapshot) {
+            if (phase.nameKey.equals("startupPhaseFirstPaint")) {
+                Logger.info("{}: {} ms", LocalizationManager.getString("startupFirstFrameMessage"),
+                        toMillis(phase.endNanos - ORIGIN_NANOS));
+            }
+        }
+    }
+
+
+    /**
+     * Переводит наносекунды в миллисекунды.
+     *
+     * @param nanos Длительность в наносекундах.
+     * @return Длительность в миллисекундах.
+     */
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+
+    /**
+     * Определяет момент запуска JVM по {@link System#nanoTime()}.
+     *
+     * @return Момент запуска процесса или текущий момент, если ОС не сообщает время запуска.
+     */
+    private static long findOriginNanos() {
+        long now = System.nanoTime();
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> now - TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - start.toEpochMilli())))
+                .orElse(now);
+    }
+}
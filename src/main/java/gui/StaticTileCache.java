@@ -0,0 +1,207 @@
+package gui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Кэш растеризованного статического слоя, разбитого на квадратные плитки.
+ * <p>
+ * Плитка определяется уровнем масштаба и своим номером по горизонтали и вертикали. Плитки привязаны
+ * к координатам поля, а не к панели, поэтому при прокрутке уже построенные плитки только копируются
+ * на новое место и растеризуются лишь открывшиеся края. При переполнении вытесняются плитки,
+ * которые дольше всего не рисовались.
+ * </p>
+ */
+public class StaticTileCache {
+
+    /**
+     * Рисует статическое содержимое участка поля.
+     */
+    public interface TilePainter {
+
+        /**
+         * Рисует участок поля. Графический контекст уже переведен в координаты поля.
+         *
+         * @param g         Графический контекст плитки.
+         * @param worldArea Участок поля, который покрывает плитка.
+         */
+        void paint(Graphics2D g, Rectangle2D worldArea);
+    }
+
+    /**
+     * Ключ плитки: уровень масштаба и номер плитки.
+     */
+    private static final class TileKey {
+        private final int zoomLevel;
+        private final int tileX;
+        private final int tileY;
+
+        private TileKey(int zoomLevel, int tileX, int tileY) {
+            this.zoomLevel = zoomLevel;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) o;
+            return zoomLevel == other.zoomLevel && tileX == other.tileX && tileY == other.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoomLevel, tileX, tileY);
+        }
+    }
+
+    /**
+     * Размер плитки в пикселях панели.
+     */
+    private final int tileSize;
+
+    /**
+     * Функция отрисовки содержимого плитки.
+     */
+    private final TilePainter painter;
+
+    /**
+     * Плитки в порядке обращения: первой идет та, что дольше всего не рисовалась.
+     */
+    private final Map<TileKey, BufferedImage> tiles;
+
+    /**
+     * Масштаб экрана, для которого построены плитки.
+     */
+    private double deviceScale;
+
+    /**
+     * Конфигурация устройства, для которой построены плитки.
+     */
+    private GraphicsConfiguration deviceConfiguration;
+
+    /**
+     * Конструктор класса StaticTileCache.
+     *
+     * @param tileSize Размер плитки в пикселях панели.
+     * @param maxTiles Наибольшее число хранимых плиток.
+     * @param painter  Функция отрисовки содержимого плитки.
+     */
+    public StaticTileCache(int tileSize, int maxTiles, TilePainter painter) {
+        if (tileSize <= 0 || maxTiles <= 0) {
+            throw new IllegalArgumentException("Размер плитки и емкость кэша должны быть положительными");
+        }
+        this.tileSize = tileSize;
+        this.painter = painter;
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    /**
+     * Копирует на панель плитки, попадающие в область отсечения, при необходимости построив недостающие.
+     * Точка поля (x, y) отображается в точку панели ((x - panX) * zoom, (y - panY) * zoom).
+     *
+     * @param g         Графический контекст панели.
+     * @param zoomLevel Уровень масштаба, которому соответствует zoom.
+     * @param zoom      Число пикселей панели на единицу поля.
+     * @param panX      Координата X поля в левом верхнем углу панели.
+     * @param panY      Координата Y поля в левом верхнем углу панели.
+     * @param width     Ширина панели.
+     * @param height    Высота панели.
+     */
+    public void draw(Graphics2D g, int zoomLevel, double zoom, double panX, double panY, int width, int height) {
+        AffineTransform transform = g.getTransform();
+        double scale = Math.hypot(transform.getScaleX(), transform.getShearY());
+        GraphicsConfiguration configuration = g.getDeviceConfiguration();
+        if (scale != deviceScale || configuration != deviceConfiguration) {
+            tiles.clear();
+            deviceScale = scale;
+            deviceConfiguration = configuration;
+        }
+
+        int deviceTileSize = Math.max(1, (int) Math.round(tileSize * scale));
+        double pixelsPerUnit = zoom * scale;
+        long offsetX = Math.round(panX * pixelsPerUnit);
+        long offsetY = Math.round(panY * pixelsPerUnit);
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
+        int firstX = (int) Math.floorDiv(offsetX + (long) Math.floor(clip.getMinX() * scale), deviceTileSize);
+        int lastX = (int) Math.floorDiv(offsetX + (long) Math.ceil(clip.getMaxX() * scale) - 1, deviceTileSize);
+        int firstY = (int) Math.floorDiv(offsetY + (long) Math.floor(clip.getMinY() * scale), deviceTileSize);
+        int lastY = (int) Math.floorDiv(offsetY + (long) Math.ceil(clip.getMaxY() * scale) - 1, deviceTileSize);
+
+        Point2D origin = transform.transform(new Point2D.Double(0, 0), null);
+        long originX = Math.round(origin.getX()) - offsetX;
+        long originY = Math.round(origin.getY()) - offsetY;
+        g.setTransform(new AffineTransform());
+        try {
+            for (int tileY = firstY; tileY <= lastY; tileY++) {
+                for (int tileX = firstX; tileX <= lastX; tileX++) {
+                    BufferedImage tile = getTile(zoomLevel, tileX, tileY, deviceTileSize, pixelsPerUnit, configuration);
+                    g.drawImage(tile, (int) (originX + (long) tileX * deviceTileSize),
+                            (int) (originY + (long) tileY * deviceTileSize), null);
+                }
+            }
+        } finally {
+            g.setTransform(transform);
+        }
+    }
+
+    /**
+     * Возвращает плитку из кэша или растеризует ее.
+     *
+     * @param zoomLevel      Уровень масштаба.
+     * @param tileX          Номер плитки по горизонтали.
+     * @param tileY          Номер плитки по вертикали.
+     * @param deviceTileSize Размер плитки в пикселях устройства.
+     * @param pixelsPerUnit  Число пикселей устройства на единицу поля.
+     * @param configuration  Конфигурация устройства.
+     * @return Изображение плитки.
+     */
+    private BufferedImage getTile(int zoomLevel, int tileX, int tileY, int deviceTileSize,
+                                  double pixelsPerUnit, GraphicsConfiguration configuration) {
+        TileKey key = new TileKey(zoomLevel, tileX, tileY);
+        BufferedImage tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        tile = configuration.createCompatibleImage(deviceTileSize, deviceTileSize, Transparency.OPAQUE);
+        Graphics2D tileGraphics = tile.createGraphics();
+        try {
+            tileGraphics.translate(-(double) tileX * deviceTileSize, -(double) tileY * deviceTileSize);
+            tileGraphics.scale(pixelsPerUnit, pixelsPerUnit);
+            double worldSize = deviceTileSize / pixelsPerUnit;
+            painter.paint(tileGraphics, new Rectangle2D.Double(tileX * worldSize, tileY * worldSize, worldSize, worldSize));
+        } finally {
+            tileGraphics.dispose();
+        }
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Сбрасывает все плитки. Вызывается, когда меняется статическое содержимое.
+     */
+    public void invalidate() {
+        tiles.clear();
+    }
+}
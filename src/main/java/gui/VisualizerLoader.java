@@ -25,6 +25,11 @@ public class VisualizerLoader {
             throw new IllegalArgumentException("Неверный файл .jar");
         }
 
+        PluginLoadEvent event = new PluginLoadEvent();
+        event.begin();
+        event.jarFile = jarFile.getPath();
+        event.className = className;
+
         // Создаем URLClassLoader для загрузки классов из .jar файла
         try (URLClassLoader classLoader = URLClassLoader.newInstance(new URL[]{jarFile.toURI().toURL()})) {
             // Загружаем класс визуализатора
@@ -38,7 +43,10 @@ public class VisualizerLoader {
                 throw new IllegalArgumentException("Класс визуализатора должен наследовать JPanel");
             }
 
+            event.success = true;
             return (AGameVisualizer) visualizerObject;
+        } finally {
+            event.commit();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder для отрисовки игрового поля.
+ * <p>
+ * По умолчанию выключено, так как возникает на каждом кадре.
+ * </p>
+ */
+@Name("robots.VisualizerPaint")
+@Label("Visualizer Paint")
+@Category({"Robots", "Rendering"})
+@Description("Отрисовка компонента визуализатора")
+@Enabled(false)
+@StackTrace(false)
+public class VisualizerPaintEvent extends Event {
+
+    /**
+     * Класс визуализатора.
+     */
+    @Label("Visualizer")
+    public Class<?> visualizer;
+
+    /**
+     * Ширина перерисовываемой области в пикселях.
+     */
+    @Label("Clip Width")
+    public int clipWidth;
+
+    /**
+     * Высота перерисовываемой области в пикселях.
+     */
+    @Label("Clip Height")
+    public int clipHeight;
+}
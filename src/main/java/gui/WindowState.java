@@ -1,36 +1,34 @@
 package gui;
 
-import java.io.Serializable;
-
 
 /**
-* Класс представляет состояние окна
+* Класс представляет состояние окна. Неизменяем; в файл конфигурации записывается классом {@link AppConfig}
  */
-public class WindowState implements Serializable {
+public class WindowState {
     /**
      * Положение окна по горизонтали
      */
-    private int x;
+    private final int x;
 
     /**
      * Положение окна по вертикали
      */
-    private int y;
+    private final int y;
 
     /**
      * Ширина окна
      */
-    private int width;
+    private final int width;
 
     /**
      * Высота окна
      */
-    private int height;
+    private final int height;
 
     /**
      *  Флаг, указывающий на свернутое состояние окна
      */
-    private boolean isIconified;
+    private final boolean isIconified;
 
 
     /**
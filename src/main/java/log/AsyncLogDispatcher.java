@@ -0,0 +1,347 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная доставка сообщений протокола.
+ * <p>
+ * Вызывающий поток только кладет сообщение с меткой времени в ограниченную очередь. Фоновый поток
+ * забирает сообщения пачками и передает их источнику сообщений окна протокола, который присваивает
+ * им порядковые номера, сворачивает повторы и уведомляет окно из своего потока. Принятые источником
+ * записи фоновый поток раздает получателям ({@link LogSink}): хранилищу, log4j2, счетчикам, сети.
+ * У каждого получателя своя ограниченная очередь и свой поток ({@link LogSinkWorker}), поэтому
+ * медленный или сломанный получатель не задерживает ни окно, ни остальных получателей, а отстает
+ * или теряет записи только сам. Что делать при переполнении общей очереди, задает {@link OverflowPolicy};
+ * о пропущенных сообщениях фоновый поток сообщает отдельной записью уровня Warning.
+ * </p>
+ * <p>
+ * Свернутые повторы получатели видят сводкой с их количеством ({@link LogEntry#takeRepeatSummary()}):
+ * она отправляется, когда серию прерывает другое сообщение, когда повторы затихли на
+ * {@link #REPEAT_SUMMARY_DELAY_MILLIS} и при завершении протокола. В буфер окна сводка не попадает:
+ * окно показывает повторы счетчиком у самой записи.
+ * </p>
+ * <p>
+ * При завершении JVM оставшиеся в очереди сообщения дописываются, после чего каждый получатель
+ * дописывает свою очередь и закрывается.
+ * </p>
+ */
+public class AsyncLogDispatcher {
+
+    /**
+     * Наибольшее количество сообщений, забираемых из очереди за раз.
+     */
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * Сколько ждать при завершении, пока получатель допишет текущую пачку.
+     */
+    private static final long SINK_SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Наибольший интервал между сообщениями о пропусках при непрерывном переполнении.
+     */
+    private static final long DROP_REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * Сколько ждать следующего сообщения, прежде чем отправить получателям сводку о повторах.
+     */
+    private static final long REPEAT_SUMMARY_DELAY_MILLIS = 1000;
+
+    /**
+     * Очередь сообщений, ожидающих доставки.
+     */
+    private final BlockingQueue<LogEntry> queue;
+
+    /**
+     * Источник сообщений окна протокола.
+     */
+    private final LogWindowSource logSource;
+
+    /**
+     * Потоки получателей. Массив заменяется целиком при добавлении получателя.
+     */
+    private volatile LogSinkWorker[] sinks = new LogSinkWorker[0];
+
+    /**
+     * Поведение при переполнении очереди.
+     */
+    private volatile OverflowPolicy overflowPolicy;
+
+    /**
+     * Количество сообщений, пропущенных из-за переполнения и еще не упомянутых в протоколе.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Фоновый поток доставки.
+     */
+    private final Thread consumer;
+
+    /**
+     * Время последнего сообщения о пропусках. Используется только фоновым потоком.
+     */
+    private long lastDropReportNanos = System.nanoTime();
+
+    /**
+     * Последняя запись, переданная получателям. По ней отправляется сводка о повторах.
+     * Используется только фоновым потоком.
+     */
+    private LogEntry lastDelivered;
+
+    /**
+     * Конструктор класса AsyncLogDispatcher. Запускает фоновый поток доставки.
+     * Получатели подключаются методом {@link #addSink}.
+     *
+     * @param capacity       Вместимость очереди.
+     * @param overflowPolicy Поведение при переполнении очереди.
+     * @param logSource      Источник сообщений окна протокола.
+     */
+    public AsyncLogDispatcher(int capacity, OverflowPolicy overflowPolicy, LogWindowSource logSource) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.logSource = logSource;
+        this.consumer = new Thread(this::consumeLoop, "log-dispatcher");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "log-dispatcher-shutdown"));
+    }
+
+    /**
+     * Подключает получателя протокола со своей очередью и своим потоком. Получатель получит записи,
+     * принятые источником после подключения, с теми же порядковыми номерами.
+     *
+     * @param sink     Получатель.
+     * @param capacity Вместимость очереди получателя.
+     * @return Поток получателя, по которому видны его отставание, пропуски и сбои.
+     */
+    public synchronized LogSinkWorker addSink(LogSink sink, int capacity) {
+        LogSinkWorker worker = new LogSinkWorker(sink, capacity);
+        LogSinkWorker[] updated = Arrays.copyOf(sinks, sinks.length + 1);
+        updated[sinks.length] = worker;
+        sinks = updated;
+        return worker;
+    }
+
+    /**
+     * Возвращает потоки подключенных получателей.
+     *
+     * @return Неизменяемый список потоков получателей в порядке подключения.
+     */
+    public List<LogSinkWorker> getSinks() {
+        return Collections.unmodifiableList(Arrays.asList(sinks));
+    }
+
+    /**
+     * Ставит сообщение в очередь доставки. Метка времени берется в момент вызова.
+     * Ждет только при политике {@link OverflowPolicy#BLOCK} и заполненной очереди.
+     *
+     * @param logLevel   Уровень протоколирования.
+     * @param strMessage Сообщение протокола.
+     */
+    public void submit(LogLevel logLevel, String strMessage) {
+        submit(logLevel, strMessage, null);
+    }
+
+    /**
+     * Ставит в очередь доставки сообщение из шаблона с аргументами. Сообщение собирается уже
+     * в фоновом потоке, а при пропуске из-за переполнения не собирается вовсе.
+     *
+     * @param logLevel    Уровень протоколирования.
+     * @param strTemplate Шаблон сообщения ({@link LogEntry}).
+     * @param arguments   Аргументы шаблона или null.
+     */
+    public void submit(LogLevel logLevel, String strTemplate, Object[] arguments) {
+        LogEntry entry = new LogEntry(-1, LogClock.currentTimeNanos(), logLevel, strTemplate, arguments);
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                droppedCount.incrementAndGet();
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.incrementAndGet();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Устанавливает поведение при переполнении очереди.
+     *
+     * @param overflowPolicy Поведение при переполнении.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Возвращает поведение при переполнении очереди.
+     *
+     * @return Поведение при переполнении.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Возвращает количество сообщений, пропущенных из-за переполнения и еще не упомянутых в протоколе.
+     *
+     * @return Количество пропущенных сообщений.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Цикл фонового потока: ждет сообщений и доставляет их пачками.
+     */
+    private void consumeLoop() {
+        List<LogEntry> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                LogEntry first = lastDelivered != null && lastDelivered.hasUnreportedRepeats()
+                        ? queue.poll(REPEAT_SUMMARY_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+                        : queue.take();
+                if (first == null) {
+                    // Серия повторов затихла: получатели узнают о ней, не дожидаясь следующего сообщения
+                    summarizeRepeats();
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Доставляет пачку сообщений всем получателям, а затем сообщает о пропущенных.
+     * О пропусках сообщается, когда очередь опустела, то есть доставлены все сообщения,
+     * поставленные до пропуска, но не реже раза в секунду при непрерывном переполнении.
+     * Сбой при доставке одного сообщения печатается и не останавливает поток доставки.
+     *
+     * @param batch Пачка сообщений.
+     */
+    private void deliver(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            try {
+                deliver(entry);
+            } catch (Exception | LinkageError e) {
+                e.printStackTrace();
+            }
+        }
+        long now = System.nanoTime();
+        if (droppedCount.get() == 0
+                || (!queue.isEmpty() && now - lastDropReportNanos < DROP_REPORT_INTERVAL_NANOS)) {
+            return;
+        }
+        lastDropReportNanos = now;
+        long dropped = droppedCount.getAndSet(0);
+        if (dropped > 0) {
+            deliver(LogLevel.Warning, "Пропущено сообщений протокола при переполнении очереди: " + dropped,
+                    LogClock.currentTimeNanos());
+        }
+    }
+
+    /**
+     * Доставляет одно сообщение источнику окна протокола, в хранилище и в log4j2.
+     *
+     * @param logLevel       Уровень протоколирования.
+     * @param strMessage     Сообщение протокола.
+     * @param timestampNanos Время вызова, поставившего сообщение в очередь.
+     */
+    private void deliver(LogLevel logLevel, String strMessage, long timestampNanos) {
+        deliver(new LogEntry(-1, timestampNanos, logLevel, strMessage));
+    }
+
+    /**
+     * Доставляет одну запись из очереди источнику окна протокола, а принятую источником —
+     * в очереди получателей. Повторы и сообщения сверх допустимой частоты дальше источника
+     * не идут и не собираются из шаблона. Перед новой записью получатели получают сводку
+     * о повторах предыдущей, если они были.
+     *
+     * @param queued Запись из очереди.
+     */
+    private void deliver(LogEntry queued) {
+        LogEntry entry = logSource.append(queued);
+        if (entry == null) {
+            return;
+        }
+        summarizeRepeats();
+        lastDelivered = entry;
+        offerToSinks(entry);
+    }
+
+    /**
+     * Передает получателям сводку о еще не упомянутых повторах последней переданной записи.
+     */
+    private void summarizeRepeats() {
+        try {
+            if (lastDelivered != null) {
+                offerToSinks(lastDelivered.takeRepeatSummary());
+            }
+        } catch (Exception | LinkageError e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ставит запись в очереди всех получателей.
+     *
+     * @param entry Запись с порядковым номером или null, если передавать нечего.
+     */
+    private void offerToSinks(LogEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (LogSinkWorker sink : sinks) {
+            sink.offer(entry);
+        }
+    }
+
+    /**
+     * Дописывает оставшиеся сообщения и закрывает получателей, дав каждому дописать свою очередь.
+     * Если фоновый поток не остановился вовремя (например, завис на доставке), оставшиеся сообщения
+     * не дописываются: источник и сводка о повторах используются только одним потоком.
+     * Вызывается при завершении JVM.
+     */
+    private void shutdown() {
+        consumer.interrupt();
+        try {
+            consumer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!consumer.isAlive()) {
+            List<LogEntry> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            deliver(rest);
+            summarizeRepeats();
+        }
+        for (LogSinkWorker sink : sinks) {
+            sink.shutdown(SINK_SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие блоков архива протокола алгоритмом Deflate ({@link Deflater}).
+ */
+public class DeflateCodec implements LogCodec {
+
+    /**
+     * Уровень сжатия.
+     */
+    private final int level;
+
+    /**
+     * Упаковщик, который переиспользуется потоком архивации.
+     */
+    private final Deflater deflater;
+
+    /**
+     * Буфер для выхода упаковщика.
+     */
+    private final byte[] buffer = new byte[64 * 1024];
+
+    /**
+     * Конструктор класса DeflateCodec.
+     *
+     * @param level Уровень сжатия от {@link Deflater#BEST_SPEED} до {@link Deflater#BEST_COMPRESSION}.
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    @Override
+    public synchronized byte[] compress(byte[] data, int length) {
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(length / 4 + 64);
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            result.write(buffer, 0, count);
+        }
+        return result.toByteArray();
+    }
+
+    @Override
+    public void decompress(byte[] compressed, byte[] target) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int offset = 0;
+            while (offset < target.length) {
+                int count = inflater.inflate(target, offset, target.length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Блок архива протокола поврежден");
+                }
+                offset += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Блок архива протокола поврежден", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package log;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+
+
+/**
+ * Передает сообщения протокола в log4j2. Куда они попадут, задает конфигурация log4j2.xml.
+ * Как получатель протокола ({@link LogSink}) после первого сбоя log4j2 перестает передавать записи:
+ * протокол остается в окне и в хранилище.
+ */
+public class Log4jBridge implements LogSink
+{
+
+    /**
+     * Имя логгера log4j2 для сообщений приложения.
+     */
+    private static final String LOGGER_NAME = "robots";
+
+
+    /**
+     * Логгер log4j2.
+     */
+    private final org.apache.logging.log4j.Logger m_logger = LogManager.getLogger(LOGGER_NAME);
+
+
+    /**
+     * Произошел ли сбой log4j2.
+     */
+    private volatile boolean m_broken;
+
+
+    /**
+     * Передает сообщение в log4j2.
+     *
+     * @param logLevel   Уровень протоколирования.
+     * @param strMessage Сообщение.
+     */
+    public void log(LogLevel logLevel, String strMessage)
+    {
+        m_logger.log(toLog4jLevel(logLevel), strMessage);
+    }
+
+
+    /**
+     * Возвращает имя получателя.
+     *
+     * @return Имя получателя.
+     */
+    @Override
+    public String getName()
+    {
+        return "log4j";
+    }
+
+
+    /**
+     * Передает запись в log4j2, если log4j2 еще не давал сбоя.
+     *
+     * @param entry Запись протокола.
+     */
+    @Override
+    public void write(LogEntry entry)
+    {
+        if (m_broken) {
+            return;
+        }
+        try {
+            log(entry.getLevel(), entry.getMessage());
+        } catch (RuntimeException | LinkageError e) {
+            m_broken = true;
+            throw e;
+        }
+    }
+
+
+    /**
+     * Завершает работу log4j2 при закрытии получателя.
+     */
+    @Override
+    public void close()
+    {
+        shutdown();
+    }
+
+
+    /**
+     * Завершает работу log4j2, дописав буферы приложений на диск.
+     */
+    public void shutdown()
+    {
+        LogManager.shutdown();
+    }
+
+
+    /**
+     * Сопоставляет уровень протоколирования приложения уровню log4j2.
+     *
+     * @param logLevel Уровень протоколирования приложения.
+     * @return Уровень log4j2.
+     */
+    private static Level toLog4jLevel(LogLevel logLevel)
+    {
+        switch (logLevel)
+        {
+            case Trace:
+                return Level.TRACE;
+            case Debug:
+                return Level.DEBUG;
+            case Info:
+                return Level.INFO;
+            case Warning:
+                return Level.WARN;
+            case Error:
+                return Level.ERROR;
+            default:
+                return Level.FATAL;
+        }
+    }
+}
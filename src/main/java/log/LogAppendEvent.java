@@ -0,0 +1,36 @@
+package log;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder для добавления записи в протокол.
+ * <p>
+ * По умолчанию выключено: запись в протокол может происходить очень часто.
+ * </p>
+ */
+@Name("robots.LogAppend")
+@Label("Log Append")
+@Category({"Robots", "Logging"})
+@Description("Добавление записи в источник сообщений окна протокола")
+@Enabled(false)
+@StackTrace(false)
+public class LogAppendEvent extends Event {
+
+    /**
+     * Уровень протоколирования записи.
+     */
+    @Label("Level")
+    public String level;
+
+    /**
+     * Количество слушателей, которые будут уведомлены о записи.
+     */
+    @Label("Listener Count")
+    public int listenerCount;
+}
@@ -0,0 +1,793 @@
+package log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сжатый архив сегментов протокола, вышедших из хранения {@link LogSegmentStore}.
+ * <p>
+ * Вместо удаления сегмент передается архиву, и фоновый поток переписывает его записи блоками
+ * примерно по {@link #BLOCK_SIZE} байт, сжимая каждый блок отдельно ({@link LogCodec}). В конце файла
+ * архива лежит индекс блоков: номер первой записи, смещение и размеры каждого блока. Поэтому для
+ * чтения записи распаковывается только ее блок, а несколько последних распакованных блоков держатся
+ * в памяти. Пока сегмент ждет архивации, записи читаются прямо из него.
+ * </p>
+ * <p>
+ * Файл архива пишется во временный файл и переименовывается, только когда он полностью готов;
+ * исходный сегмент удаляется после этого. Сегмент, который еще отображен в память и не может быть
+ * удален (например, в Windows), удаляется при архивации следующего сегмента, а после перезапуска —
+ * хранилищем, которое не открывает уже заархивированные сегменты. Файлы архива старше срока
+ * хранения удаляются.
+ * Архив считает объем до и после сжатия и время сжатия и распаковки.
+ * </p>
+ */
+public class LogArchive {
+
+    /**
+     * Размер блока архива до сжатия.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Срок хранения архива по умолчанию: восемь недель.
+     */
+    public static final long DEFAULT_RETENTION_MILLIS = 8L * 7 * 24 * 60 * 60 * 1000;
+
+    /**
+     * Сигнатура файла архива ("RLAR").
+     */
+    private static final int MAGIC = 0x524C4152;
+
+    /**
+     * Версия формата архива.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Размер хвоста файла: смещение индекса, количество блоков и сигнатура.
+     */
+    private static final int FOOTER_SIZE = 8 + 4 + 4;
+
+    /**
+     * Размер записи индекса: номер первой записи, смещение, сжатый и исходный размеры блока.
+     */
+    private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4 + 4;
+
+    /**
+     * Количество распакованных блоков, которые держатся в памяти.
+     */
+    private static final int MAX_CACHED_BLOCKS = 16;
+
+    /**
+     * Расширение файлов архива.
+     */
+    private static final String ARCHIVE_SUFFIX = ".arc";
+
+    /**
+     * Расширение недописанных файлов архива.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Каталог архива.
+     */
+    private final Path directory;
+
+    /**
+     * Алгоритм сжатия.
+     */
+    private final LogCodec codec;
+
+    /**
+     * Срок хранения файлов архива.
+     */
+    private final long retentionMillis;
+
+    /**
+     * Файлы архива по возрастанию номеров. Массив не изменяется, а заменяется целиком.
+     */
+    private volatile ArchiveFile[] files;
+
+    /**
+     * Сегменты, ожидающие архивации, по возрастанию номеров. Массив заменяется целиком.
+     */
+    private volatile LogSegment[] pending = new LogSegment[0];
+
+    /**
+     * Очередь сегментов для потока архивации.
+     */
+    private final BlockingQueue<LogSegment> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Заархивированные сегменты, файлы которых не удалось удалить сразу. Используется только потоком архивации.
+     */
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    /**
+     * Поток архивации. Запускается при передаче первого сегмента.
+     */
+    private Thread archiver;
+
+    /**
+     * Распакованные блоки по номеру первой записи блока, в порядке последнего обращения.
+     */
+    private final Map<Long, byte[]> blockCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+
+    /**
+     * Количество заархивированных сегментов.
+     */
+    private final AtomicLong archivedSegments = new AtomicLong();
+
+    /**
+     * Объем заархивированных записей до сжатия.
+     */
+    private final AtomicLong rawBytes = new AtomicLong();
+
+    /**
+     * Объем заархивированных записей после сжатия.
+     */
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    /**
+     * Суммарное время сжатия.
+     */
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    /**
+     * Объем распакованных блоков.
+     */
+    private final AtomicLong decompressedBytes = new AtomicLong();
+
+    /**
+     * Суммарное время распаковки.
+     */
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    /**
+     * Конструктор класса LogArchive. Открывает существующие файлы архива и удаляет недописанные.
+     *
+     * @param directory       Каталог архива.
+     * @param codec           Алгоритм сжатия.
+     * @param retentionMillis Срок хранения файлов архива.
+     * @throws IOException Если каталог не удалось создать или прочитать.
+     */
+    public LogArchive(Path directory, LogCodec codec, long retentionMillis) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        List<ArchiveFile> opened = new ArrayList<>();
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(directory, "*" + ARCHIVE_SUFFIX)) {
+            for (Path path : archives) {
+                try {
+                    opened.add(ArchiveFile.open(path, codec.getName()));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        opened.sort((a, b) -> Long.compare(a.baseSequence, b.baseSequence));
+        this.files = opened.toArray(new ArchiveFile[0]);
+    }
+
+    /**
+     * Ставит сегмент в очередь архивации. Его записи остаются доступными для чтения.
+     *
+     * @param segment Сегмент, вышедший из хранения.
+     */
+    synchronized void submit(LogSegment segment) {
+        LogSegment[] grown = Arrays.copyOf(pending, pending.length + 1);
+        grown[pending.length] = segment;
+        pending = grown;
+        queue.add(segment);
+        if (archiver == null) {
+            archiver = new Thread(this::archiveLoop, "log-archiver");
+            archiver.setDaemon(true);
+            archiver.setPriority(Thread.MIN_PRIORITY);
+            archiver.start();
+        }
+    }
+
+    /**
+     * Цикл потока архивации.
+     */
+    private void archiveLoop() {
+        while (true) {
+            LogSegment segment;
+            try {
+                segment = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                archive(segment);
+            } catch (IOException | UncheckedIOException e) {
+                // Сегмент, который не удалось сжать, остается на диске и снова попадет в архив после перезапуска
+                e.printStackTrace();
+                removePending(segment);
+            }
+        }
+    }
+
+    /**
+     * Сжимает сегмент в файл архива, публикует файл и удаляет сегмент.
+     *
+     * @param segment Сегмент.
+     * @throws IOException Если файл архива не удалось записать.
+     */
+    private void archive(LogSegment segment) throws IOException {
+        LogArchiveEvent event = new LogArchiveEvent();
+        event.begin();
+        String name = String.format("%020d%s", segment.getBaseSequence(), ARCHIVE_SUFFIX);
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+        BlockWriter writer;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            byte[] codecName = codec.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 8 + 8 + 2 + codecName.length);
+            header.putInt(MAGIC).putInt(VERSION).putLong(segment.getBaseSequence()).putLong(segment.getNextSequence())
+                    .putLong(segment.getCreatedMillis()).putShort((short) codecName.length).put(codecName).flip();
+            writeFully(out, header);
+
+            writer = new BlockWriter(out, header.limit());
+            segment.read(segment.getBaseSequence(), Long.MAX_VALUE, writer);
+            writer.flush();
+            writer.writeIndex();
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        ArchiveFile archived = writer.toArchiveFile(target, segment);
+        publish(archived);
+        removePending(segment);
+        pendingDeletes.add(segment.getPath());
+        deletePending();
+        applyRetention();
+
+        archivedSegments.incrementAndGet();
+        rawBytes.addAndGet(writer.rawTotal);
+        compressedBytes.addAndGet(writer.compressedTotal);
+        compressNanos.addAndGet(writer.compressNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.baseSequence = segment.getBaseSequence();
+            event.rawBytes = writer.rawTotal;
+            event.compressedBytes = writer.compressedTotal;
+            event.blockCount = writer.blockCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Добавляет файл в список файлов архива.
+     *
+     * @param archived Файл архива.
+     */
+    private synchronized void publish(ArchiveFile archived) {
+        List<ArchiveFile> grown = new ArrayList<>(Arrays.asList(files));
+        // Повторная архивация того же сегмента после перезапуска заменяет прежний файл
+        grown.removeIf(file -> file.baseSequence == archived.baseSequence);
+        grown.add(archived);
+        grown.sort((a, b) -> Long.compare(a.baseSequence, b.baseSequence));
+        files = grown.toArray(new ArchiveFile[0]);
+    }
+
+    /**
+     * Удаляет файлы заархивированных сегментов. Файл, который еще отображен и не может быть удален
+     * (например, в Windows), остается в списке до архивации следующего сегмента.
+     */
+    private void deletePending() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Проверяет, есть ли в архиве файл сегмента с заданным номером первой записи.
+     *
+     * @param baseSequence Номер первой записи сегмента.
+     * @return true, если сегмент уже заархивирован.
+     */
+    boolean contains(long baseSequence) {
+        for (ArchiveFile file : files) {
+            if (file.baseSequence == baseSequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Убирает сегмент из ожидающих архивации.
+     *
+     * @param segment Сегмент.
+     */
+    private synchronized void removePending(LogSegment segment) {
+        List<LogSegment> remaining = new ArrayList<>(Arrays.asList(pending));
+        remaining.remove(segment);
+        pending = remaining.toArray(new LogSegment[0]);
+    }
+
+    /**
+     * Удаляет файлы архива старше срока хранения.
+     */
+    private synchronized void applyRetention() {
+        long now = System.currentTimeMillis();
+        int first = 0;
+        while (first < files.length && now - files[first].createdMillis > retentionMillis) {
+            ArchiveFile expired = files[first];
+            expired.close();
+            try {
+                Files.deleteIfExists(expired.path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            first++;
+        }
+        if (first > 0) {
+            files = Arrays.copyOfRange(files, first, files.length);
+        }
+    }
+
+    /**
+     * Передает посетителю записи архива и ожидающих архивации сегментов с номерами от from
+     * до to (не включительно) по возрастанию номеров. Распаковывается только нужный блок.
+     *
+     * @param from    Первый порядковый номер.
+     * @param to      Порядковый номер после последнего.
+     * @param visitor Посетитель записей.
+     * @return false, если посетитель прервал просмотр.
+     */
+    public boolean read(long from, long to, LogSegmentStore.RecordVisitor visitor) {
+        // Ожидающие берутся первыми: сегмент, заархивированный между двумя чтениями, попадет хотя бы в один снимок
+        LogSegment[] pendingSnapshot = pending;
+        ArchiveFile[] filesSnapshot = files;
+        long next = from;
+        for (ArchiveFile file : filesSnapshot) {
+            if (file.nextSequence <= next || file.baseSequence >= to) {
+                continue;
+            }
+            try {
+                if (!file.read(this, next, to, visitor)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            next = Math.max(next, file.nextSequence);
+        }
+        for (LogSegment segment : pendingSnapshot) {
+            if (segment.getNextSequence() <= next || segment.getBaseSequence() >= to) {
+                continue;
+            }
+            if (!segment.read(next, to, visitor)) {
+                return false;
+            }
+            next = Math.max(next, segment.getNextSequence());
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает распакованный блок, при необходимости прочитав его с диска.
+     *
+     * @param file  Файл архива.
+     * @param block Номер блока в файле.
+     * @return Записи блока.
+     * @throws IOException Если блок не удалось прочитать или распаковать.
+     */
+    private byte[] getBlock(ArchiveFile file, int block) throws IOException {
+        Long key = file.blockFirstSequence[block];
+        synchronized (blockCache) {
+            byte[] cached = blockCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] compressed = file.readCompressed(block);
+        byte[] raw = new byte[file.blockRawLength[block]];
+        long start = System.nanoTime();
+        codec.decompress(compressed, raw);
+        decompressNanos.addAndGet(System.nanoTime() - start);
+        decompressedBytes.addAndGet(raw.length);
+        synchronized (blockCache) {
+            blockCache.put(key, raw);
+        }
+        return raw;
+    }
+
+    /**
+     * Проверяет, есть ли в архиве записи.
+     *
+     * @return true, если нет ни файлов архива, ни ожидающих сегментов.
+     */
+    public boolean isEmpty() {
+        return files.length == 0 && pending.length == 0;
+    }
+
+    /**
+     * Возвращает порядковый номер самой старой записи архива.
+     *
+     * @return Порядковый номер или {@link Long#MAX_VALUE}, если архив пуст.
+     */
+    public long getOldestSequence() {
+        LogSegment[] pendingSnapshot = pending;
+        ArchiveFile[] filesSnapshot = files;
+        if (filesSnapshot.length > 0) {
+            return filesSnapshot[0].baseSequence;
+        }
+        return pendingSnapshot.length > 0 ? pendingSnapshot[0].getBaseSequence() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Возвращает количество заархивированных сегментов с момента запуска.
+     *
+     * @return Количество сегментов.
+     */
+    public long getArchivedSegmentCount() {
+        return archivedSegments.get();
+    }
+
+    /**
+     * Возвращает объем заархивированных записей до сжатия с момента запуска.
+     *
+     * @return Объем в байтах.
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * Возвращает объем заархивированных записей после сжатия с момента запуска.
+     *
+     * @return Объем в байтах.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Возвращает степень сжатия.
+     *
+     * @return Отношение объема до сжатия к объему после или 0, если еще ничего не сжато.
+     */
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.get();
+        return compressed > 0 ? (double) rawBytes.get() / compressed : 0;
+    }
+
+    /**
+     * Возвращает скорость сжатия.
+     *
+     * @return Мегабайт исходных данных в секунду или 0, если еще ничего не сжато.
+     */
+    public double getCompressionMegabytesPerSecond() {
+        return megabytesPerSecond(rawBytes.get(), compressNanos.get());
+    }
+
+    /**
+     * Возвращает скорость распаковки.
+     *
+     * @return Мегабайт распакованных данных в секунду или 0, если еще ничего не распаковано.
+     */
+    public double getDecompressionMegabytesPerSecond() {
+        return megabytesPerSecond(decompressedBytes.get(), decompressNanos.get());
+    }
+
+    /**
+     * Вычисляет скорость обработки данных.
+     *
+     * @param bytes Объем данных.
+     * @param nanos Время обработки.
+     * @return Мегабайт в секунду.
+     */
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return nanos > 0 ? bytes / (nanos / 1e9) / (1 << 20) : 0;
+    }
+
+    /**
+     * Записывает буфер в канал целиком.
+     *
+     * @param channel Канал.
+     * @param buffer  Буфер.
+     * @throws IOException Если запись не удалась.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Посетитель записей сегмента, который собирает их в блоки, сжимает и пишет в файл архива.
+     */
+    private final class BlockWriter implements LogSegmentStore.RecordVisitor {
+        private final FileChannel out;
+        private long position;
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        private long blockFirst = -1;
+        private int blockCount;
+        private long[] firstSequences = new long[64];
+        private long[] offsets = new long[64];
+        private int[] compressedLengths = new int[64];
+        private int[] rawLengths = new int[64];
+        private long rawTotal;
+        private long compressedTotal;
+        private long compressNanos;
+
+        private BlockWriter(FileChannel out, long position) {
+            this.out = out;
+            this.position = position;
+        }
+
+        @Override
+        public boolean visit(long sequence, long timestampNanos, LogLevel level, ByteBuffer message) {
+            int length = LogSegment.RECORD_HEADER_SIZE + message.remaining();
+            if (block.position() > 0 && block.remaining() < length) {
+                flush();
+            }
+            if (block.capacity() < length) {
+                block = ByteBuffer.allocate(length);
+            }
+            if (block.position() == 0) {
+                blockFirst = sequence;
+            }
+            block.putInt(length).putLong(sequence).putLong(timestampNanos).put((byte) level.ordinal()).put(message);
+            return true;
+        }
+
+        /**
+         * Сжимает и записывает накопленный блок.
+         */
+        private void flush() {
+            int rawLength = block.position();
+            if (rawLength == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            byte[] compressed = codec.compress(block.array(), rawLength);
+            compressNanos += System.nanoTime() - start;
+            try {
+                writeFully(out, ByteBuffer.wrap(compressed));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (blockCount == firstSequences.length) {
+                firstSequences = Arrays.copyOf(firstSequences, blockCount * 2);
+                offsets = Arrays.copyOf(offsets, blockCount * 2);
+                compressedLengths = Arrays.copyOf(compressedLengths, blockCount * 2);
+                rawLengths = Arrays.copyOf(rawLengths, blockCount * 2);
+            }
+            firstSequences[blockCount] = blockFirst;
+            offsets[blockCount] = position;
+            compressedLengths[blockCount] = compressed.length;
+            rawLengths[blockCount] = rawLength;
+            blockCount++;
+            position += compressed.length;
+            rawTotal += rawLength;
+            compressedTotal += compressed.length;
+            if (block.capacity() > BLOCK_SIZE) {
+                block = ByteBuffer.allocate(BLOCK_SIZE);
+            } else {
+                block.clear();
+            }
+        }
+
+        /**
+         * Записывает индекс блоков и хвост файла.
+         *
+         * @throws IOException Если запись не удалась.
+         */
+        private void writeIndex() throws IOException {
+            ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+            for (int i = 0; i < blockCount; i++) {
+                index.putLong(firstSequences[i]).putLong(offsets[i]).putInt(compressedLengths[i]).putInt(rawLengths[i]);
+            }
+            index.putLong(position).putInt(blockCount).putInt(MAGIC).flip();
+            writeFully(out, index);
+        }
+
+        /**
+         * Создает описание записанного файла архива.
+         *
+         * @param path    Путь к файлу архива.
+         * @param segment Исходный сегмент.
+         * @return Файл архива.
+         */
+        private ArchiveFile toArchiveFile(Path path, LogSegment segment) {
+            return new ArchiveFile(path, segment.getBaseSequence(), segment.getNextSequence(),
+                    segment.getCreatedMillis(), Arrays.copyOf(firstSequences, blockCount),
+                    Arrays.copyOf(offsets, blockCount), Arrays.copyOf(compressedLengths, blockCount),
+                    Arrays.copyOf(rawLengths, blockCount));
+        }
+    }
+
+    /**
+     * Файл архива с загруженным в память индексом блоков.
+     */
+    private static final class ArchiveFile {
+        private final Path path;
+        private final long baseSequence;
+        private final long nextSequence;
+        private final long createdMillis;
+        private final long[] blockFirstSequence;
+        private final long[] blockOffset;
+        private final int[] blockCompressedLength;
+        private final int[] blockRawLength;
+        private FileChannel channel;
+
+        private ArchiveFile(Path path, long baseSequence, long nextSequence, long createdMillis,
+                            long[] blockFirstSequence, long[] blockOffset, int[] blockCompressedLength,
+                            int[] blockRawLength) {
+            this.path = path;
+            this.baseSequence = baseSequence;
+            this.nextSequence = nextSequence;
+            this.createdMillis = createdMillis;
+            this.blockFirstSequence = blockFirstSequence;
+            this.blockOffset = blockOffset;
+            this.blockCompressedLength = blockCompressedLength;
+            this.blockRawLength = blockRawLength;
+        }
+
+        /**
+         * Открывает файл архива: читает заголовок и индекс блоков.
+         *
+         * @param path      Путь к файлу.
+         * @param codecName Имя алгоритма сжатия, которым должен быть сжат файл.
+         * @return Файл архива.
+         * @throws IOException Если файл поврежден или сжат другим алгоритмом.
+         */
+        static ArchiveFile open(Path path, String codecName) throws IOException {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 8 + 8 + 2);
+                readFully(in, header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Файл не является архивом протокола: " + path);
+                }
+                ByteBuffer name = ByteBuffer.allocate(header.getShort(32));
+                readFully(in, name, header.capacity());
+                if (!codecName.equals(new String(name.array(), StandardCharsets.UTF_8))) {
+                    throw new IOException("Архив протокола сжат другим алгоритмом: " + path);
+                }
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+                readFully(in, footer, in.size() - FOOTER_SIZE);
+                if (footer.getInt(12) != MAGIC) {
+                    throw new IOException("Архив протокола не дописан: " + path);
+                }
+                int blockCount = footer.getInt(8);
+                ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+                readFully(in, index, footer.getLong(0));
+                index.flip();
+                long[] firstSequences = new long[blockCount];
+                long[] offsets = new long[blockCount];
+                int[] compressedLengths = new int[blockCount];
+                int[] rawLengths = new int[blockCount];
+                for (int i = 0; i < blockCount; i++) {
+                    firstSequences[i] = index.getLong();
+                    offsets[i] = index.getLong();
+                    compressedLengths[i] = index.getInt();
+                    rawLengths[i] = index.getInt();
+                }
+                return new ArchiveFile(path, header.getLong(8), header.getLong(16), header.getLong(24),
+                        firstSequences, offsets, compressedLengths, rawLengths);
+            }
+        }
+
+        /**
+         * Передает посетителю записи файла с номерами от from до to (не включительно).
+         *
+         * @param archive Архив, через кеш которого читаются блоки.
+         * @param from    Первый порядковый номер.
+         * @param to      Порядковый номер после последнего.
+         * @param visitor Посетитель записей.
+         * @return false, если посетитель прервал просмотр.
+         * @throws IOException Если блок не удалось прочитать.
+         */
+        boolean read(LogArchive archive, long from, long to, LogSegmentStore.RecordVisitor visitor) throws IOException {
+            int found = Arrays.binarySearch(blockFirstSequence, from);
+            int block = found >= 0 ? found : Math.max(0, -found - 2);
+            LogLevel[] levels = LogLevel.values();
+            for (; block < blockFirstSequence.length && blockFirstSequence[block] < to; block++) {
+                ByteBuffer records = ByteBuffer.wrap(archive.getBlock(this, block));
+                int position = 0;
+                while (position < records.capacity()) {
+                    int length = records.getInt(position);
+                    long sequence = records.getLong(position + 4);
+                    if (sequence >= to) {
+                        return true;
+                    }
+                    if (sequence >= from) {
+                        records.limit(position + length).position(position + LogSegment.RECORD_HEADER_SIZE);
+                        ByteBuffer message = records.slice();
+                        records.clear();
+                        if (!visitor.visit(sequence, records.getLong(position + 12),
+                                levels[records.get(position + 20)], message)) {
+                            return false;
+                        }
+                    }
+                    position += length;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Читает сжатый блок с диска.
+         *
+         * @param block Номер блока.
+         * @return Сжатые данные.
+         * @throws IOException Если блок не удалось прочитать.
+         */
+        synchronized byte[] readCompressed(int block) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            ByteBuffer compressed = ByteBuffer.allocate(blockCompressedLength[block]);
+            readFully(channel, compressed, blockOffset[block]);
+            return compressed.array();
+        }
+
+        /**
+         * Закрывает канал чтения файла.
+         */
+        synchronized void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                channel = null;
+            }
+        }
+
+        /**
+         * Читает из канала с заданной позиции, пока буфер не заполнится.
+         *
+         * @param channel  Канал.
+         * @param buffer   Буфер.
+         * @param position Позиция в файле.
+         * @throws IOException Если файл кончился раньше.
+         */
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int count = channel.read(buffer, position + buffer.position());
+                if (count < 0) {
+                    throw new IOException("Неожиданный конец архива протокола");
+                }
+            }
+        }
+    }
+}
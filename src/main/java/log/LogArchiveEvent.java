@@ -0,0 +1,46 @@
+package log;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder для архивации сегмента протокола.
+ */
+@Name("robots.LogArchive")
+@Label("Log Segment Archive")
+@Category({"Robots", "Logging"})
+@Description("Сжатие вышедшего из хранения сегмента протокола в архив")
+@StackTrace(false)
+public class LogArchiveEvent extends Event {
+
+    /**
+     * Номер первой записи сегмента.
+     */
+    @Label("Base Sequence")
+    public long baseSequence;
+
+    /**
+     * Размер записей до сжатия.
+     */
+    @Label("Raw Bytes")
+    @DataAmount
+    public long rawBytes;
+
+    /**
+     * Размер записей после сжатия.
+     */
+    @Label("Compressed Bytes")
+    @DataAmount
+    public long compressedBytes;
+
+    /**
+     * Количество блоков архива.
+     */
+    @Label("Block Count")
+    public int blockCount;
+}
@@ -0,0 +1,161 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Корзина записей протокола за один интервал времени для {@link TemporalLogStructure}.
+ * <p>
+ * Записи хранятся в кусках, каждый следующий вдвое больше предыдущего. Куски выделяются
+ * по мере заполнения и никогда не копируются, поэтому писатели добавляют записи без блокировок:
+ * место резервируется атомарным счетчиком, а запись кладется в свою ячейку куска.
+ * Списанная корзина перестает принимать записи.
+ * </p>
+ */
+final class LogBucket {
+
+    /**
+     * Размер первого куска.
+     */
+    private static final int FIRST_CHUNK_SIZE = 64;
+
+    /**
+     * Наибольшее количество кусков: корзина вмещает около миллиарда записей.
+     */
+    private static final int MAX_CHUNKS = 24;
+
+    /**
+     * Признак списанной корзины в старшем бите состояния.
+     */
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    /**
+     * Номер интервала времени, к которому относится корзина.
+     */
+    private final long slot;
+
+    /**
+     * Состояние: количество зарезервированных мест и признак списания.
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Куски с записями. Кусок с номером k вмещает FIRST_CHUNK_SIZE * 2^k записей.
+     */
+    private final AtomicReferenceArray<AtomicReferenceArray<LogEntry>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    /**
+     * Конструктор класса LogBucket.
+     *
+     * @param slot Номер интервала времени.
+     */
+    LogBucket(long slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Возвращает номер интервала времени, к которому относится корзина.
+     *
+     * @return Номер интервала.
+     */
+    long getSlot() {
+        return slot;
+    }
+
+    /**
+     * Добавляет запись в корзину.
+     *
+     * @param entry Запись протокола.
+     * @return false, если корзина уже списана или заполнена и запись не добавлена.
+     */
+    boolean add(LogEntry entry) {
+        long current;
+        do {
+            current = state.get();
+            if (current < 0 || current >= capacity()) {
+                return false;
+            }
+        } while (!state.compareAndSet(current, current + 1));
+
+        int index = (int) current;
+        int chunk = chunkOf(index);
+        chunk(chunk).set(index - chunkStart(chunk), entry);
+        return true;
+    }
+
+    /**
+     * Списывает корзину: после этого она не принимает записей.
+     *
+     * @return Количество записей, зарезервированных в корзине до списания.
+     */
+    int retire() {
+        return (int) (state.getAndUpdate(current -> current | RETIRED) & ~RETIRED);
+    }
+
+    /**
+     * Возвращает количество зарезервированных мест.
+     *
+     * @return Количество записей в корзине, включая еще не опубликованные.
+     */
+    int size() {
+        return (int) (state.get() & ~RETIRED);
+    }
+
+    /**
+     * Возвращает запись по номеру.
+     *
+     * @param index Номер записи, меньший {@link #size()}.
+     * @return Запись или null, если писатель еще не опубликовал ее.
+     */
+    LogEntry get(int index) {
+        int chunk = chunkOf(index);
+        AtomicReferenceArray<LogEntry> entries = chunks.get(chunk);
+        return entries != null ? entries.get(index - chunkStart(chunk)) : null;
+    }
+
+    /**
+     * Возвращает кусок с заданным номером, при необходимости выделив его.
+     *
+     * @param chunk Номер куска.
+     * @return Кусок.
+     */
+    private AtomicReferenceArray<LogEntry> chunk(int chunk) {
+        AtomicReferenceArray<LogEntry> entries = chunks.get(chunk);
+        if (entries == null) {
+            entries = new AtomicReferenceArray<>(FIRST_CHUNK_SIZE << chunk);
+            if (!chunks.compareAndSet(chunk, null, entries)) {
+                entries = chunks.get(chunk);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Возвращает номер куска, в котором лежит запись с заданным номером.
+     *
+     * @param index Номер записи.
+     * @return Номер куска.
+     */
+    private static int chunkOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index / FIRST_CHUNK_SIZE + 1);
+    }
+
+    /**
+     * Возвращает номер первой записи куска.
+     *
+     * @param chunk Номер куска.
+     * @return Номер первой записи.
+     */
+    private static int chunkStart(int chunk) {
+        return FIRST_CHUNK_SIZE * ((1 << chunk) - 1);
+    }
+
+    /**
+     * Возвращает вместимость корзины.
+     *
+     * @return Наибольшее количество записей.
+     */
+    private static long capacity() {
+        return (long) FIRST_CHUNK_SIZE * ((1L << MAX_CHUNKS) - 1);
+    }
+}
@@ -9,4 +9,18 @@ public interface LogChangeListener
      * Вызывается при изменении протокола.
      */
     public void onLogChanged(); 
+
+    /**
+     * Вызывается при добавлении в протокол сообщений с порядковыми номерами от from (включительно)
+     * до to (не включительно). Вызывается потоком уведомлений источника, не чаще одного раза за раз
+     * для каждого слушателя. Диапазон пуст, если изменились только счетчики повторов уже добавленных
+     * записей. Реализация по умолчанию вызывает {@link #onLogChanged()}.
+     *
+     * @param from Первый новый порядковый номер.
+     * @param to   Порядковый номер после последнего нового сообщения.
+     */
+    public default void onLogChanged(long from, long to)
+    {
+        onLogChanged();
+    }
 }
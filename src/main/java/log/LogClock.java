@@ -0,0 +1,45 @@
+package log;
+
+import java.time.Instant;
+
+/**
+ * Монотонные часы протокола.
+ * <p>
+ * Время отсчитывается по {@link System#nanoTime()} от момента загрузки класса и привязано
+ * к системному времени в этот момент. Поэтому метки времени записей не убывают, даже если
+ * системные часы переводят, и при этом сравнимы с обычным временем в наносекундах от эпохи.
+ * </p>
+ */
+public final class LogClock {
+
+    /**
+     * Системное время в момент привязки, в наносекундах от эпохи.
+     */
+    private static final long ANCHOR_EPOCH_NANOS;
+
+    /**
+     * Значение {@link System#nanoTime()} в момент привязки.
+     */
+    private static final long ANCHOR_NANO_TIME;
+
+    static {
+        Instant now = Instant.now();
+        ANCHOR_NANO_TIME = System.nanoTime();
+        ANCHOR_EPOCH_NANOS = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    /**
+     * Приватный конструктор для предотвращения создания экземпляров класса.
+     */
+    private LogClock() {
+    }
+
+    /**
+     * Возвращает текущее время в наносекундах от эпохи по монотонным часам.
+     *
+     * @return Текущее время в наносекундах от эпохи.
+     */
+    public static long currentTimeNanos() {
+        return ANCHOR_EPOCH_NANOS + (System.nanoTime() - ANCHOR_NANO_TIME);
+    }
+}
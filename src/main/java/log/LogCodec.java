@@ -0,0 +1,39 @@
+package log;
+
+import java.io.IOException;
+
+/**
+ * Алгоритм сжатия блоков архива протокола ({@link LogArchive}).
+ * <p>
+ * Имя алгоритма записывается в заголовок файла архива, и архив открывает только файлы,
+ * сжатые тем же алгоритмом. Сжатие вызывается только из потока архивации, распаковка —
+ * из любого потока.
+ * </p>
+ */
+public interface LogCodec {
+
+    /**
+     * Возвращает имя алгоритма для заголовка файла архива.
+     *
+     * @return Имя алгоритма.
+     */
+    String getName();
+
+    /**
+     * Сжимает данные.
+     *
+     * @param data   Буфер с данными.
+     * @param length Количество байтов данных от начала буфера.
+     * @return Сжатые данные.
+     */
+    byte[] compress(byte[] data, int length);
+
+    /**
+     * Распаковывает данные.
+     *
+     * @param compressed Сжатые данные.
+     * @param target     Буфер, размер которого равен размеру исходных данных.
+     * @throws IOException Если данные повреждены.
+     */
+    void decompress(byte[] compressed, byte[] target) throws IOException;
+}
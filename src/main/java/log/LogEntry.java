@@ -1,36 +1,310 @@
 package log;
 
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
- * Представляет запись в протоколе, содержащую уровень и сообщение.
+ * Представляет запись в протоколе, содержащую порядковый номер, метку времени, уровень и сообщение.
+ * Метка времени берется из монотонных часов {@link LogClock}.
+ * <p>
+ * Запись может хранить шаблон с аргументами вместо готового сообщения: тогда сообщение собирается
+ * при первом вызове {@link #getMessage()}, то есть в потоке, который читает запись.
+ * </p>
+ * <p>
+ * Подряд идущие сообщения с тем же уровнем, шаблоном и аргументами источник сворачивает в одну запись:
+ * у нее растет счетчик повторов и сдвигается время последнего повтора. Когда после записи добавляется
+ * новая, запись закрывается для повторов. Получатели, которые видят только первое сообщение серии,
+ * узнают о повторах из записи-сводки ({@link #isRepeatSummary()}) с тем же порядковым номером.
+ * </p>
  */
 public class LogEntry
 {
+    private final long m_lSequence;
+    private final long m_lTimestampNanos;
     private LogLevel m_logLevel;
-    private String m_strMessage;
+    private volatile String m_strMessage;
+    private final String m_strTemplate;
+    private final Object[] m_arguments;
+    private volatile int m_iRepeatCount = 1;
+    private volatile long m_lLastTimestampNanos;
+    private final boolean m_bRepeatSummary;
+    private boolean m_bRepeatsClosed;
+    private int m_iReportedRepeatCount = 1;
 
 
     /**
-     * Создает новую запись протокола с указанным уровнем и сообщением.
+     * Создает новую запись протокола с указанным уровнем и сообщением без порядкового номера.
      *
      * @param logLevel Уровень протоколирования.
      * @param strMessage Сообщение протокола.
      */
     public LogEntry(LogLevel logLevel, String strMessage)
     {
-        m_strMessage = strMessage;
+        this(-1, logLevel, strMessage);
+    }
+
+
+    /**
+     * Создает новую запись протокола с указанным порядковым номером, уровнем и сообщением.
+     *
+     * @param lSequence Порядковый номер записи в источнике протокола.
+     * @param logLevel Уровень протоколирования.
+     * @param strMessage Сообщение протокола.
+     */
+    public LogEntry(long lSequence, LogLevel logLevel, String strMessage)
+    {
+        this(lSequence, LogClock.currentTimeNanos(), logLevel, strMessage);
+    }
+
+
+    /**
+     * Создает новую запись протокола с указанным порядковым номером, меткой времени, уровнем и сообщением.
+     *
+     * @param lSequence Порядковый номер записи в источнике протокола.
+     * @param lTimestampNanos Метка времени в наносекундах от эпохи.
+     * @param logLevel Уровень протоколирования.
+     * @param strMessage Сообщение протокола.
+     */
+    public LogEntry(long lSequence, long lTimestampNanos, LogLevel logLevel, String strMessage)
+    {
+        this(lSequence, lTimestampNanos, logLevel, strMessage, null);
+    }
+
+
+    /**
+     * Создает новую запись протокола с сообщением, которое будет собрано из шаблона при первом чтении.
+     * Аргументы не копируются, поэтому изменяемые объекты попадут в сообщение в том состоянии,
+     * в котором они будут на момент чтения.
+     *
+     * @param lSequence Порядковый номер записи в источнике протокола.
+     * @param lTimestampNanos Метка времени в наносекундах от эпохи.
+     * @param logLevel Уровень протоколирования.
+     * @param strTemplate Шаблон сообщения, в котором каждая пара {@code {}} заменяется очередным аргументом.
+     * @param arguments Аргументы шаблона или null, если шаблон и есть сообщение.
+     */
+    public LogEntry(long lSequence, long lTimestampNanos, LogLevel logLevel, String strTemplate, Object[] arguments)
+    {
+        this(lSequence, lTimestampNanos, logLevel, strTemplate, arguments, false);
+    }
+
+
+    /**
+     * Создает запись протокола или сводку о повторах другой записи.
+     *
+     * @param lSequence Порядковый номер записи в источнике протокола.
+     * @param lTimestampNanos Метка времени в наносекундах от эпохи.
+     * @param logLevel Уровень протоколирования.
+     * @param strTemplate Шаблон сообщения.
+     * @param arguments Аргументы шаблона или null, если шаблон и есть сообщение.
+     * @param bRepeatSummary Является ли запись сводкой о повторах.
+     */
+    private LogEntry(long lSequence, long lTimestampNanos, LogLevel logLevel, String strTemplate, Object[] arguments,
+                     boolean bRepeatSummary)
+    {
+        m_lSequence = lSequence;
+        m_bRepeatSummary = bRepeatSummary;
+        m_lTimestampNanos = lTimestampNanos;
         m_logLevel = logLevel;
+        m_strTemplate = strTemplate;
+        m_arguments = arguments;
+        m_strMessage = arguments == null ? strTemplate : null;
+        m_lLastTimestampNanos = lTimestampNanos;
+    }
+
+
+    /**
+     * Создает копию записи с присвоенным порядковым номером. Шаблон, аргументы и уже собранное
+     * сообщение переносятся без сборки.
+     *
+     * @param lSequence Порядковый номер записи в источнике протокола.
+     * @param entry Исходная запись.
+     */
+    LogEntry(long lSequence, LogEntry entry)
+    {
+        m_lSequence = lSequence;
+        m_lTimestampNanos = entry.m_lTimestampNanos;
+        m_logLevel = entry.m_logLevel;
+        m_strTemplate = entry.m_strTemplate;
+        m_arguments = entry.m_arguments;
+        m_strMessage = entry.m_strMessage;
+        m_lLastTimestampNanos = entry.m_lTimestampNanos;
+        m_bRepeatSummary = entry.m_bRepeatSummary;
+    }
+
+
+    /**
+     * Возвращает порядковый номер этой записи протокола.
+     *
+     * @return Порядковый номер или -1, если запись создана вне источника протокола.
+     */
+    public long getSequence()
+    {
+        return m_lSequence;
+    }
+
+
+    /**
+     * Возвращает метку времени этой записи протокола.
+     *
+     * @return Метка времени в наносекундах от эпохи по часам {@link LogClock}.
+     */
+    public long getTimestampNanos()
+    {
+        return m_lTimestampNanos;
+    }
+
+
+    /**
+     * Возвращает метку времени последнего повтора этой записи.
+     *
+     * @return Метка времени в наносекундах от эпохи; для неповторявшейся записи равна {@link #getTimestampNanos()}.
+     */
+    public long getLastTimestampNanos()
+    {
+        return m_lLastTimestampNanos;
+    }
+
+
+    /**
+     * Возвращает, сколько раз подряд встретилось это сообщение.
+     *
+     * @return Количество повторов, включая первое сообщение; для сводки — количество повторов в ней.
+     */
+    public int getRepeatCount()
+    {
+        return m_iRepeatCount;
+    }
+
+
+    /**
+     * Учитывает еще один повтор сообщения, если запись еще открыта для повторов.
+     *
+     * @param lTimestampNanos Метка времени повтора.
+     * @return false, если после записи уже добавлена новая и повтор нужно добавить как новую запись.
+     */
+    synchronized boolean addRepeat(long lTimestampNanos)
+    {
+        if (m_bRepeatsClosed) {
+            return false;
+        }
+        m_iRepeatCount++;
+        if (lTimestampNanos > m_lLastTimestampNanos) {
+            m_lLastTimestampNanos = lTimestampNanos;
+        }
+        return true;
+    }
+
+
+    /**
+     * Закрывает запись для повторов: после нее добавлена новая запись. Счетчик повторов
+     * после этого не меняется.
+     */
+    synchronized void closeRepeats()
+    {
+        m_bRepeatsClosed = true;
+    }
+
+
+    /**
+     * Проверяет, есть ли повторы, не вошедшие ни в одну сводку.
+     *
+     * @return true, если после прошлой сводки сообщение повторялось.
+     */
+    synchronized boolean hasUnreportedRepeats()
+    {
+        return m_iRepeatCount > m_iReportedRepeatCount;
+    }
+
+
+    /**
+     * Создает сводку о повторах, накопленных после прошлой сводки, и отмечает их учтенными.
+     * Сводка получает порядковый номер и уровень этой записи и время последнего повтора.
+     *
+     * @return Сводка или null, если новых повторов нет.
+     */
+    synchronized LogEntry takeRepeatSummary()
+    {
+        int repeats = m_iRepeatCount - m_iReportedRepeatCount;
+        if (repeats <= 0) {
+            return null;
+        }
+        m_iReportedRepeatCount = m_iRepeatCount;
+        LogEntry summary = new LogEntry(m_lSequence, m_lLastTimestampNanos, m_logLevel,
+                "Повторов предыдущего сообщения: {}", new Object[] {repeats}, true);
+        summary.m_iRepeatCount = repeats;
+        summary.m_bRepeatsClosed = true;
+        return summary;
+    }
+
+
+    /**
+     * Проверяет, является ли запись сводкой о повторах другой записи. Сводка имеет порядковый номер
+     * повторявшейся записи и не хранится в источнике протокола, ее получают только получатели.
+     *
+     * @return true, если запись — сводка о повторах.
+     */
+    public boolean isRepeatSummary()
+    {
+        return m_bRepeatSummary;
+    }
+
+
+    /**
+     * Возвращает уровень этой записи протокола.
+     *
+     * @return Уровень протоколирования.
+     */
+    public LogLevel getLevel()
+    {
+        return m_logLevel;
+    }
+
+
+    /**
+     * Проверяет, повторяет ли эта запись другую: совпадают уровень, шаблон и аргументы.
+     * Если {@code equals()} аргумента бросает исключение, записи считаются разными.
+     *
+     * @param other Другая запись.
+     * @return true, если сообщения записей одинаковы.
+     */
+    boolean isRepeatOf(LogEntry other)
+    {
+        if (m_logLevel != other.m_logLevel || !Objects.equals(m_strTemplate, other.m_strTemplate)) {
+            return false;
+        }
+        try {
+            return Arrays.deepEquals(m_arguments, other.m_arguments);
+        } catch (Exception | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Возвращает шаблон сообщения этой записи протокола.
+     *
+     * @return Шаблон или само сообщение, если запись создана без аргументов.
+     */
+    public String getTemplate()
+    {
+        return m_strTemplate;
     }
 
 
     /**
-     * Возвращает сообщение этой записи протокола.
+     * Возвращает сообщение этой записи протокола, при первом вызове собирая его из шаблона.
      *
      * @return Сообщение протокола.
      */
     public String getMessage()
     {
-        return m_strMessage;
+        String strMessage = m_strMessage;
+        if (strMessage == null) {
+            // Одновременные вызовы соберут одинаковые строки, поэтому гонка безвредна
+            strMessage = MessageFormatter.format(m_strTemplate, m_arguments);
+            m_strMessage = strMessage;
+        }
+        return strMessage;
     }
 
 }
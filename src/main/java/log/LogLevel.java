@@ -26,5 +26,15 @@ public enum LogLevel
     }
 
 
+    /**
+     * Возвращает числовое представление уровня логирования: чем важнее уровень, тем больше число.
+     * @return Числовое представление уровня.
+     */
+    public int getLevel()
+    {
+        return m_iLevel;
+    }
+
+
 }
 
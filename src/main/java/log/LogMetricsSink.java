@@ -0,0 +1,81 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Получатель протокола, который только считает записи: по уровням и суммарную длину сообщений.
+ * Сообщения из шаблонов при этом не собираются — учитывается длина шаблона.
+ */
+public class LogMetricsSink implements LogSink {
+
+    /**
+     * Количество записей по уровням.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(LogLevel.values().length);
+
+    /**
+     * Суммарная длина сообщений в символах.
+     */
+    private final AtomicLong charCount = new AtomicLong();
+
+    /**
+     * Возвращает имя получателя.
+     *
+     * @return Имя получателя.
+     */
+    @Override
+    public String getName() {
+        return "metrics";
+    }
+
+    /**
+     * Учитывает запись. Сводка о повторах учитывается как свернутые в нее сообщения.
+     *
+     * @param entry Запись протокола.
+     */
+    @Override
+    public void write(LogEntry entry) {
+        if (entry.isRepeatSummary()) {
+            counts.addAndGet(entry.getLevel().ordinal(), entry.getRepeatCount());
+            return;
+        }
+        counts.incrementAndGet(entry.getLevel().ordinal());
+        String template = entry.getTemplate();
+        if (template != null) {
+            charCount.addAndGet(template.length());
+        }
+    }
+
+    /**
+     * Возвращает количество записей заданного уровня.
+     *
+     * @param logLevel Уровень протоколирования.
+     * @return Количество записей.
+     */
+    public long getCount(LogLevel logLevel) {
+        return counts.get(logLevel.ordinal());
+    }
+
+    /**
+     * Возвращает количество записей всех уровней.
+     *
+     * @return Количество записей.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает суммарную длину сообщений (шаблонов) в символах.
+     *
+     * @return Количество символов.
+     */
+    public long getCharCount() {
+        return charCount.get();
+    }
+}
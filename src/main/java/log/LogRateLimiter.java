@@ -0,0 +1,63 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничитель частоты сообщений протокола по принципу ведра с маркерами.
+ * <p>
+ * Ведро вмещает заданное количество маркеров и пополняется с заданной частотой; каждое сообщение
+ * забирает один маркер, а при пустом ведре отбрасывается. Вместо счетчика маркеров хранится одно
+ * число — расчетное время, когда ведро снова станет полным, — поэтому проверка без блокировок
+ * занимает одну атомарную операцию и не требует фонового пополнения.
+ * </p>
+ */
+final class LogRateLimiter {
+
+    /**
+     * Интервал пополнения одним маркером или 0, если частота не ограничена.
+     */
+    private final long intervalNanos;
+
+    /**
+     * Насколько расчетное время может опережать текущее: емкость ведра без одного маркера.
+     */
+    private final long burstNanos;
+
+    /**
+     * Расчетное время, когда ведро снова станет полным.
+     */
+    private final AtomicLong fullAtNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Конструктор класса LogRateLimiter.
+     *
+     * @param perSecond Частота пополнения в маркерах в секунду; 0 или меньше — без ограничения.
+     * @param burst     Емкость ведра: сколько сообщений подряд проходит без ожидания.
+     */
+    LogRateLimiter(int perSecond, int burst) {
+        this.intervalNanos = perSecond > 0 ? Math.max(1, 1_000_000_000L / perSecond) : 0;
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+    }
+
+    /**
+     * Забирает маркер, если он есть.
+     *
+     * @param nowNanos Текущее время по {@link System#nanoTime()}.
+     * @return true, если сообщение можно записать.
+     */
+    boolean tryAcquire(long nowNanos) {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long start = Math.max(fullAt, nowNanos);
+            if (start - nowNanos > burstNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+}
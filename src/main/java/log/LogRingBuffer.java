@@ -0,0 +1,226 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кольцевой буфер записей протокола фиксированного размера без блокировок.
+ * <p>
+ * Каждая запись получает порядковый номер из общего атомарного счетчика и кладется в ячейку
+ * с номером (порядковый номер по модулю емкости). Ячейки выделяются заранее, поэтому запись
+ * не создает узлов списка и не захватывает монитор. Если писатель отстал и его ячейку уже занял
+ * более новый номер, его запись считается вытесненной и отбрасывается: в ячейке всегда остается
+ * самая новая запись.
+ * </p>
+ * <p>
+ * Читатели не блокируют писателей: они проходят по диапазону номеров и берут запись из ячейки,
+ * только если ее номер совпадает с искомым. Чтение останавливается на первой еще не опубликованной
+ * записи, поэтому возвращаемый диапазон всегда непрерывен.
+ * </p>
+ */
+public class LogRingBuffer {
+
+    /**
+     * Ячейки буфера.
+     */
+    private final AtomicReferenceArray<LogEntry> slots;
+
+    /**
+     * Маска для вычисления ячейки по порядковому номеру.
+     */
+    private final int mask;
+
+    /**
+     * Число последних записей, которые считаются хранимыми.
+     */
+    private final int retainedCount;
+
+    /**
+     * Порядковый номер первой записи буфера.
+     */
+    private final long firstSequence;
+
+    /**
+     * Порядковый номер следующей записи.
+     */
+    private final AtomicLong nextSequence;
+
+    /**
+     * Конструктор класса LogRingBuffer. Нумерация записей начинается с нуля.
+     *
+     * @param retainedCount Число последних записей, которые нужно хранить.
+     */
+    public LogRingBuffer(int retainedCount) {
+        this(retainedCount, 0);
+    }
+
+    /**
+     * Конструктор класса LogRingBuffer с заданным номером первой записи, например чтобы продолжить
+     * нумерацию постоянного хранилища протокола.
+     *
+     * @param retainedCount Число последних записей, которые нужно хранить.
+     * @param firstSequence Порядковый номер первой записи.
+     */
+    public LogRingBuffer(int retainedCount, long firstSequence) {
+        if (retainedCount <= 0 || retainedCount > (1 << 30)) {
+            throw new IllegalArgumentException("Размер буфера должен быть от 1 до 2^30");
+        }
+        int capacity = Integer.highestOneBit(retainedCount);
+        if (capacity < retainedCount) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.retainedCount = retainedCount;
+        this.firstSequence = firstSequence;
+        this.nextSequence = new AtomicLong(firstSequence);
+    }
+
+    /**
+     * Добавляет запись в буфер, присвоив ей очередной порядковый номер.
+     *
+     * @param logLevel   Уровень протоколирования.
+     * @param strMessage Сообщение протокола.
+     * @return Добавленная запись.
+     */
+    public LogEntry append(LogLevel logLevel, String strMessage) {
+        return append(logLevel, strMessage, LogClock.currentTimeNanos());
+    }
+
+    /**
+     * Добавляет запись с заданной меткой времени в буфер, присвоив ей очередной порядковый номер.
+     *
+     * @param logLevel       Уровень протоколирования.
+     * @param strMessage     Сообщение протокола.
+     * @param timestampNanos Метка времени в наносекундах от эпохи по часам {@link LogClock}.
+     * @return Добавленная запись.
+     */
+    public LogEntry append(LogLevel logLevel, String strMessage, long timestampNanos) {
+        long sequence = nextSequence.getAndIncrement();
+        return publish(new LogEntry(sequence, timestampNanos, logLevel, strMessage));
+    }
+
+    /**
+     * Добавляет в буфер копию записи, присвоив ей очередной порядковый номер.
+     * Шаблон и аргументы записи сохраняются, а сообщение не собирается.
+     *
+     * @param entry Запись без порядкового номера.
+     * @return Добавленная запись.
+     */
+    public LogEntry append(LogEntry entry) {
+        long sequence = nextSequence.getAndIncrement();
+        return publish(new LogEntry(sequence, entry));
+    }
+
+    /**
+     * Кладет запись с присвоенным номером в ее ячейку.
+     *
+     * @param entry Запись с порядковым номером.
+     * @return Та же запись.
+     */
+    private LogEntry publish(LogEntry entry) {
+        long sequence = entry.getSequence();
+        int index = (int) (sequence & mask);
+        while (true) {
+            LogEntry current = slots.get(index);
+            if (current != null && current.getSequence() > sequence) {
+                // Ячейку уже занял более новый номер: эта запись вытеснена, не успев появиться
+                return entry;
+            }
+            if (slots.compareAndSet(index, current, entry)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Возвращает порядковый номер, который получит следующая запись.
+     * Записи с меньшими номерами могут быть еще не опубликованы.
+     *
+     * @return Порядковый номер следующей записи.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Возвращает номер первой еще не опубликованной записи начиная с заданного: все записи до него
+     * опубликованы или уже вытеснены. В отличие от {@link #getNextSequence()}, не учитывает номера,
+     * которые писатели уже получили, но еще не положили в ячейки.
+     *
+     * @param from Номер, с которого начинать проверку; записи до него считаются опубликованными.
+     * @return Номер первой неопубликованной записи или {@link #getNextSequence()}, если опубликованы все.
+     */
+    public long getPublishedSequence(long from) {
+        long end = nextSequence.get();
+        for (long sequence = Math.max(from, getOldestSequence()); sequence < end; sequence++) {
+            LogEntry entry = slots.get((int) (sequence & mask));
+            if (entry == null || entry.getSequence() < sequence) {
+                return sequence;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Возвращает порядковый номер самой старой хранимой записи.
+     *
+     * @return Порядковый номер самой старой хранимой записи.
+     */
+    public long getOldestSequence() {
+        return Math.max(firstSequence, nextSequence.get() - retainedCount);
+    }
+
+    /**
+     * Возвращает число хранимых записей.
+     *
+     * @return Число хранимых записей.
+     */
+    public int size() {
+        return (int) Math.min(nextSequence.get() - firstSequence, retainedCount);
+    }
+
+    /**
+     * Возвращает запись с заданным порядковым номером.
+     *
+     * @param sequence Порядковый номер.
+     * @return Запись или null, если она вытеснена или еще не опубликована.
+     */
+    public LogEntry get(long sequence) {
+        if (sequence < firstSequence) {
+            return null;
+        }
+        LogEntry entry = slots.get((int) (sequence & mask));
+        return entry != null && entry.getSequence() == sequence ? entry : null;
+    }
+
+    /**
+     * Возвращает непрерывный диапазон хранимых записей с номерами от from (включительно)
+     * до to (не включительно). Записи, вытесненные до начала чтения, пропускаются в начале
+     * диапазона; чтение заканчивается на первой еще не опубликованной записи.
+     *
+     * @param from Первый порядковый номер.
+     * @param to   Порядковый номер после последнего.
+     * @return Записи по возрастанию порядковых номеров.
+     */
+    public List<LogEntry> range(long from, long to) {
+        long start = Math.max(from, getOldestSequence());
+        long end = Math.min(to, nextSequence.get());
+        List<LogEntry> result = new ArrayList<>((int) Math.max(0, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            LogEntry entry = slots.get((int) (sequence & mask));
+            if (entry == null || entry.getSequence() < sequence) {
+                break;
+            }
+            if (entry.getSequence() > sequence) {
+                // Пока шло чтение, писатели ушли на круг вперед: начало диапазона вытеснено
+                result.clear();
+                continue;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+}
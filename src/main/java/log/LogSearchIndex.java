@@ -0,0 +1,451 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Полнотекстовый индекс хранимых сообщений протокола.
+ * <p>
+ * Сообщение разбивается на слова (последовательности букв и цифр без учета регистра), и для каждого
+ * слова ведется список вхождений по возрастанию порядковых номеров. Вхождение хранит номер вместе
+ * с уровнем сообщения, поэтому фильтр по уровню не обращается к самим сообщениям. Списки ищутся
+ * по слову в хеш-таблице, а кроме того, лежат в упорядоченном словаре, так что запрос по префиксу
+ * перебирает только подходящие слова.
+ * </p>
+ * <p>
+ * Запрос — слова через пробел, все должны встретиться в сообщении; слово со звездочкой в конце
+ * ищется по префиксу. Списки вхождений обходятся от новых к старым с перескоком по двоичному поиску,
+ * и обход останавливается, набрав нужное количество совпадений, поэтому время запроса зависит
+ * от количества результатов, а не от числа хранимых сообщений.
+ * </p>
+ * <p>
+ * Вхождения сообщений старше заданного номера отбрасываются {@link #expireBefore(long)};
+ * запросы игнорируют их и до этого. Добавлять может несколько потоков; запросы не блокируют
+ * добавление дольше, чем на снятие снимка одного списка.
+ * </p>
+ */
+public class LogSearchIndex {
+
+    /**
+     * Количество бит вхождения, отведенных под уровень.
+     */
+    private static final int LEVEL_BITS = 3;
+
+    /**
+     * Маска уровня во вхождении.
+     */
+    private static final long LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+
+    /**
+     * Наибольшая длина индексируемого слова.
+     */
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * Списки вхождений по словам для поиска слова при добавлении и точных запросах.
+     */
+    private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Те же списки в порядке слов для запросов по префиксу.
+     */
+    private final ConcurrentSkipListMap<String, Postings> vocabulary = new ConcurrentSkipListMap<>();
+
+    /**
+     * Номер, вхождения до которого считаются отброшенными.
+     */
+    private volatile long oldestSequence;
+
+    /**
+     * Добавляет сообщение в индекс.
+     *
+     * @param entry Запись протокола с порядковым номером.
+     */
+    public void add(LogEntry entry) {
+        long posting = encode(entry.getSequence(), entry.getLevel());
+        String previous = null;
+        for (String token : tokenize(entry.getMessage())) {
+            // Повторы слова в одном сообщении дают одно вхождение
+            if (token.equals(previous)) {
+                continue;
+            }
+            // Список, который одновременно удален как пустой, не принимает вхождений: берется новый
+            while (!postings.computeIfAbsent(token, this::createPostings).add(posting)) {
+                Thread.onSpinWait();
+            }
+            previous = token;
+        }
+    }
+
+    /**
+     * Создает список вхождений нового слова и заносит его в словарь.
+     *
+     * @param token Слово.
+     * @return Пустой список вхождений.
+     */
+    private Postings createPostings(String token) {
+        Postings created = new Postings();
+        vocabulary.put(token, created);
+        return created;
+    }
+
+    /**
+     * Отбрасывает вхождения сообщений с номерами меньше заданного и слова, у которых
+     * не осталось вхождений.
+     *
+     * @param sequence Номер самого старого хранимого сообщения.
+     */
+    public void expireBefore(long sequence) {
+        if (sequence <= oldestSequence) {
+            return;
+        }
+        oldestSequence = sequence;
+        long bound = encode(sequence, LogLevel.Trace);
+        Iterator<Map.Entry<String, Postings>> iterator = postings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Postings> token = iterator.next();
+            if (token.getValue().expireBefore(bound)) {
+                postings.remove(token.getKey(), token.getValue());
+                vocabulary.remove(token.getKey(), token.getValue());
+            }
+        }
+    }
+
+    /**
+     * Ищет сообщения по запросу.
+     *
+     * @param query    Слова через пробел; слово со звездочкой в конце ищется по префиксу.
+     * @param minLevel Наименьший уровень найденных сообщений.
+     * @param from     Наименьший порядковый номер найденных сообщений.
+     * @param limit    Наибольшее количество результатов.
+     * @return Порядковые номера самых новых подходящих сообщений по возрастанию.
+     */
+    public long[] search(String query, LogLevel minLevel, long from, int limit) {
+        List<Cursor> cursors = new ArrayList<>();
+        long floor = encode(Math.max(from, oldestSequence), LogLevel.Trace);
+        for (String term : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            boolean prefix = term.endsWith("*");
+            List<String> words = tokenize(prefix ? term.substring(0, term.length() - 1) : term);
+            for (int i = 0; i < words.size(); i++) {
+                Cursor cursor = prefix && i == words.size() - 1
+                        ? prefixCursor(words.get(i), floor)
+                        : wordCursor(words.get(i), floor);
+                if (cursor == null) {
+                    return new long[0];
+                }
+                cursors.add(cursor);
+            }
+        }
+        if (cursors.isEmpty()) {
+            return new long[0];
+        }
+
+        long[] found = new long[Math.max(0, Math.min(limit, 1024))];
+        int count = 0;
+        long candidate = Long.MAX_VALUE;
+        while (count < limit) {
+            // Перескок: все курсоры подтягиваются к наименьшему из текущих вхождений, пока не совпадут
+            boolean matched = true;
+            for (Cursor cursor : cursors) {
+                cursor.seekAtMost(candidate);
+                long current = cursor.current();
+                if (current < 0) {
+                    candidate = -1;
+                    break;
+                }
+                if (current < candidate) {
+                    candidate = current;
+                    matched = false;
+                }
+            }
+            if (candidate < 0) {
+                break;
+            }
+            if (!matched) {
+                continue;
+            }
+            if ((candidate & LEVEL_MASK) >= minLevel.ordinal()) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, (int) Math.min((long) count * 2, limit));
+                }
+                found[count++] = candidate >>> LEVEL_BITS;
+            }
+            candidate--;
+        }
+        long[] result = Arrays.copyOf(found, count);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long swap = result[i];
+            result[i] = result[j];
+            result[j] = swap;
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество слов в индексе.
+     *
+     * @return Количество слов.
+     */
+    public int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * Создает курсор по вхождениям одного слова.
+     *
+     * @param word  Слово.
+     * @param floor Наименьшее учитываемое вхождение.
+     * @return Курсор или null, если слова нет в индексе.
+     */
+    private Cursor wordCursor(String word, long floor) {
+        Postings list = postings.get(word);
+        return list != null ? list.cursor(floor) : null;
+    }
+
+    /**
+     * Создает курсор по объединению вхождений всех слов с заданным префиксом.
+     *
+     * @param prefix Префикс.
+     * @param floor  Наименьшее учитываемое вхождение.
+     * @return Курсор или null, если таких слов нет в индексе.
+     */
+    private Cursor prefixCursor(String prefix, long floor) {
+        ConcurrentNavigableMap<String, Postings> words = vocabulary.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (words.isEmpty()) {
+            return null;
+        }
+        if (words.size() == 1) {
+            return words.firstEntry().getValue().cursor(floor);
+        }
+        List<Cursor> union = new ArrayList<>();
+        for (Postings list : words.values()) {
+            union.add(list.cursor(floor));
+        }
+        return new UnionCursor(union);
+    }
+
+    /**
+     * Разбивает текст на слова в нижнем регистре.
+     *
+     * @param text Текст.
+     * @return Слова в порядке появления.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean letter = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Кодирует вхождение: номер в старших битах, уровень в младших.
+     *
+     * @param sequence Порядковый номер.
+     * @param level    Уровень.
+     * @return Вхождение.
+     */
+    private static long encode(long sequence, LogLevel level) {
+        return (sequence << LEVEL_BITS) | level.ordinal();
+    }
+
+    /**
+     * Курсор, который идет по вхождениям от новых к старым.
+     */
+    private interface Cursor {
+
+        /**
+         * Возвращает текущее вхождение.
+         *
+         * @return Вхождение или -1, если вхождения кончились.
+         */
+        long current();
+
+        /**
+         * Переходит к наибольшему вхождению, не превышающему заданное.
+         *
+         * @param bound Верхняя граница.
+         */
+        void seekAtMost(long bound);
+    }
+
+    /**
+     * Список вхождений одного слова по возрастанию.
+     * <p>
+     * Массив не изменяется в уже опубликованном диапазоне: новые вхождения дописываются за его концом,
+     * а вставка не в конец и сжатие создают новый массив. Поэтому курсор работает со снимком
+     * без блокировки.
+     * </p>
+     */
+    private static final class Postings {
+        private long[] values = new long[4];
+        private int start;
+        private int end;
+        private boolean removed;
+
+        /**
+         * Добавляет вхождение, сохраняя порядок.
+         *
+         * @param posting Вхождение.
+         * @return false, если список уже удален из индекса.
+         */
+        synchronized boolean add(long posting) {
+            if (removed) {
+                return false;
+            }
+            if (end > start && values[end - 1] > posting) {
+                // Писатели разошлись по времени: вставка в середину делается в новом массиве
+                int position = Arrays.binarySearch(values, start, end, posting);
+                if (position >= 0) {
+                    return true;
+                }
+                position = -position - 1;
+                long[] copy = new long[Math.max(4, (end - start) * 2)];
+                System.arraycopy(values, start, copy, 0, position - start);
+                copy[position - start] = posting;
+                System.arraycopy(values, position, copy, position - start + 1, end - position);
+                end = end - start + 1;
+                start = 0;
+                values = copy;
+                return true;
+            }
+            if (end == values.length) {
+                long[] copy = new long[Math.max(4, (end - start) * 2)];
+                System.arraycopy(values, start, copy, 0, end - start);
+                end -= start;
+                start = 0;
+                values = copy;
+            }
+            values[end++] = posting;
+            return true;
+        }
+
+        /**
+         * Отбрасывает вхождения меньше заданного.
+         *
+         * @param bound Наименьшее сохраняемое вхождение.
+         * @return true, если вхождений не осталось и список нужно удалить из индекса.
+         */
+        synchronized boolean expireBefore(long bound) {
+            int position = Arrays.binarySearch(values, start, end, bound);
+            start = position >= 0 ? position : -position - 1;
+            if (start == end) {
+                removed = true;
+                return true;
+            }
+            if (start > values.length / 2) {
+                values = Arrays.copyOfRange(values, start, Math.max(end, start + 4));
+                end -= start;
+                start = 0;
+            }
+            return false;
+        }
+
+        /**
+         * Создает курсор по снимку списка.
+         *
+         * @param floor Наименьшее учитываемое вхождение.
+         * @return Курсор.
+         */
+        synchronized Cursor cursor(long floor) {
+            return new ArrayCursor(values, start, end, floor);
+        }
+    }
+
+    /**
+     * Курсор по снимку списка вхождений.
+     */
+    private static final class ArrayCursor implements Cursor {
+        private final long[] values;
+        private final int start;
+        private final long floor;
+        private int position;
+
+        private ArrayCursor(long[] values, int start, int end, long floor) {
+            this.values = values;
+            this.start = start;
+            this.floor = floor;
+            this.position = end - 1;
+        }
+
+        @Override
+        public long current() {
+            return position >= start && values[position] >= floor ? values[position] : -1;
+        }
+
+        @Override
+        public void seekAtMost(long bound) {
+            if (position < start || values[position] <= bound) {
+                return;
+            }
+            // Поиск с разгоном: совпадения обычно близко, а далекие перескоки стоят логарифм
+            int step = 1;
+            int high = position;
+            int low = position - step;
+            while (low >= start && values[low] > bound) {
+                high = low;
+                step <<= 1;
+                low = position - step;
+            }
+            low = Math.max(low, start - 1);
+            // Инвариант: values[high] > bound, values[low] <= bound или low == start - 1
+            while (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] > bound) {
+                    high = middle;
+                } else {
+                    low = middle;
+                }
+            }
+            position = low;
+        }
+    }
+
+    /**
+     * Курсор по объединению нескольких списков: текущее вхождение — наибольшее среди них.
+     */
+    private static final class UnionCursor implements Cursor {
+        private final PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> Long.compare(b.current(), a.current()));
+
+        private UnionCursor(List<Cursor> cursors) {
+            for (Cursor cursor : cursors) {
+                if (cursor.current() >= 0) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public long current() {
+            Cursor top = heap.peek();
+            return top != null ? top.current() : -1;
+        }
+
+        @Override
+        public void seekAtMost(long bound) {
+            while (!heap.isEmpty() && heap.peek().current() > bound) {
+                Cursor top = heap.poll();
+                top.seekAtMost(bound);
+                if (top.current() >= 0) {
+                    heap.add(top);
+                }
+            }
+        }
+    }
+}
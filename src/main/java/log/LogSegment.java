@@ -0,0 +1,345 @@
+package log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Файл-сегмент хранилища протокола {@link LogSegmentStore}, отображенный в память.
+ * <p>
+ * Файл начинается с заголовка фиксированного размера {@link #HEADER_SIZE}: сигнатура, версия формата,
+ * номер первой записи и время создания. За ним идут записи подряд: длина записи, порядковый номер,
+ * метка времени, уровень и сообщение в UTF-8. Длина пишется последней, поэтому нулевая длина
+ * означает конец данных, в том числе после аварийного завершения.
+ * </p>
+ * <p>
+ * Для поиска по номеру ведется разреженный индекс: позиция каждой {@link #INDEX_INTERVAL}-й записи.
+ * Пишет в сегмент один поток; читатели работают с копиями отображения без блокировок и видят
+ * записи до опубликованной позиции конца данных.
+ * </p>
+ */
+final class LogSegment {
+
+    /**
+     * Размер заголовка сегмента.
+     */
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * Размер заголовка записи: длина, порядковый номер, метка времени и уровень.
+     */
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 1;
+
+    /**
+     * Сигнатура файла сегмента ("RLOG").
+     */
+    private static final int MAGIC = 0x524C4F47;
+
+    /**
+     * Версия формата сегмента.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Через сколько записей в разреженный индекс попадает очередная позиция.
+     */
+    private static final int INDEX_INTERVAL = 256;
+
+    /**
+     * Путь к файлу сегмента.
+     */
+    private final Path path;
+
+    /**
+     * Порядковый номер первой записи сегмента.
+     */
+    private final long baseSequence;
+
+    /**
+     * Время создания сегмента в миллисекундах от эпохи.
+     */
+    private final long createdMillis;
+
+    /**
+     * Отображение файла в память.
+     */
+    private final MappedByteBuffer map;
+
+    /**
+     * Позиция конца данных. Все записи до нее полностью записаны.
+     */
+    private volatile int writePosition;
+
+    /**
+     * Порядковый номер, который получит следующая запись сегмента.
+     */
+    private volatile long nextSequence;
+
+    /**
+     * Номера записей разреженного индекса.
+     */
+    private long[] indexSequences = new long[16];
+
+    /**
+     * Позиции записей разреженного индекса.
+     */
+    private int[] indexPositions = new int[16];
+
+    /**
+     * Количество позиций в разреженном индексе.
+     */
+    private int indexCount;
+
+    /**
+     * Количество записей, добавленных после последней позиции индекса.
+     */
+    private int sinceLastIndex;
+
+    /**
+     * Конструктор класса LogSegment.
+     *
+     * @param path          Путь к файлу.
+     * @param baseSequence  Номер первой записи.
+     * @param createdMillis Время создания.
+     * @param map           Отображение файла в память.
+     */
+    private LogSegment(Path path, long baseSequence, long createdMillis, MappedByteBuffer map) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.createdMillis = createdMillis;
+        this.map = map;
+        this.writePosition = HEADER_SIZE;
+        this.nextSequence = baseSequence;
+    }
+
+    /**
+     * Создает новый пустой сегмент.
+     *
+     * @param path          Путь к файлу.
+     * @param baseSequence  Номер первой записи.
+     * @param capacity      Размер файла в байтах.
+     * @param createdMillis Время создания.
+     * @return Сегмент.
+     * @throws IOException Если файл не удалось создать или отобразить.
+     */
+    static LogSegment create(Path path, long baseSequence, int capacity, long createdMillis) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putLong(8, baseSequence);
+        map.putLong(16, createdMillis);
+        return new LogSegment(path, baseSequence, createdMillis, map);
+    }
+
+    /**
+     * Открывает существующий сегмент и находит конец данных, перестраивая разреженный индекс.
+     *
+     * @param path Путь к файлу.
+     * @return Сегмент.
+     * @throws IOException Если файл не удалось открыть или он не является сегментом.
+     */
+    static LogSegment open(Path path) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Неверный размер сегмента протокола: " + path);
+            }
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException("Файл не является сегментом протокола: " + path);
+        }
+        LogSegment segment = new LogSegment(path, map.getLong(8), map.getLong(16), map);
+        segment.recover();
+        return segment;
+    }
+
+    /**
+     * Проходит записи от начала, восстанавливая конец данных и разреженный индекс.
+     * Обрывается на первой неполной или поврежденной записи.
+     */
+    private void recover() {
+        int position = HEADER_SIZE;
+        long sequence = baseSequence;
+        while (position + RECORD_HEADER_SIZE <= map.capacity()) {
+            int length = map.getInt(position);
+            if (length < RECORD_HEADER_SIZE || position + length > map.capacity()) {
+                break;
+            }
+            long recordSequence = map.getLong(position + 4);
+            if (recordSequence < sequence) {
+                break;
+            }
+            addToIndex(recordSequence, position);
+            sequence = recordSequence + 1;
+            position += length;
+        }
+        nextSequence = sequence;
+        writePosition = position;
+    }
+
+    /**
+     * Добавляет запись в конец сегмента.
+     *
+     * @param sequence       Порядковый номер, не меньший {@link #getNextSequence()}.
+     * @param timestampNanos Метка времени.
+     * @param level          Уровень протоколирования.
+     * @param message        Сообщение в UTF-8.
+     * @return false, если запись не помещается в сегмент.
+     */
+    boolean append(long sequence, long timestampNanos, LogLevel level, byte[] message) {
+        int position = writePosition;
+        int length = RECORD_HEADER_SIZE + message.length;
+        if (position + length > map.capacity()) {
+            return false;
+        }
+        map.putLong(position + 4, sequence);
+        map.putLong(position + 12, timestampNanos);
+        map.put(position + 20, (byte) level.ordinal());
+        map.put(position + RECORD_HEADER_SIZE, message, 0, message.length);
+        // Длина пишется последней: пока ее нет, запись не считается существующей
+        map.putInt(position, length);
+        addToIndex(sequence, position);
+        nextSequence = sequence + 1;
+        writePosition = position + length;
+        return true;
+    }
+
+    /**
+     * Добавляет позицию в разреженный индекс, если подошла ее очередь.
+     *
+     * @param sequence Порядковый номер записи.
+     * @param position Позиция записи.
+     */
+    private synchronized void addToIndex(long sequence, int position) {
+        if (indexCount > 0 && ++sinceLastIndex < INDEX_INTERVAL) {
+            return;
+        }
+        if (indexCount == indexSequences.length) {
+            indexSequences = Arrays.copyOf(indexSequences, indexCount * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+        }
+        indexSequences[indexCount] = sequence;
+        indexPositions[indexCount] = position;
+        indexCount++;
+        sinceLastIndex = 0;
+    }
+
+    /**
+     * Находит по разреженному индексу позицию, с которой нужно начать просмотр,
+     * чтобы найти запись с заданным номером.
+     *
+     * @param sequence Порядковый номер.
+     * @return Позиция записи, не большей по номеру, или начало данных.
+     */
+    private synchronized int seek(long sequence) {
+        int found = Arrays.binarySearch(indexSequences, 0, indexCount, sequence);
+        if (found >= 0) {
+            return indexPositions[found];
+        }
+        int before = -found - 2;
+        return before >= 0 ? indexPositions[before] : HEADER_SIZE;
+    }
+
+    /**
+     * Передает посетителю записи с номерами от from до to (не включительно).
+     * Сообщение передается срезом отображения без копирования.
+     *
+     * @param from    Первый порядковый номер.
+     * @param to      Порядковый номер после последнего.
+     * @param visitor Посетитель записей.
+     * @return false, если посетитель прервал просмотр.
+     */
+    boolean read(long from, long to, LogSegmentStore.RecordVisitor visitor) {
+        int end = writePosition;
+        ByteBuffer view = map.duplicate();
+        int position = seek(from);
+        LogLevel[] levels = LogLevel.values();
+        while (position < end) {
+            int length = view.getInt(position);
+            long sequence = view.getLong(position + 4);
+            if (sequence >= to) {
+                return true;
+            }
+            if (sequence >= from) {
+                view.limit(position + length).position(position + RECORD_HEADER_SIZE);
+                ByteBuffer message = view.slice();
+                view.clear();
+                if (!visitor.visit(sequence, view.getLong(position + 12), levels[view.get(position + 20)], message)) {
+                    return false;
+                }
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    /**
+     * Сбрасывает изменения отображения на диск.
+     */
+    void force() {
+        map.force();
+    }
+
+    /**
+     * Возвращает путь к файлу сегмента.
+     *
+     * @return Путь к файлу.
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Возвращает номер первой записи сегмента.
+     *
+     * @return Порядковый номер.
+     */
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * Возвращает номер, который получит следующая запись сегмента.
+     *
+     * @return Порядковый номер.
+     */
+    long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Возвращает время создания сегмента.
+     *
+     * @return Время в миллисекундах от эпохи.
+     */
+    long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Возвращает количество занятых байтов.
+     *
+     * @return Размер заголовка и записей.
+     */
+    int getUsedBytes() {
+        return writePosition;
+    }
+
+    /**
+     * Возвращает размер файла сегмента.
+     *
+     * @return Вместимость в байтах.
+     */
+    int getCapacity() {
+        return map.capacity();
+    }
+}
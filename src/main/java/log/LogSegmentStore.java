@@ -0,0 +1,445 @@
+package log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Постоянное хранилище протокола на диске из сегментов, отображенных в память.
+ * <p>
+ * Записи дописываются в текущий сегмент ({@link LogSegment}) прямо в отображение файла, без
+ * системных вызовов на каждую запись. Когда сегмент заполнен или старше заданного возраста,
+ * открывается новый. Сегменты сверх заданного общего объема или старше срока хранения удаляются
+ * целиком, начиная с самого старого, или, если задан архив ({@link LogArchive}), передаются ему
+ * для сжатия и остаются доступными для чтения уже из архива.
+ * </p>
+ * <p>
+ * Порядковые номера записей совпадают с номерами источника окна протокола, поэтому окно может
+ * дочитывать с диска историю, вытесненную из памяти, в том числе оставшуюся от прошлых запусков.
+ * Пишет один поток; чтение идет без блокировок по неизменяемому снимку списка сегментов, а сообщения
+ * передаются читателю срезами отображения без копирования.
+ * </p>
+ */
+public class LogSegmentStore {
+
+    /**
+     * Посетитель записей хранилища.
+     */
+    public interface RecordVisitor {
+
+        /**
+         * Обрабатывает запись.
+         *
+         * @param sequence       Порядковый номер.
+         * @param timestampNanos Метка времени в наносекундах от эпохи.
+         * @param level          Уровень протоколирования.
+         * @param message        Сообщение в UTF-8: срез отображения файла или распакованного блока архива,
+         *                       действительный только во время вызова.
+         * @return false, чтобы прервать просмотр.
+         */
+        boolean visit(long sequence, long timestampNanos, LogLevel level, ByteBuffer message);
+    }
+
+    /**
+     * Размер сегмента по умолчанию.
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    /**
+     * Возраст, после которого сегмент сменяется, по умолчанию: один час.
+     */
+    public static final long DEFAULT_SEGMENT_MILLIS = 60L * 60 * 1000;
+
+    /**
+     * Общий объем хранимых сегментов по умолчанию.
+     */
+    public static final long DEFAULT_RETENTION_BYTES = 1L << 30;
+
+    /**
+     * Срок хранения сегментов по умолчанию: семь дней.
+     */
+    public static final long DEFAULT_RETENTION_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Расширение файлов сегментов.
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Каталог хранилища.
+     */
+    private final Path directory;
+
+    /**
+     * Размер файла сегмента.
+     */
+    private final int segmentBytes;
+
+    /**
+     * Возраст, после которого сегмент сменяется.
+     */
+    private final long segmentMillis;
+
+    /**
+     * Общий объем хранимых сегментов.
+     */
+    private final long retentionBytes;
+
+    /**
+     * Срок хранения сегментов.
+     */
+    private final long retentionMillis;
+
+    /**
+     * Сегменты по возрастанию номеров. Массив не изменяется, а заменяется целиком.
+     */
+    private volatile LogSegment[] segments;
+
+    /**
+     * Архив вышедших из хранения сегментов или null, если они просто удаляются.
+     */
+    private final LogArchive archive;
+
+    /**
+     * Сегменты, вышедшие из хранения, файлы которых не удалось удалить сразу.
+     */
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    /**
+     * Конструктор класса LogSegmentStore. Открывает существующие сегменты каталога.
+     *
+     * @param directory       Каталог хранилища.
+     * @param segmentBytes    Размер файла сегмента.
+     * @param segmentMillis   Возраст, после которого сегмент сменяется.
+     * @param retentionBytes  Общий объем хранимых сегментов.
+     * @param retentionMillis Срок хранения сегментов.
+     * @throws IOException Если каталог не удалось создать или прочитать.
+     */
+    public LogSegmentStore(Path directory, int segmentBytes, long segmentMillis, long retentionBytes,
+                           long retentionMillis) throws IOException {
+        this(directory, segmentBytes, segmentMillis, retentionBytes, retentionMillis, null);
+    }
+
+    /**
+     * Конструктор класса LogSegmentStore с архивом для вышедших из хранения сегментов.
+     *
+     * @param directory       Каталог хранилища.
+     * @param segmentBytes    Размер файла сегмента.
+     * @param segmentMillis   Возраст, после которого сегмент сменяется.
+     * @param retentionBytes  Общий объем хранимых сегментов.
+     * @param retentionMillis Срок хранения сегментов.
+     * @param archive         Архив или null, если вышедшие из хранения сегменты нужно удалять.
+     * @throws IOException Если каталог не удалось создать или прочитать.
+     */
+    public LogSegmentStore(Path directory, int segmentBytes, long segmentMillis, long retentionBytes,
+                           long retentionMillis, LogArchive archive) throws IOException {
+        if (segmentBytes < LogSegment.HEADER_SIZE + LogSegment.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Слишком маленький размер сегмента: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.segmentMillis = segmentMillis;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+        this.archive = archive;
+        Files.createDirectories(directory);
+        this.segments = openSegments();
+    }
+
+    /**
+     * Открывает хранилище в заданном каталоге с параметрами по умолчанию. Вышедшие из хранения
+     * сегменты сжимаются в архив в подкаталоге {@code archive}.
+     *
+     * @param directory Каталог хранилища.
+     * @return Хранилище.
+     * @throws IOException Если каталог не удалось создать или прочитать.
+     */
+    public static LogSegmentStore open(Path directory) throws IOException {
+        LogArchive archive = new LogArchive(directory.resolve("archive"), new DeflateCodec(Deflater.DEFAULT_COMPRESSION),
+                LogArchive.DEFAULT_RETENTION_MILLIS);
+        return new LogSegmentStore(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_MILLIS,
+                DEFAULT_RETENTION_BYTES, DEFAULT_RETENTION_MILLIS, archive);
+    }
+
+    /**
+     * Открывает файлы сегментов каталога. Поврежденные файлы пропускаются. Сегменты, которые
+     * уже есть в архиве, но не были удалены до перезапуска, не открываются, а удаляются.
+     *
+     * @return Сегменты по возрастанию номеров.
+     * @throws IOException Если каталог не удалось прочитать.
+     */
+    private LogSegment[] openSegments() throws IOException {
+        List<LogSegment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (archive != null && archive.contains(parseBaseSequence(file))) {
+                        pendingDeletes.add(file);
+                        continue;
+                    }
+                    opened.add(LogSegment.open(file));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        deletePending();
+        opened.sort((a, b) -> Long.compare(a.getBaseSequence(), b.getBaseSequence()));
+        return opened.toArray(new LogSegment[0]);
+    }
+
+    /**
+     * Возвращает номер первой записи сегмента по имени его файла.
+     *
+     * @param file Файл сегмента.
+     * @return Номер первой записи или -1, если имя файла не из хранилища.
+     */
+    private static long parseBaseSequence(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Дописывает запись в хранилище. Записи с номерами меньше {@link #getNextSequence()} пропускаются.
+     *
+     * @param entry Запись протокола с порядковым номером.
+     */
+    public synchronized void append(LogEntry entry) {
+        long sequence = entry.getSequence();
+        if (sequence < getNextSequence()) {
+            return;
+        }
+        byte[] message = entry.getMessage().getBytes(StandardCharsets.UTF_8);
+        int maxMessage = segmentBytes - LogSegment.HEADER_SIZE - LogSegment.RECORD_HEADER_SIZE;
+        if (message.length > maxMessage) {
+            // Обрезка переносится на начало символа, чтобы не разрезать его байты UTF-8
+            int length = maxMessage;
+            while (length > 0 && (message[length] & 0xC0) == 0x80) {
+                length--;
+            }
+            message = Arrays.copyOf(message, length);
+        }
+        try {
+            LogSegment current = currentSegment(sequence);
+            if (!current.append(sequence, entry.getTimestampNanos(), entry.getLevel(), message)) {
+                roll(sequence).append(sequence, entry.getTimestampNanos(), entry.getLevel(), message);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Возвращает сегмент для новой записи, сменяя текущий, если он устарел.
+     *
+     * @param sequence Порядковый номер новой записи.
+     * @return Сегмент, в который нужно писать.
+     * @throws IOException Если новый сегмент не удалось создать.
+     */
+    private LogSegment currentSegment(long sequence) throws IOException {
+        LogSegment[] snapshot = segments;
+        if (snapshot.length == 0) {
+            return roll(sequence);
+        }
+        LogSegment last = snapshot[snapshot.length - 1];
+        if (System.currentTimeMillis() - last.getCreatedMillis() >= segmentMillis
+                && last.getNextSequence() > last.getBaseSequence()) {
+            return roll(sequence);
+        }
+        return last;
+    }
+
+    /**
+     * Закрывает текущий сегмент, открывает новый и удаляет сегменты, вышедшие из хранения.
+     *
+     * @param sequence Порядковый номер первой записи нового сегмента.
+     * @return Новый сегмент.
+     * @throws IOException Если новый сегмент не удалось создать.
+     */
+    private LogSegment roll(long sequence) throws IOException {
+        LogSegment[] snapshot = segments;
+        if (snapshot.length > 0) {
+            snapshot[snapshot.length - 1].force();
+        }
+        long now = System.currentTimeMillis();
+        LogSegment created = LogSegment.create(directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX)),
+                sequence, segmentBytes, now);
+        LogSegment[] grown = Arrays.copyOf(snapshot, snapshot.length + 1);
+        grown[snapshot.length] = created;
+        segments = applyRetention(grown, now);
+        return created;
+    }
+
+    /**
+     * Отбрасывает самые старые сегменты сверх общего объема или старше срока хранения.
+     * Последний сегмент не отбрасывается никогда.
+     *
+     * @param candidates Сегменты по возрастанию номеров.
+     * @param now        Текущее время.
+     * @return Оставшиеся сегменты.
+     */
+    private LogSegment[] applyRetention(LogSegment[] candidates, long now) {
+        long totalBytes = 0;
+        for (LogSegment segment : candidates) {
+            totalBytes += segment.getCapacity();
+        }
+        int first = 0;
+        while (first < candidates.length - 1
+                && (totalBytes > retentionBytes || now - candidates[first].getCreatedMillis() > retentionMillis)) {
+            totalBytes -= candidates[first].getCapacity();
+            if (archive != null) {
+                archive.submit(candidates[first]);
+            } else {
+                pendingDeletes.add(candidates[first].getPath());
+            }
+            first++;
+        }
+        deletePending();
+        return first == 0 ? candidates : Arrays.copyOfRange(candidates, first, candidates.length);
+    }
+
+    /**
+     * Удаляет файлы отброшенных сегментов. Файл, который еще отображен и не может быть удален
+     * (например, в Windows), остается в списке до следующей смены сегмента.
+     */
+    private void deletePending() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Передает посетителю хранимые записи с номерами от from до to (не включительно)
+     * по возрастанию номеров. Сообщения из сегментов передаются без копирования; записи старше
+     * самого старого сегмента читаются из архива.
+     *
+     * @param from    Первый порядковый номер.
+     * @param to      Порядковый номер после последнего.
+     * @param visitor Посетитель записей.
+     */
+    public void read(long from, long to, RecordVisitor visitor) {
+        LogSegment[] snapshot = segments;
+        long firstStored = snapshot.length > 0 ? snapshot[0].getBaseSequence() : getNextSequence();
+        if (archive != null && from < firstStored && !archive.read(from, Math.min(to, firstStored), visitor)) {
+            return;
+        }
+        int index = findSegment(snapshot, from);
+        for (int i = Math.max(index, 0); i < snapshot.length; i++) {
+            LogSegment segment = snapshot[i];
+            if (segment.getBaseSequence() >= to) {
+                return;
+            }
+            if (!segment.read(from, to, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает хранимые записи с номерами от from до to (не включительно).
+     *
+     * @param from Первый порядковый номер.
+     * @param to   Порядковый номер после последнего.
+     * @return Записи по возрастанию порядковых номеров.
+     */
+    public List<LogEntry> read(long from, long to) {
+        List<LogEntry> result = new ArrayList<>();
+        read(from, to, (sequence, timestampNanos, level, message) -> {
+            result.add(new LogEntry(sequence, timestampNanos, level, StandardCharsets.UTF_8.decode(message).toString()));
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Находит сегмент, который может содержать запись с заданным номером.
+     *
+     * @param snapshot Сегменты по возрастанию номеров.
+     * @param sequence Порядковый номер.
+     * @return Номер сегмента или -1, если номер меньше начала первого сегмента.
+     */
+    private static int findSegment(LogSegment[] snapshot, long sequence) {
+        int low = 0;
+        int high = snapshot.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (snapshot[middle].getBaseSequence() <= sequence) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Возвращает порядковый номер самой старой хранимой записи, включая архив.
+     *
+     * @return Порядковый номер или {@link #getNextSequence()}, если хранилище пусто.
+     */
+    public long getOldestSequence() {
+        LogSegment[] snapshot = segments;
+        long oldest = snapshot.length > 0 ? snapshot[0].getBaseSequence() : 0;
+        return archive != null && !archive.isEmpty() ? Math.min(oldest, archive.getOldestSequence()) : oldest;
+    }
+
+    /**
+     * Возвращает архив вышедших из хранения сегментов.
+     *
+     * @return Архив или null, если сегменты удаляются.
+     */
+    public LogArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Возвращает порядковый номер, следующий за последней записью хранилища.
+     *
+     * @return Порядковый номер, с которого нужно продолжать нумерацию.
+     */
+    public long getNextSequence() {
+        LogSegment[] snapshot = segments;
+        return snapshot.length > 0 ? snapshot[snapshot.length - 1].getNextSequence() : 0;
+    }
+
+    /**
+     * Возвращает объем данных в хранилище.
+     *
+     * @return Сумма занятых байтов всех сегментов.
+     */
+    public long getUsedBytes() {
+        long total = 0;
+        for (LogSegment segment : segments) {
+            total += segment.getUsedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Сбрасывает на диск текущий сегмент.
+     */
+    public synchronized void flush() {
+        LogSegment[] snapshot = segments;
+        if (snapshot.length > 0) {
+            snapshot[snapshot.length - 1].force();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package log;
+
+import java.io.IOException;
+
+/**
+ * Получатель записей протокола: файл, сетевой поток, счетчики и т.п.
+ * <p>
+ * Каждый получатель, подключенный к {@link AsyncLogDispatcher}, обслуживается своим потоком
+ * с собственной ограниченной очередью ({@link LogSinkWorker}), поэтому медленный получатель
+ * не задерживает ни окно протокола, ни других получателей. Методы вызываются только этим потоком.
+ * Записи приходят уже с порядковыми номерами, в порядке номеров.
+ * </p>
+ */
+public interface LogSink {
+
+    /**
+     * Возвращает имя получателя для статистики и имени его потока.
+     *
+     * @return Имя получателя.
+     */
+    String getName();
+
+    /**
+     * Записывает одну запись. Может буферизовать ее до {@link #flush()}.
+     *
+     * @param entry Запись протокола.
+     * @throws IOException Если запись не удалась; запись считается потерянной.
+     */
+    void write(LogEntry entry) throws IOException;
+
+    /**
+     * Дописывает буферизованные записи. Вызывается, когда очередь получателя опустела.
+     *
+     * @throws IOException Если дописать не удалось.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Освобождает ресурсы получателя. Вызывается один раз при завершении протокола,
+     * после того как доставлены и дописаны все записи.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,273 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поток, обслуживающий одного получателя протокола ({@link LogSink}).
+ * <p>
+ * У каждого получателя своя ограниченная очередь. Поток доставки только кладет в нее запись и никогда
+ * не ждет: если очередь полна, запись для этого получателя отбрасывается и учитывается в счетчике
+ * пропусков. Исключение в получателе учитывается в счетчике сбоев и не останавливает ни его поток,
+ * ни других получателей. Отставание получателя видно по количеству ждущих записей и по возрасту
+ * самой старой из них.
+ * </p>
+ */
+public final class LogSinkWorker {
+
+    /**
+     * Наибольшее количество записей, забираемых из очереди за раз.
+     */
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * Метка конца очереди: получив ее, поток получателя дописывает предыдущие записи и завершается.
+     * Поток не прерывается, потому что прерывание закрыло бы файловый канал, в который пишет получатель.
+     */
+    private static final LogEntry STOP = new LogEntry(LogLevel.Trace, "");
+
+    /**
+     * Получатель.
+     */
+    private final LogSink sink;
+
+    /**
+     * Очередь записей, ожидающих записи получателем.
+     */
+    private final BlockingQueue<LogEntry> queue;
+
+    /**
+     * Поток получателя.
+     */
+    private final Thread worker;
+
+    /**
+     * Количество записей, принятых в очередь. Пишется только потоком доставки.
+     */
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    /**
+     * Количество записей, обработанных получателем, успешно или нет.
+     */
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * Количество записей, отброшенных при переполнении очереди.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Количество сбоев получателя.
+     */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Метка времени записи, которую сейчас пишет получатель, или -1 между пачками.
+     */
+    private volatile long inFlightTimestampNanos = -1;
+
+    /**
+     * Был ли сбоем предыдущий вызов получателя. Используется только потоком получателя,
+     * чтобы при длительной недоступности не печатать каждый сбой.
+     */
+    private boolean failing;
+
+    /**
+     * Конструктор класса LogSinkWorker. Запускает поток получателя.
+     *
+     * @param sink     Получатель.
+     * @param capacity Вместимость очереди получателя.
+     */
+    LogSinkWorker(LogSink sink, int capacity) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::workLoop, "log-sink-" + sink.getName());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Ставит запись в очередь получателя. Никогда не ждет.
+     *
+     * @param entry Запись с порядковым номером.
+     */
+    void offer(LogEntry entry) {
+        if (queue.offer(entry)) {
+            acceptedCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Цикл потока получателя: ждет записей и передает их получателю пачками.
+     */
+    private void workLoop() {
+        List<LogEntry> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            // Метка ставится в очередь последней, поэтому может быть только в конце пачки
+            boolean stop = batch.get(batch.size() - 1) == STOP;
+            if (stop) {
+                batch.remove(batch.size() - 1);
+            }
+            write(batch);
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Передает пачку записей получателю и, если очередь опустела, просит его дописать буферы.
+     *
+     * @param batch Пачка записей.
+     */
+    private void write(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            inFlightTimestampNanos = entry.getTimestampNanos();
+            try {
+                sink.write(entry);
+                failing = false;
+            } catch (Exception | LinkageError e) {
+                fail(e);
+            }
+            completedCount.incrementAndGet();
+        }
+        inFlightTimestampNanos = -1;
+        if (queue.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Просит получателя дописать буферы.
+     */
+    private void flush() {
+        try {
+            sink.flush();
+        } catch (Exception | LinkageError e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Учитывает сбой получателя. Печатается только первый сбой подряд.
+     *
+     * @param e Исключение получателя.
+     */
+    private void fail(Throwable e) {
+        failureCount.incrementAndGet();
+        if (!failing) {
+            e.printStackTrace();
+            failing = true;
+        }
+    }
+
+    /**
+     * Дает потоку получателя дописать оставшиеся записи, останавливает его и закрывает получателя.
+     * Вызывается при завершении протокола, когда новые записи уже не поступают.
+     *
+     * @param timeoutMillis Сколько ждать места в очереди и завершения потока.
+     */
+    void shutdown(long timeoutMillis) {
+        try {
+            if (!queue.offer(STOP, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                // Получатель завис на записи: оставшиеся записи ему уже не передать
+                return;
+            }
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            return;
+        }
+        try {
+            sink.close();
+        } catch (RuntimeException | LinkageError e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Возвращает получателя.
+     *
+     * @return Получатель.
+     */
+    public LogSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Возвращает имя получателя.
+     *
+     * @return Имя получателя.
+     */
+    public String getName() {
+        return sink.getName();
+    }
+
+    /**
+     * Возвращает количество записей, принятых в очередь, но еще не обработанных получателем.
+     *
+     * @return Отставание в записях.
+     */
+    public long getLag() {
+        return Math.max(0, acceptedCount.get() - completedCount.get());
+    }
+
+    /**
+     * Возвращает возраст самой старой записи, еще не обработанной получателем.
+     *
+     * @return Отставание в наносекундах или 0, если получатель ничего не ждет.
+     */
+    public long getLagNanos() {
+        long timestamp = inFlightTimestampNanos;
+        if (timestamp < 0) {
+            LogEntry head = queue.peek();
+            if (head == null) {
+                return 0;
+            }
+            timestamp = head.getTimestampNanos();
+        }
+        return Math.max(0, LogClock.currentTimeNanos() - timestamp);
+    }
+
+    /**
+     * Возвращает количество записей, обработанных получателем.
+     *
+     * @return Количество записей.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Возвращает количество записей, отброшенных при переполнении очереди получателя.
+     *
+     * @return Количество отброшенных записей.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Возвращает количество сбоев получателя.
+     *
+     * @return Количество сбоев.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -0,0 +1,55 @@
+package log;
+
+/**
+ * Получатель протокола, сохраняющий записи в постоянное хранилище ({@link LogSegmentStore}).
+ * Записи ложатся в отображенные в память сегменты, поэтому на диск хранилище сбрасывается
+ * только при закрытии, а не каждый раз, когда опустела очередь.
+ */
+public class LogStoreSink implements LogSink {
+
+    /**
+     * Постоянное хранилище протокола.
+     */
+    private final LogSegmentStore logStore;
+
+    /**
+     * Конструктор класса LogStoreSink.
+     *
+     * @param logStore Постоянное хранилище протокола.
+     */
+    public LogStoreSink(LogSegmentStore logStore) {
+        this.logStore = logStore;
+    }
+
+    /**
+     * Возвращает имя получателя.
+     *
+     * @return Имя получателя.
+     */
+    @Override
+    public String getName() {
+        return "store";
+    }
+
+    /**
+     * Сохраняет запись в хранилище. Сводки о повторах не сохраняются: у сводки номер свернутой
+     * записи, которая уже сохранена.
+     *
+     * @param entry Запись протокола.
+     */
+    @Override
+    public void write(LogEntry entry) {
+        if (entry.isRepeatSummary()) {
+            return;
+        }
+        logStore.append(entry);
+    }
+
+    /**
+     * Сбрасывает хранилище на диск.
+     */
+    @Override
+    public void close() {
+        logStore.flush();
+    }
+}
@@ -0,0 +1,170 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Получатель протокола, передающий записи текстовыми строками по TCP, например сборщику
+ * протоколов на локальной машине. Строка состоит из порядкового номера, времени, уровня и сообщения,
+ * разделенных табуляцией.
+ * <p>
+ * Соединение устанавливается при первой записи. При обрыве или отказе в соединении записи
+ * не копятся: каждая считается сбоем, а новая попытка соединиться делается не раньше,
+ * чем через {@link #RECONNECT_DELAY_NANOS}.
+ * </p>
+ */
+public class LogTcpSink implements LogSink {
+
+    /**
+     * Время ожидания соединения.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Пауза между попытками соединиться.
+     */
+    private static final long RECONNECT_DELAY_NANOS = 5_000_000_000L;
+
+    /**
+     * Адрес получателя.
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * Соединение или null, если его нет.
+     */
+    private Socket socket;
+
+    /**
+     * Буферизованный поток строк в соединение.
+     */
+    private Writer writer;
+
+    /**
+     * Время, раньше которого не нужно снова пытаться соединиться.
+     */
+    private long reconnectAtNanos = System.nanoTime();
+
+    /**
+     * Конструктор класса LogTcpSink.
+     *
+     * @param host Имя или адрес узла.
+     * @param port Порт.
+     */
+    public LogTcpSink(String host, int port) {
+        this.address = new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Возвращает имя получателя.
+     *
+     * @return Имя получателя.
+     */
+    @Override
+    public String getName() {
+        return "tcp";
+    }
+
+    /**
+     * Записывает строку с записью в буфер соединения, при необходимости соединяясь.
+     *
+     * @param entry Запись протокола.
+     * @throws IOException Если соединения нет или запись не удалась.
+     */
+    @Override
+    public void write(LogEntry entry) throws IOException {
+        Writer out = connect();
+        try {
+            out.write(Long.toString(entry.getSequence()));
+            out.write('\t');
+            out.write(Instant.ofEpochSecond(0, entry.getTimestampNanos()).toString());
+            out.write('\t');
+            out.write(entry.getLevel().name());
+            out.write('\t');
+            out.write(entry.getMessage().replace("\n", "\\n"));
+            out.write('\n');
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Отправляет буферизованные строки.
+     *
+     * @throws IOException Если отправить не удалось.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Закрывает соединение.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        disconnect();
+    }
+
+    /**
+     * Возвращает поток в соединение, соединяясь, если соединения нет и подошло время новой попытки.
+     *
+     * @return Поток в соединение.
+     * @throws IOException Если соединения нет.
+     */
+    private Writer connect() throws IOException {
+        if (writer != null) {
+            return writer;
+        }
+        if (System.nanoTime() - reconnectAtNanos < 0) {
+            throw new IOException("Нет соединения с " + address);
+        }
+        reconnectAtNanos = System.nanoTime() + RECONNECT_DELAY_NANOS;
+        Socket connection = new Socket();
+        try {
+            connection.connect(address, CONNECT_TIMEOUT_MILLIS);
+            connection.setTcpNoDelay(true);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        socket = connection;
+        writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+        return writer;
+    }
+
+    /**
+     * Закрывает соединение без отправки буфера.
+     */
+    private void disconnect() {
+        writer = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            socket = null;
+        }
+    }
+}
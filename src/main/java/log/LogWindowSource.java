@@ -1,31 +1,136 @@
 package log;
 
-import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import util.ListenerRegistry;
+
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * Представляет источник сообщений для окна протокола.
+ * <p>
+ * Сообщения хранятся в кольцевом буфере без блокировок ({@link LogRingBuffer}): каждое сообщение
+ * получает порядковый номер, а читатели могут запросить любой диапазон номеров, не мешая писателям.
+ * </p>
+ * <p>
+ * Слушатели уведомляются отдельным потоком, а не в потоке записи. Уведомления объединяются:
+ * у каждого слушателя не больше одного уведомления за раз, и оно несет весь диапазон номеров,
+ * добавленных с прошлого уведомления.
+ * </p>
+ * <p>
+ * Подряд идущие сообщения с одинаковыми уровнем, шаблоном и аргументами сворачиваются в одну запись со счетчиком
+ * повторов, а частота сообщений каждого уровня ограничена ведром с маркерами ({@link LogRateLimiter},
+ * свойство {@code log.rateLimit}), так что шквал сообщений не вытесняет из буфера остальные
+ * и не замедляет запись. Свернутые и отброшенные сообщения подсчитываются; об отброшенных
+ * источник раз в секунду пишет предупреждение.
+ * </p>
+ * <p>
+ * Хранимые сообщения индексируются по словам ({@link LogSearchIndex}) по мере добавления;
+ * вхождения вытесненных сообщений периодически отбрасываются.
+ * </p>
  */
 public class LogWindowSource {
 
     /**
-     * Максимальная длина очереди сообщений в логе.
+     * Через сколько сообщений из поискового индекса отбрасываются вытесненные.
+     */
+    private static final int SEARCH_EXPIRE_INTERVAL = 1 << 16;
+
+    /**
+     * Допустимое по умолчанию количество сообщений одного уровня в секунду.
+     */
+    private static final int DEFAULT_RATE_LIMIT = Integer.getInteger("log.rateLimit", 10_000);
+
+    /**
+     * Наименьший интервал между предупреждениями об отброшенных ограничителем сообщениях.
+     */
+    private static final long RATE_LIMIT_REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * Кольцевой буфер сообщений лога.
+     */
+    private final LogRingBuffer m_messages;
+
+    /**
+     * Поисковый индекс хранимых сообщений.
+     */
+    private final LogSearchIndex m_searchIndex = new LogSearchIndex();
+
+    /**
+     * Последняя добавленная запись, в которую сворачиваются повторы.
+     */
+    private final AtomicReference<LogEntry> m_lastEntry = new AtomicReference<>();
+
+    /**
+     * Ограничители частоты по уровням.
      */
-    private final int m_iQueueLength;
+    private final AtomicReferenceArray<LogRateLimiter> m_rateLimiters;
 
     /**
-     * Список сообщений лога.
+     * Количество свернутых повторов.
      */
-    private final LinkedList<LogEntry> m_messages;
+    private final AtomicLong m_duplicateCount = new AtomicLong();
 
     /**
-     * Список слушателей изменений лога.
-     * Используем слабые ссылки, чтобы избежать утечек памяти.
+     * Количество сообщений, отброшенных ограничителем частоты, по уровням.
      */
-    private final List<WeakReference<LogChangeListener>> m_listeners;
+    private final AtomicLongArray m_rateLimitedCounts = new AtomicLongArray(LogLevel.values().length);
+
+    /**
+     * Количество отброшенных ограничителем сообщений, о которых еще не предупреждали.
+     */
+    private final AtomicLong m_pendingRateLimited = new AtomicLong();
+
+    /**
+     * Время последнего предупреждения об отброшенных ограничителем сообщениях.
+     */
+    private final AtomicLong m_lastRateLimitReportNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Изменились ли счетчики повторов с прошлого уведомления.
+     */
+    private final AtomicBoolean m_repeatPending = new AtomicBoolean();
+
+    /**
+     * Слушатели изменений лога. Хранятся по слабым ссылкам, чтобы избежать утечек памяти.
+     */
+    private final ListenerRegistry<LogChangeListener> m_listeners = new ListenerRegistry<>();
+
+    /**
+     * Есть ли сообщения, о которых слушатели еще не уведомлены.
+     */
+    private final AtomicBoolean m_dispatchPending = new AtomicBoolean();
+
+    /**
+     * Запущен ли поток уведомлений.
+     */
+    private final AtomicBoolean m_notifierStarted = new AtomicBoolean();
+
+    /**
+     * Поток уведомлений слушателей. Запускается при регистрации первого слушателя.
+     */
+    private volatile Thread m_notifier;
+
+    /**
+     * Номер, до которого слушатели уже уведомлены: все сообщения до него были опубликованы
+     * к моменту уведомления. Используется только потоком уведомлений.
+     */
+    private long m_deliveredSequence;
+
+    /**
+     * Номер после последнего сообщения текущего уведомления. Используется только потоком уведомлений.
+     */
+    private long m_notifyTo;
+
+    /**
+     * Уведомление одного слушателя; создается один раз, чтобы обход слушателей не выделял память.
+     */
+    private final Consumer<LogChangeListener> m_notifyAction = this::notifyListener;
 
     /**
      * Создает новый источник сообщений для окна протокола с указанным размером очереди.
@@ -33,19 +138,40 @@ public class LogWindowSource {
      * @param iQueueLength Максимальный размер очереди сообщений.
      */
     public LogWindowSource(int iQueueLength) {
-        m_iQueueLength = iQueueLength;
-        m_messages = new LinkedList<>();
-        m_listeners = new ArrayList<>();
+        this(iQueueLength, 0);
+    }
+
+    /**
+     * Создает новый источник сообщений, нумерация которого начинается с заданного номера,
+     * например со следующего номера постоянного хранилища протокола {@link LogSegmentStore}.
+     *
+     * @param iQueueLength  Максимальный размер очереди сообщений.
+     * @param firstSequence  Порядковый номер первого сообщения.
+     */
+    public LogWindowSource(int iQueueLength, long firstSequence) {
+        m_messages = new LogRingBuffer(iQueueLength, firstSequence);
+        m_deliveredSequence = firstSequence;
+        m_rateLimiters = new AtomicReferenceArray<>(LogLevel.values().length);
+        for (LogLevel level : LogLevel.values()) {
+            m_rateLimiters.set(level.ordinal(), new LogRateLimiter(DEFAULT_RATE_LIMIT, 2 * DEFAULT_RATE_LIMIT));
+        }
     }
 
     /**
      * Регистрирует слушателя для получения уведомлений об изменениях в протоколе.
+     * Слушатель будет уведомлен о сообщениях, добавленных после регистрации; первый переданный ему
+     * диапазон может начинаться немного раньше, с последнего уведомления остальных слушателей.
+     * Источник хранит слушателя по слабой ссылке.
      *
      * @param listener Слушатель изменений в протоколе.
      */
     public void registerListener(LogChangeListener listener) {
-        synchronized (m_listeners) {
-            m_listeners.add(new WeakReference<>(listener));
+        m_listeners.addWeak(listener);
+        if (m_notifierStarted.compareAndSet(false, true)) {
+            Thread notifier = new Thread(this::dispatchLoop, "log-notifier");
+            notifier.setDaemon(true);
+            m_notifier = notifier;
+            notifier.start();
         }
     }
 
@@ -55,45 +181,223 @@ public class LogWindowSource {
      * @param listener Слушатель изменений в протоколе.
      */
     public void unregisterListener(LogChangeListener listener) {
-        synchronized (m_listeners) {
-            m_listeners.removeIf(weakRef -> weakRef.get() == listener || weakRef.get() == null);
-        }
+        m_listeners.remove(listener);
     }
 
     /**
      * Добавляет новую запись в протокол с указанным уровнем и сообщением.
+     * Слушатели не вызываются в потоке записи: он только будит поток уведомлений,
+     * если тот еще не разбужен.
      *
      * @param logLevel   Уровень протоколирования.
      * @param strMessage Сообщение для записи в протокол.
      */
     public void append(LogLevel logLevel, String strMessage) {
-        LogEntry entry = new LogEntry(logLevel, strMessage);
-        synchronized (m_messages) {
-            if (m_messages.size() >= m_iQueueLength) {
-                m_messages.removeFirst(); // Удаляем самое старое сообщение
+        append(logLevel, strMessage, LogClock.currentTimeNanos());
+    }
+
+    /**
+     * Добавляет новую запись с заданной меткой времени, например временем, когда сообщение
+     * было поставлено в очередь асинхронного протокола.
+     *
+     * @param logLevel       Уровень протоколирования.
+     * @param strMessage     Сообщение для записи в протокол.
+     * @param timestampNanos Метка времени в наносекундах от эпохи по часам {@link LogClock}.
+     * @return Добавленная запись с присвоенным порядковым номером или null, если сообщение
+     *         свернуто в предыдущую запись или отброшено ограничителем частоты.
+     */
+    public LogEntry append(LogLevel logLevel, String strMessage, long timestampNanos) {
+        return append(new LogEntry(-1, timestampNanos, logLevel, strMessage));
+    }
+
+    /**
+     * Добавляет запись без порядкового номера, например из очереди асинхронного протокола.
+     * Если предыдущая запись имеет тот же уровень, шаблон и аргументы, сообщение не добавляется, а увеличивает
+     * ее счетчик повторов; сообщение сверх частоты, разрешенной для его уровня, отбрасывается.
+     * В обоих случаях сообщение не собирается из шаблона.
+     * <p>
+     * Метод можно вызывать из нескольких потоков. Повтор сворачивается только в запись, которая
+     * еще последняя: добавляя новую запись, источник закрывает предыдущую для повторов
+     * ({@link LogEntry#closeRepeats()}), и повтор, опоздавший к закрытой записи, проверяется заново.
+     * </p>
+     *
+     * @param queued Запись без порядкового номера.
+     * @return Добавленная запись с присвоенным порядковым номером или null, если сообщение
+     *         свернуто в предыдущую запись или отброшено ограничителем частоты.
+     */
+    public LogEntry append(LogEntry queued) {
+        LogLevel logLevel = queued.getLevel();
+        LogEntry last;
+        while ((last = m_lastEntry.get()) != null && queued.isRepeatOf(last)) {
+            if (last.addRepeat(queued.getTimestampNanos())) {
+                m_duplicateCount.incrementAndGet();
+                m_repeatPending.set(true);
+                wakeNotifier();
+                return null;
             }
-            m_messages.addLast(entry);
         }
-        notifyListeners();
+        long now = System.nanoTime();
+        if (!m_rateLimiters.get(logLevel.ordinal()).tryAcquire(now)) {
+            m_rateLimitedCounts.incrementAndGet(logLevel.ordinal());
+            m_pendingRateLimited.incrementAndGet();
+            return null;
+        }
+        reportRateLimited(now);
+        return publish(queued);
     }
 
     /**
-     * Уведомляет всех зарегистрированных слушателей об изменении лога.
-     * Создается копия списка слушателей для безопасной итерации, чтобы избежать
-     * ошибок синхронизации и предотвратить изменение списка во время итерации.
+     * Кладет запись в буфер и индекс и будит поток уведомлений.
+     *
+     * @param queued Запись без порядкового номера.
+     * @return Добавленная запись.
      */
-    private void notifyListeners() {
-        List<LogChangeListener> activeListeners = new ArrayList<>();
-        synchronized (m_listeners) {
-            for (WeakReference<LogChangeListener> weakRef : m_listeners) {
-                LogChangeListener listener = weakRef.get();
-                if (listener != null) {
-                    activeListeners.add(listener);
+    private LogEntry publish(LogEntry queued) {
+        LogAppendEvent event = new LogAppendEvent();
+        event.begin();
+        LogEntry entry = m_messages.append(queued);
+        setLastEntry(entry);
+        m_searchIndex.add(entry);
+        if ((entry.getSequence() & (SEARCH_EXPIRE_INTERVAL - 1)) == 0) {
+            m_searchIndex.expireBefore(m_messages.getOldestSequence());
+        }
+        int listenerCount = wakeNotifier();
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = entry.getLevel().name();
+            event.listenerCount = listenerCount;
+            event.commit();
+        }
+        return entry;
+    }
+
+    /**
+     * Делает запись последней, если она новее текущей последней, и закрывает для повторов ту,
+     * что перестала быть последней.
+     *
+     * @param entry Только что добавленная запись.
+     */
+    private void setLastEntry(LogEntry entry) {
+        while (true) {
+            LogEntry last = m_lastEntry.get();
+            if (last != null && last.getSequence() > entry.getSequence()) {
+                // Другой писатель успел добавить более новую запись
+                entry.closeRepeats();
+                return;
+            }
+            if (m_lastEntry.compareAndSet(last, entry)) {
+                if (last != null) {
+                    last.closeRepeats();
                 }
+                return;
             }
         }
-        for (LogChangeListener listener : activeListeners) {
-            listener.onLogChanged();
+    }
+
+    /**
+     * Будит поток уведомлений, если есть слушатели и он еще не разбужен.
+     *
+     * @return Количество подписок.
+     */
+    private int wakeNotifier() {
+        int listenerCount = m_listeners.size();
+        if (listenerCount > 0 && m_dispatchPending.compareAndSet(false, true)) {
+            LockSupport.unpark(m_notifier);
+        }
+        return listenerCount;
+    }
+
+    /**
+     * Добавляет предупреждение о сообщениях, отброшенных ограничителем частоты, не чаще
+     * раза в {@link #RATE_LIMIT_REPORT_INTERVAL_NANOS}. Само предупреждение не ограничивается.
+     *
+     * @param now Текущее время по {@link System#nanoTime()}.
+     */
+    private void reportRateLimited(long now) {
+        long lastReport = m_lastRateLimitReportNanos.get();
+        if (m_pendingRateLimited.get() == 0 || now - lastReport < RATE_LIMIT_REPORT_INTERVAL_NANOS
+                || !m_lastRateLimitReportNanos.compareAndSet(lastReport, now)) {
+            return;
+        }
+        long limited = m_pendingRateLimited.getAndSet(0);
+        if (limited > 0) {
+            publish(new LogEntry(-1, LogClock.currentTimeNanos(), LogLevel.Warning,
+                    "Отброшено сообщений протокола сверх допустимой частоты: " + limited));
+        }
+    }
+
+    /**
+     * Задает ограничение частоты сообщений заданного уровня.
+     *
+     * @param logLevel  Уровень протоколирования.
+     * @param perSecond Допустимое количество сообщений в секунду; 0 — без ограничения.
+     * @param burst     Сколько сообщений подряд проходит без ограничения.
+     */
+    public void setRateLimit(LogLevel logLevel, int perSecond, int burst) {
+        m_rateLimiters.set(logLevel.ordinal(), new LogRateLimiter(perSecond, burst));
+    }
+
+    /**
+     * Возвращает количество сообщений, свернутых в предыдущие записи как повторы.
+     *
+     * @return Количество свернутых повторов.
+     */
+    public long getSuppressedDuplicateCount() {
+        return m_duplicateCount.get();
+    }
+
+    /**
+     * Возвращает количество сообщений заданного уровня, отброшенных ограничителем частоты.
+     *
+     * @param logLevel Уровень протоколирования.
+     * @return Количество отброшенных сообщений.
+     */
+    public long getRateLimitedCount(LogLevel logLevel) {
+        return m_rateLimitedCounts.get(logLevel.ordinal());
+    }
+
+    /**
+     * Цикл потока уведомлений. Пока есть неотправленные сообщения, уведомляет каждого слушателя
+     * о диапазоне новых номеров одним вызовом, сколько бы сообщений ни накопилось.
+     */
+    private void dispatchLoop() {
+        while (true) {
+            while (!m_dispatchPending.getAndSet(false)) {
+                LockSupport.park(this);
+            }
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Уведомляет всех зарегистрированных слушателей о сообщениях, добавленных
+     * после их прошлого уведомления. Вызывается только потоком уведомлений.
+     * <p>
+     * Диапазон заканчивается на первом еще не опубликованном сообщении, а не на последнем выданном
+     * номере: иначе сообщение, которое писатель опубликует после уведомления, оказалось бы
+     * внутри уже отправленного диапазона, и слушатели его бы не увидели.
+     * </p>
+     */
+    private void notifyListeners() {
+        long next = m_messages.getPublishedSequence(m_deliveredSequence);
+        boolean repeated = m_repeatPending.getAndSet(false);
+        if (m_deliveredSequence < next || repeated) {
+            m_notifyTo = next;
+            m_listeners.forEach(m_notifyAction);
+            m_deliveredSequence = next;
+        }
+    }
+
+    /**
+     * Уведомляет одного слушателя о текущем диапазоне новых номеров. Вызывается только потоком уведомлений.
+     *
+     * @param listener Слушатель.
+     */
+    private void notifyListener(LogChangeListener listener) {
+        try {
+            listener.onLogChanged(m_deliveredSequence, m_notifyTo);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
         }
     }
 
@@ -103,9 +407,7 @@ public class LogWindowSource {
      * @return Количество сообщений в протоколе.
      */
     public int size() {
-        synchronized (m_messages) {
-            return m_messages.size();
-        }
+        return m_messages.size();
     }
 
     /**
@@ -114,8 +416,58 @@ public class LogWindowSource {
      * @return Итератор, перечисляющий все сообщения протокола.
      */
     public Iterable<LogEntry> all() {
-        synchronized (m_messages) {
-            return new ArrayList<>(m_messages);
-        }
+        return m_messages.range(0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Ищет хранимые сообщения по словам ({@link LogSearchIndex#search}).
+     *
+     * @param query    Слова через пробел; слово со звездочкой в конце ищется по префиксу.
+     * @param minLevel Наименьший уровень найденных сообщений.
+     * @param limit    Наибольшее количество результатов.
+     * @return Порядковые номера самых новых подходящих сообщений по возрастанию.
+     */
+    public long[] search(String query, LogLevel minLevel, int limit) {
+        return m_searchIndex.search(query, minLevel, m_messages.getOldestSequence(), limit);
+    }
+
+    /**
+     * Возвращает сообщение протокола с заданным порядковым номером.
+     *
+     * @param sequence Порядковый номер.
+     * @return Сообщение или null, если оно вытеснено или еще не опубликовано.
+     */
+    public LogEntry get(long sequence) {
+        return m_messages.get(sequence);
+    }
+
+    /**
+     * Возвращает сообщения протокола с порядковыми номерами от from (включительно)
+     * до to (не включительно), которые еще хранятся в протоколе.
+     *
+     * @param from Первый порядковый номер.
+     * @param to   Порядковый номер после последнего.
+     * @return Сообщения по возрастанию порядковых номеров.
+     */
+    public List<LogEntry> range(long from, long to) {
+        return m_messages.range(from, to);
+    }
+
+    /**
+     * Возвращает порядковый номер, который получит следующее сообщение.
+     *
+     * @return Порядковый номер следующего сообщения.
+     */
+    public long getNextSequence() {
+        return m_messages.getNextSequence();
+    }
+
+    /**
+     * Возвращает порядковый номер самого старого хранимого сообщения.
+     *
+     * @return Порядковый номер самого старого хранимого сообщения.
+     */
+    public long getOldestSequence() {
+        return m_messages.getOldestSequence();
     }
 }
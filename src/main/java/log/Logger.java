@@ -1,16 +1,88 @@
 package log;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Утилитарный класс для логирования.
+ * <p>
+ * Сообщения доставляются асинхронно ({@link AsyncLogDispatcher}): вызов только ставит сообщение
+ * в ограниченную очередь, а фоновый поток передает его в окно протокола и в очереди получателей
+ * ({@link LogSink}): хранилища, log4j2, счетчиков и, если задан порт {@code log.tcpPort}, TCP-потока
+ * на локальную машину. Вместимость очередей и поведение при переполнении задаются системными свойствами
+ * {@code log.queueCapacity}, {@code log.sinkCapacity} и {@code log.overflowPolicy} ({@link OverflowPolicy}).
+ * </p>
+ * <p>
+ * Для каждого уровня есть методы, принимающие шаблон с аргументами: сообщение собирается уже
+ * в фоновом потоке, а вызовы ниже порога ({@link #setLevel}, свойство {@code log.level}) отбрасываются
+ * сразу, без сборки сообщения и упаковки простых аргументов.
+ * </p>
+ * <p>
+ * Сообщения также сохраняются в постоянное хранилище ({@link LogSegmentStore}) в каталоге из свойства
+ * {@code log.storeDir} (по умолчанию {@code logs/store}); нумерация сообщений продолжает нумерацию хранилища.
+ * </p>
  */
 public final class Logger
 {
 
+    /**
+     * Вместимость очереди каждого получателя протокола по умолчанию.
+     */
+    private static final int DEFAULT_SINK_CAPACITY = 65536;
+
+    /**
+     * Количество последних сообщений, которые хранит лог-источник по умолчанию.
+     */
+    private static final int LOG_QUEUE_LENGTH = 1_000_000;
+
+    /**
+     * Вместимость очереди асинхронной доставки по умолчанию.
+     */
+    private static final int DEFAULT_DISPATCH_CAPACITY = 65536;
+
+    /**
+     * Предупреждения о неверных значениях свойств, найденные до создания асинхронной доставки.
+     * Пишутся в протокол, как только доставка создана.
+     */
+    private static final List<String> configWarnings = new ArrayList<>();
+
+    /**
+     * Порог протоколирования: наименьший записываемый уровень.
+     */
+    private static volatile LogLevel threshold = getEnumProperty("log.level", LogLevel.class, LogLevel.Trace);
+
+    /**
+     * Числовое значение порога для быстрой проверки.
+     */
+    private static volatile int thresholdLevel = threshold.getLevel();
+
+    /**
+     * Каталог постоянного хранилища по умолчанию.
+     */
+    private static final String DEFAULT_STORE_DIR = "logs/store";
+
+    /**
+     * Постоянное хранилище протокола или null, если его не удалось открыть.
+     */
+    private static final LogSegmentStore logStore = openLogStore();
+
     /**
      * Лог-источник по умолчанию.
      */
-    private static final LogWindowSource defaultLogSource = new LogWindowSource(4);
+    private static final LogWindowSource defaultLogSource = new LogWindowSource(LOG_QUEUE_LENGTH,
+            logStore != null ? logStore.getNextSequence() : 0);
+
+    /**
+     * Счетчики записей протокола.
+     */
+    private static final LogMetricsSink metrics = new LogMetricsSink();
+
+    /**
+     * Асинхронная доставка сообщений.
+     */
+    private static final AsyncLogDispatcher dispatcher = createDispatcher();
 
 
     /**
@@ -20,13 +92,627 @@ public final class Logger
     }
 
 
+    /**
+     * Открывает постоянное хранилище протокола.
+     * @return Хранилище или null, если каталог недоступен.
+     */
+    private static LogSegmentStore openLogStore()
+    {
+        try {
+            return LogSegmentStore.open(Paths.get(System.getProperty("log.storeDir", DEFAULT_STORE_DIR)));
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    /**
+     * Создает асинхронную доставку и подключает к ней получателей: хранилище, log4j2, счетчики
+     * и, если задано свойство {@code log.tcpPort}, передачу по TCP на локальную машину.
+     * @return Асинхронная доставка сообщений.
+     */
+    private static AsyncLogDispatcher createDispatcher()
+    {
+        AsyncLogDispatcher logDispatcher = new AsyncLogDispatcher(
+                Integer.getInteger("log.queueCapacity", DEFAULT_DISPATCH_CAPACITY),
+                getEnumProperty("log.overflowPolicy", OverflowPolicy.class, OverflowPolicy.DROP_NEWEST),
+                defaultLogSource);
+        for (String warning : configWarnings) {
+            logDispatcher.submit(LogLevel.Warning, warning);
+        }
+        configWarnings.clear();
+        int sinkCapacity = Integer.getInteger("log.sinkCapacity", DEFAULT_SINK_CAPACITY);
+        if (logStore != null) {
+            logDispatcher.addSink(new LogStoreSink(logStore), sinkCapacity);
+        }
+        Log4jBridge log4jBridge = createLog4jBridge();
+        if (log4jBridge != null) {
+            logDispatcher.addSink(log4jBridge, sinkCapacity);
+        }
+        logDispatcher.addSink(metrics, sinkCapacity);
+        Integer tcpPort = Integer.getInteger("log.tcpPort");
+        if (tcpPort != null) {
+            logDispatcher.addSink(new LogTcpSink("localhost", tcpPort), sinkCapacity);
+        }
+        return logDispatcher;
+    }
+
+
+    /**
+     * Читает значение перечисления из системного свойства. Неверное значение не мешает запуску:
+     * вместо него берется значение по умолчанию, а в протокол пишется предупреждение.
+     * @param name Имя свойства.
+     * @param type Класс перечисления.
+     * @param defaultValue Значение, если свойство не задано или задано неверно.
+     * @param <E> Тип перечисления.
+     * @return Значение свойства.
+     */
+    private static <E extends Enum<E>> E getEnumProperty(String name, Class<E> type, E defaultValue)
+    {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim());
+        } catch (IllegalArgumentException e) {
+            String warning = "Неверное значение свойства " + name + ": " + value + ", используется " + defaultValue.name();
+            configWarnings.add(warning);
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Создает мост в log4j2.
+     * @return Мост в log4j2 или null, если log4j2 нет в classpath.
+     */
+    private static Log4jBridge createLog4jBridge()
+    {
+        try {
+            return new Log4jBridge();
+        } catch (LinkageError e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение в лог.
+     * @param strMessage Сообщение для записи в лог.
+     */
+    public static void trace(String strMessage)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void trace(String strTemplate, Object argument)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void trace(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void trace(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void trace(String strTemplate, long argument)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает трассировочное сообщение из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void trace(String strTemplate, double argument)
+    {
+        if (LogLevel.Trace.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Trace, strTemplate, new Object[] {argument});
+        }
+    }
+
+
     /**
      * Записывает отладочное сообщение в лог.
      * @param strMessage Сообщение для записи в лог.
      */
     public static void debug(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Debug, strMessage);
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает отладочное сообщение из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void debug(String strTemplate, Object argument)
+    {
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает отладочное сообщение из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void debug(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает отладочное сообщение из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void debug(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает отладочное сообщение из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void debug(String strTemplate, long argument)
+    {
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает отладочное сообщение из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void debug(String strTemplate, double argument)
+    {
+        if (LogLevel.Debug.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Debug, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение в лог.
+     * @param strMessage Сообщение для записи в лог.
+     */
+    public static void info(String strMessage)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void info(String strTemplate, Object argument)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void info(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void info(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void info(String strTemplate, long argument)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает информационное сообщение из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void info(String strTemplate, double argument)
+    {
+        if (LogLevel.Info.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Info, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение в лог.
+     * @param strMessage Сообщение для записи в лог.
+     */
+    public static void warning(String strMessage)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void warning(String strTemplate, Object argument)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void warning(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void warning(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void warning(String strTemplate, long argument)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает предупреждающее сообщение из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void warning(String strTemplate, double argument)
+    {
+        if (LogLevel.Warning.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Warning, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке в лог.
+     * @param strMessage Сообщение для записи в лог.
+     */
+    public static void error(String strMessage)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void error(String strTemplate, Object argument)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void error(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void error(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void error(String strTemplate, long argument)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение об ошибке из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void error(String strTemplate, double argument)
+    {
+        if (LogLevel.Error.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Error, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке в лог.
+     * @param strMessage Сообщение для записи в лог.
+     */
+    public static void fatal(String strMessage)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strMessage);
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке из шаблона с одним аргументом.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void fatal(String strTemplate, Object argument)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке из шаблона с двумя аргументами.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param argument1 Первый аргумент шаблона.
+     * @param argument2 Второй аргумент шаблона.
+     */
+    public static void fatal(String strTemplate, Object argument1, Object argument2)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strTemplate, new Object[] {argument1, argument2});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке из шаблона с произвольным числом аргументов.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void fatal(String strTemplate, Object... arguments)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке из шаблона с целым аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void fatal(String strTemplate, long argument)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает сообщение о критической ошибке из шаблона с вещественным аргументом.
+     * Аргумент упаковывается, только если уровень включен.
+     * @param strTemplate Шаблон сообщения, пара {@code {}} заменяется аргументом.
+     * @param argument Аргумент шаблона.
+     */
+    public static void fatal(String strTemplate, double argument)
+    {
+        if (LogLevel.Fatal.getLevel() >= thresholdLevel) {
+            dispatcher.submit(LogLevel.Fatal, strTemplate, new Object[] {argument});
+        }
+    }
+
+
+    /**
+     * Записывает в лог сообщение заданного уровня из шаблона с аргументами.
+     * @param logLevel Уровень протоколирования.
+     * @param strTemplate Шаблон сообщения, пары {@code {}} заменяются аргументами.
+     * @param arguments Аргументы шаблона.
+     */
+    public static void log(LogLevel logLevel, String strTemplate, Object... arguments)
+    {
+        if (logLevel.getLevel() >= thresholdLevel) {
+            dispatcher.submit(logLevel, strTemplate, arguments);
+        }
+    }
+
+
+    /**
+     * Проверяет, записываются ли сообщения заданного уровня.
+     * Нужна, только если аргументы сообщения дорого вычислять.
+     * @param logLevel Уровень протоколирования.
+     * @return true, если уровень не ниже порога.
+     */
+    public static boolean isEnabled(LogLevel logLevel)
+    {
+        return logLevel.getLevel() >= thresholdLevel;
+    }
+
+
+    /**
+     * Устанавливает порог: сообщения ниже этого уровня отбрасываются в момент вызова.
+     * @param logLevel Наименьший записываемый уровень.
+     */
+    public static void setLevel(LogLevel logLevel)
+    {
+        threshold = logLevel;
+        thresholdLevel = logLevel.getLevel();
+    }
+
+
+    /**
+     * Возвращает порог протоколирования.
+     * @return Наименьший записываемый уровень.
+     */
+    public static LogLevel getLevel()
+    {
+        return threshold;
+    }
+
+
+    /**
+     * Устанавливает поведение при переполнении очереди асинхронной доставки.
+     * @param overflowPolicy Поведение при переполнении.
+     */
+    public static void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        dispatcher.setOverflowPolicy(overflowPolicy);
     }
 
 
@@ -39,4 +725,34 @@ public final class Logger
     {
         return defaultLogSource;
     }
+
+
+    /**
+     * Возвращает постоянное хранилище протокола.
+     * @return Хранилище или null, если протокол не сохраняется.
+     */
+    public static LogSegmentStore getLogStore()
+    {
+        return logStore;
+    }
+
+
+    /**
+     * Возвращает потоки получателей протокола с их отставанием, пропусками и сбоями.
+     * @return Список потоков получателей.
+     */
+    public static List<LogSinkWorker> getSinks()
+    {
+        return dispatcher.getSinks();
+    }
+
+
+    /**
+     * Возвращает счетчики записей протокола.
+     * @return Счетчики записей.
+     */
+    public static LogMetricsSink getMetrics()
+    {
+        return metrics;
+    }
 }
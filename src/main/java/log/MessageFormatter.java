@@ -0,0 +1,84 @@
+package log;
+
+import java.util.Arrays;
+
+/**
+ * Подстановка аргументов в шаблон сообщения протокола.
+ * <p>
+ * Каждая пара {@code {}} в шаблоне заменяется строковым представлением очередного аргумента;
+ * лишние аргументы отбрасываются, а лишние пары остаются как есть. Массивы выводятся поэлементно.
+ * Если {@code toString()} аргумента бросает исключение, вместо аргумента выводится пометка со сбоем,
+ * а сообщение собирается дальше.
+ * </p>
+ */
+final class MessageFormatter {
+
+    /**
+     * Приватный конструктор для предотвращения создания экземпляров класса.
+     */
+    private MessageFormatter() {
+    }
+
+    /**
+     * Подставляет аргументы в шаблон.
+     *
+     * @param template  Шаблон сообщения.
+     * @param arguments Аргументы или null.
+     * @return Сообщение.
+     */
+    static String format(String template, Object[] arguments) {
+        if (template == null) {
+            return "null";
+        }
+        if (arguments == null || arguments.length == 0) {
+            return template;
+        }
+        StringBuilder builder = new StringBuilder(template.length() + 16 * arguments.length);
+        int position = 0;
+        for (Object argument : arguments) {
+            int placeholder = template.indexOf("{}", position);
+            if (placeholder < 0) {
+                break;
+            }
+            builder.append(template, position, placeholder);
+            appendArgument(builder, argument);
+            position = placeholder + 2;
+        }
+        builder.append(template, position, template.length());
+        return builder.toString();
+    }
+
+    /**
+     * Добавляет строковое представление аргумента или пометку, если его не удалось получить.
+     *
+     * @param builder  Строящееся сообщение.
+     * @param argument Аргумент.
+     */
+    private static void appendArgument(StringBuilder builder, Object argument) {
+        try {
+            builder.append(toString(argument));
+        } catch (Exception | LinkageError e) {
+            builder.append("[toString() failed: ").append(e.getClass().getName()).append(']');
+        }
+    }
+
+    /**
+     * Возвращает строковое представление аргумента.
+     *
+     * @param argument Аргумент.
+     * @return Строковое представление; массивы выводятся поэлементно.
+     */
+    private static String toString(Object argument) {
+        if (argument instanceof Object[]) {
+            return Arrays.deepToString((Object[]) argument);
+        } else if (argument instanceof int[]) {
+            return Arrays.toString((int[]) argument);
+        } else if (argument instanceof long[]) {
+            return Arrays.toString((long[]) argument);
+        } else if (argument instanceof double[]) {
+            return Arrays.toString((double[]) argument);
+        } else {
+            return String.valueOf(argument);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package log;
+
+
+/**
+ * Поведение асинхронного протокола при переполнении очереди сообщений.
+ */
+public enum OverflowPolicy
+{
+    /**
+     * Новое сообщение отбрасывается. Вызывающий поток никогда не ждет.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Из очереди вытесняется самое старое сообщение. Вызывающий поток никогда не ждет.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Вызывающий поток ждет, пока в очереди освободится место. Не подходит для потока моделирования.
+     */
+    BLOCK
+}
@@ -1,11 +1,27 @@
 package log;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 /**
  * Структура данных для хранения логов во временных окнах, автоматически удаляет устаревшие логи.
+ * <p>
+ * Окно хранения делится на {@link #BUCKET_COUNT} интервалов равной ширины, и записи каждого интервала
+ * лежат в своей корзине {@link LogBucket}. Корзины образуют кольцо: когда время переходит в новый
+ * интервал, корзина самого старого интервала списывается целиком и на ее место ставится новая.
+ * Поэтому добавление записи стоит O(1), а удаление устаревших — O(1) в среднем на запись.
+ * Количество записей поддерживается атомарным счетчиком. Записи хранятся с точностью до ширины
+ * интервала: запись удаляется, когда устаревает весь ее интервал.
+ * </p>
+ * <p>
+ * Для каждого уровня логирования ведется индекс записей, упорядоченный по метке времени
+ * и порядковому номеру. Запрос вида "записи уровня не ниже Warning между t1 и t2"
+ * ({@link #query(LogLevel, long, long)}) находит границы диапазона в каждом индексе
+ * за логарифмическое время и перебирает только подходящие записи.
+ * </p>
  */
 public class TemporalLogStructure implements Iterable <LogEntry> {
 
@@ -15,9 +31,48 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
     private final long windowDurationMillis;
 
     /**
-     * Карта временных окон, ключ - время начала окна, значение - список записей логов {@link LogEntry}.
+     * Количество интервалов в окне хранения.
      */
-    private final ConcurrentSkipListMap<Long, List <LogEntry>> temporalWindows;
+    private static final int BUCKET_COUNT = 64;
+
+    /**
+     * Ширина интервала в наносекундах.
+     */
+    private final long bucketWidthNanos;
+
+    /**
+     * Кольцо корзин: интервал с номером s хранится в ячейке s по модулю {@link #BUCKET_COUNT}.
+     */
+    private final AtomicReferenceArray<LogBucket> buckets;
+
+    /**
+     * Номер самого нового интервала в кольце.
+     */
+    private final AtomicLong headSlot;
+
+    /**
+     * Количество записей во всех корзинах кольца.
+     */
+    private final AtomicLong size = new AtomicLong();
+
+
+    /**
+     * Порядок записей в индексе: по метке времени, при равных метках — по порядковому номеру.
+     */
+    private static final Comparator<LogEntry> TIME_ORDER =
+            Comparator.comparingLong(LogEntry::getTimestampNanos).thenComparingLong(LogEntry::getSequence);
+
+
+    /**
+     * Индексы записей по уровням: элемент с номером {@link LogLevel#ordinal()} хранит записи этого уровня.
+     */
+    private final List<ConcurrentSkipListSet<LogEntry>> levelIndex;
+
+
+    /**
+     * Порядковый номер следующей записи, созданной этой структурой.
+     */
+    private final AtomicLong nextSequence = new AtomicLong();
 
 
     /**
@@ -26,8 +81,21 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
      * @param windowDurationMillis Длительность временного окна в миллисекундах.
      */
     public TemporalLogStructure(long windowDurationMillis) {
+        if (windowDurationMillis <= 0) {
+            throw new IllegalArgumentException("Длительность окна должна быть положительной");
+        }
         this.windowDurationMillis = windowDurationMillis;
-        this.temporalWindows = new ConcurrentSkipListMap<>();
+        this.bucketWidthNanos = Math.max(1, (windowDurationMillis * 1_000_000L + BUCKET_COUNT - 1) / BUCKET_COUNT);
+        long head = LogClock.currentTimeNanos() / bucketWidthNanos;
+        this.headSlot = new AtomicLong(head);
+        this.buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+        for (long slot = head - BUCKET_COUNT + 1; slot <= head; slot++) {
+            buckets.set(bucketIndex(slot), new LogBucket(slot));
+        }
+        this.levelIndex = new ArrayList<>();
+        for (int i = 0; i < LogLevel.values().length; i++) {
+            levelIndex.add(new ConcurrentSkipListSet<>(TIME_ORDER));
+        }
     }
 
 
@@ -38,48 +106,150 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
      * @param strMessage Сообщение лога.
      */
     public void append(LogLevel logLevel, String strMessage) {
-        long currentTime = System.currentTimeMillis();
-        long windowStart = currentTime - windowDurationMillis;
-        LogEntry logEntry = new LogEntry(logLevel, strMessage);
-        List  <LogEntry> currentWindow = temporalWindows.computeIfAbsent(windowStart, k -> new ArrayList<>());
-        currentWindow.add(logEntry);
-        cleanUpExpiredWindows(currentTime);
+        append(new LogEntry(nextSequence.getAndIncrement(), logLevel, strMessage));
+    }
+
 
+    /**
+     * Добавляет в структуру готовую запись лога {@link LogEntry}, например полученную из источника протокола.
+     *
+     * @param logEntry Запись лога с меткой времени и порядковым номером.
+     */
+    public void append(LogEntry logEntry) {
+        long slot = logEntry.getTimestampNanos() / bucketWidthNanos;
+        advance(Math.max(slot, LogClock.currentTimeNanos() / bucketWidthNanos));
+        while (slot > headSlot.get() - BUCKET_COUNT) {
+            LogBucket bucket = buckets.get(bucketIndex(slot));
+            if (bucket.getSlot() == slot) {
+                if (bucket.add(logEntry)) {
+                    size.incrementAndGet();
+                    levelIndex.get(logEntry.getLevel().ordinal()).add(logEntry);
+                    return;
+                }
+            } else if (bucket.getSlot() > slot) {
+                // Пока запись добавлялась, ее интервал устарел
+                return;
+            } else {
+                // Другой поток сдвигает кольцо и еще не поставил корзину этого интервала
+                Thread.onSpinWait();
+            }
+        }
     }
 
 
     /**
-     * Удаляет устаревшие временные окна с записями логов.
+     * Сдвигает кольцо так, чтобы самым новым стал заданный интервал, и списывает устаревшие корзины.
+     * Каждая корзина списывается один раз, поэтому в среднем на запись приходится O(1) работы.
      *
-     * @param currentTime Текущее время в миллисекундах для сравнения с длительностью окна.
+     * @param slot Номер интервала, который должен быть в кольце.
      */
-    private void cleanUpExpiredWindows(long currentTime) {
-        long oldestValidWindow = currentTime - windowDurationMillis;
-        temporalWindows.headMap(oldestValidWindow, true).clear();
+    private void advance(long slot) {
+        long head = headSlot.get();
+        while (slot > head) {
+            if (headSlot.compareAndSet(head, slot)) {
+                for (long newSlot = Math.max(head + 1, slot - BUCKET_COUNT + 1); newSlot <= slot; newSlot++) {
+                    LogBucket expired = buckets.getAndSet(bucketIndex(newSlot), new LogBucket(newSlot));
+                    size.addAndGet(-expired.retire());
+                }
+                cleanUpExpiredIndex(slot);
+                return;
+            }
+            head = headSlot.get();
+        }
+    }
+
+
+    /**
+     * Удаляет из индексов уровней записи интервалов, вышедших из кольца.
+     *
+     * @param head Номер самого нового интервала.
+     */
+    private void cleanUpExpiredIndex(long head) {
+        LogEntry oldestValid = probe((head - BUCKET_COUNT + 1) * bucketWidthNanos);
+        for (ConcurrentSkipListSet<LogEntry> index : levelIndex) {
+            index.headSet(oldestValid).clear();
+        }
+    }
+
+
+    /**
+     * Возвращает ячейку кольца для интервала.
+     *
+     * @param slot Номер интервала.
+     * @return Номер ячейки.
+     */
+    private static int bucketIndex(long slot) {
+        return (int) Math.floorMod(slot, (long) BUCKET_COUNT);
+    }
+
+
+    /**
+     * Возвращает записи уровня не ниже заданного с метками времени от fromNanos (включительно)
+     * до toNanos (не включительно), упорядоченные по времени.
+     * <p>
+     * Границы диапазона ищутся в индексе каждого подходящего уровня за логарифмическое время,
+     * поэтому стоимость запроса зависит от числа найденных записей, а не от размера структуры.
+     * </p>
+     *
+     * @param minLevel  Наименьший уровень логирования.
+     * @param fromNanos Начало интервала в наносекундах от эпохи по часам {@link LogClock}.
+     * @param toNanos   Конец интервала в наносекундах от эпохи по часам {@link LogClock}.
+     * @return Найденные записи по возрастанию метки времени.
+     */
+    public List<LogEntry> query(LogLevel minLevel, long fromNanos, long toNanos) {
+        List<LogEntry> result = new ArrayList<>();
+        if (fromNanos >= toNanos) {
+            return result;
+        }
+        LogEntry from = probe(fromNanos);
+        LogEntry to = probe(toNanos);
+        int levels = 0;
+        for (LogLevel level : LogLevel.values()) {
+            if (level.getLevel() >= minLevel.getLevel()) {
+                result.addAll(levelIndex.get(level.ordinal()).subSet(from, true, to, false));
+                levels++;
+            }
+        }
+        if (levels > 1) {
+            // Записи каждого уровня уже упорядочены, осталось слить уровни между собой
+            result.sort(TIME_ORDER);
+        }
+        return result;
+    }
+
+
+    /**
+     * Создает пробную запись для поиска в индексе: она предшествует всем записям с той же меткой времени.
+     *
+     * @param timestampNanos Метка времени в наносекундах от эпохи.
+     * @return Пробная запись.
+     */
+    private static LogEntry probe(long timestampNanos) {
+        return new LogEntry(Long.MIN_VALUE, timestampNanos, LogLevel.Trace, null);
     }
 
 
     /**
      * Возвращает общее количество записей логов во всех временных окнах.
+     * Счетчик поддерживается при добавлении и списании корзин, поэтому записи не перебираются.
      *
      * @return Общее число записей логов.
      */
     public int size() {
-        int totalSize = 0;
-        for (List <LogEntry> window : temporalWindows.values()) {
-            totalSize += window.size();
-        }
-        return totalSize;
+        advance(LogClock.currentTimeNanos() / bucketWidthNanos);
+        return (int) Math.max(0, size.get());
     }
 
 
     /**
      * Возвращает итератор по записям логов, агрегирующий все записи из всех временных окон.
+     * Корзины обходятся от старых интервалов к новым.
      *
      * @return Итератор по записям логов {@link LogEntry}.
      */
     @Override
     public Iterator <LogEntry> iterator() {
+        advance(LogClock.currentTimeNanos() / bucketWidthNanos);
         return new TemporalLogIterator();
     }
 
@@ -90,26 +260,43 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
     private class TemporalLogIterator implements Iterator <LogEntry> {
 
         /**
-         * Итератор для обхода списков логов в каждом временном окне.
+         * Корзины кольца на момент создания итератора, от старых интервалов к новым.
+         */
+        private final List<LogBucket> snapshot = new ArrayList<>(BUCKET_COUNT);
+
+        /**
+         * Номер текущей корзины в снимке.
+         */
+        private int bucket;
+
+        /**
+         * Номер следующей записи в текущей корзине.
+         */
+        private int index;
+
+        /**
+         * Количество записей текущей корзины, видимых итератору.
          */
-        private final Iterator<List <LogEntry>> windowIterator;
+        private int bucketSize;
 
         /**
-         * Итератор для обхода записей логов в текущем временном окне.
+         * Следующая запись или null, если ее еще нужно найти.
          */
-        private Iterator <LogEntry> entryIterator;
+        private LogEntry nextEntry;
 
 
         /**
-         * Конструктор итератора. Инициализирует итераторы для обхода временных окон и записей логов.
+         * Конструктор итератора. Запоминает корзины, которые сейчас находятся в кольце.
          */
         public TemporalLogIterator() {
-            windowIterator = temporalWindows.values().iterator();
-            if (windowIterator.hasNext()) {
-                entryIterator = windowIterator.next().iterator();
-            } else {
-                entryIterator = Collections.emptyIterator();
+            long head = headSlot.get();
+            for (long slot = head - BUCKET_COUNT + 1; slot <= head; slot++) {
+                LogBucket current = buckets.get(bucketIndex(slot));
+                if (current.getSlot() == slot) {
+                    snapshot.add(current);
+                }
             }
+            bucket = -1;
         }
 
 
@@ -120,17 +307,20 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
          */
         @Override
         public boolean hasNext() {
-            if (entryIterator.hasNext()) {
-                return true;
-            } else {
-                while (windowIterator.hasNext()) {
-                    entryIterator = windowIterator.next().iterator();
-                    if (entryIterator.hasNext()) {
-                        return true;
+            while (nextEntry == null) {
+                if (index >= bucketSize) {
+                    bucket++;
+                    if (bucket >= snapshot.size()) {
+                        return false;
                     }
+                    index = 0;
+                    bucketSize = snapshot.get(bucket).size();
+                    continue;
                 }
-                return false;
+                // Пропускаем места, зарезервированные писателями, но еще не заполненные
+                nextEntry = snapshot.get(bucket).get(index++);
             }
+            return true;
         }
 
 
@@ -143,10 +333,12 @@ public class TemporalLogStructure implements Iterable <LogEntry> {
         @Override
         public LogEntry next() {
             if (hasNext()) {
-                return entryIterator.next();
+                LogEntry entry = nextEntry;
+                nextEntry = null;
+                return entry;
             } else {
                 throw new NoSuchElementException("No more elements in the log");
             }
         }
     }
-}
\ No newline at end of file
+}
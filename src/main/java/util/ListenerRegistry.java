@@ -0,0 +1,169 @@
+package util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Список слушателей, который можно менять из любых потоков во время уведомления.
+ * <p>
+ * Слушатели хранятся в массиве, который при каждом изменении заменяется копией с помощью
+ * сравнения с обменом, поэтому ни добавление, ни удаление, ни уведомление не берут блокировок,
+ * а уведомление проходит по снимку массива без выделения памяти. Слушатель можно хранить по слабой
+ * ссылке: тогда он не удерживается списком, а его запись удаляется, когда уведомление обнаружит,
+ * что слушатель собран сборщиком мусора.
+ * </p>
+ *
+ * @param <T> Тип слушателя.
+ */
+public final class ListenerRegistry<T> {
+
+    /**
+     * Пустой массив записей.
+     */
+    private static final Entry<?>[] EMPTY = new Entry<?>[0];
+
+    /**
+     * Текущий массив записей. Никогда не изменяется на месте.
+     */
+    private final AtomicReference<Entry<T>[]> entries = new AtomicReference<>(empty());
+
+    /**
+     * Запись о слушателе: сильная или слабая ссылка на него.
+     *
+     * @param <T> Тип слушателя.
+     */
+    private static final class Entry<T> {
+        private final T strong;
+        private final WeakReference<T> weak;
+
+        private Entry(T listener, boolean weakly) {
+            this.strong = weakly ? null : listener;
+            this.weak = weakly ? new WeakReference<>(listener) : null;
+        }
+
+        private T get() {
+            return weak != null ? weak.get() : strong;
+        }
+    }
+
+    /**
+     * Добавляет слушателя, удерживая его, пока он не будет удален.
+     *
+     * @param listener Слушатель.
+     */
+    public void add(T listener) {
+        append(new Entry<>(listener, false));
+    }
+
+    /**
+     * Добавляет слушателя по слабой ссылке: список не мешает сборщику мусора собрать слушателя.
+     *
+     * @param listener Слушатель.
+     */
+    public void addWeak(T listener) {
+        append(new Entry<>(listener, true));
+    }
+
+    /**
+     * Удаляет все записи заданного слушателя.
+     *
+     * @param listener Слушатель.
+     */
+    public void remove(T listener) {
+        removeIf(listener);
+    }
+
+    /**
+     * Вызывает действие для каждого слушателя в порядке добавления. Слушатели, добавленные
+     * или удаленные во время обхода, учитываются со следующего обхода. Если встретились собранные
+     * сборщиком мусора слушатели, их записи после обхода удаляются.
+     *
+     * @param action Действие; чтобы обход не выделял память, его стоит создать один раз заранее.
+     */
+    public void forEach(Consumer<? super T> action) {
+        boolean cleared = false;
+        for (Entry<T> entry : entries.get()) {
+            T listener = entry.get();
+            if (listener == null) {
+                cleared = true;
+            } else {
+                action.accept(listener);
+            }
+        }
+        if (cleared) {
+            removeIf(null);
+        }
+    }
+
+    /**
+     * Возвращает количество записей, включая еще не удаленные записи собранных слушателей.
+     *
+     * @return Количество записей.
+     */
+    public int size() {
+        return entries.get().length;
+    }
+
+    /**
+     * Проверяет, пуст ли список.
+     *
+     * @return true, если записей нет.
+     */
+    public boolean isEmpty() {
+        return entries.get().length == 0;
+    }
+
+    /**
+     * Добавляет запись в конец массива.
+     *
+     * @param entry Новая запись.
+     */
+    private void append(Entry<T> entry) {
+        while (true) {
+            Entry<T>[] current = entries.get();
+            Entry<T>[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = entry;
+            if (entries.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Удаляет записи заданного слушателя и записи собранных слушателей.
+     *
+     * @param listener Слушатель или null, чтобы удалить только записи собранных слушателей.
+     */
+    private void removeIf(T listener) {
+        while (true) {
+            Entry<T>[] current = entries.get();
+            Entry<T>[] updated = Arrays.copyOf(current, current.length);
+            int count = 0;
+            for (Entry<T> entry : current) {
+                T existing = entry.get();
+                if (existing != null && existing != listener) {
+                    updated[count++] = entry;
+                }
+            }
+            if (count == current.length) {
+                return;
+            }
+            if (entries.compareAndSet(current, Arrays.copyOf(updated, count))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает пустой массив записей нужного типа.
+     *
+     * @param <T> Тип слушателя.
+     * @return Пустой массив.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] empty() {
+        return (Entry<T>[]) EMPTY;
+    }
+}
@@ -0,0 +1,83 @@
+package gui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+
+/**
+ * Замер времени кадра {@link MultiRobotVisualizer}: миллисекунд на полную перерисовку панели 1920x1080
+ * при разных уровнях масштаба, от полных эллипсов до карты плотности.
+ * <p>
+ * Запуск: {@code java -Djava.awt.headless=true -cp target/classes:target/test-classes gui.MultiRobotVisualizerBenchmark [роботов]}.
+ * Для 60 кадров в секунду время кадра не должно превышать 16,7 мс.
+ * </p>
+ */
+public class MultiRobotVisualizerBenchmark {
+
+    /**
+     * Ширина панели.
+     */
+    private static final int WIDTH = 1920;
+
+    /**
+     * Высота панели.
+     */
+    private static final int HEIGHT = 1080;
+
+    /**
+     * Уровни масштаба в замере: от крупного к мелкому.
+     */
+    private static final int[] ZOOM_LEVELS = {8, 4, 0, -4, -8, -12};
+
+    /**
+     * Количество кадров на уровень масштаба.
+     */
+    private static final int FRAMES = 100;
+
+    /**
+     * Точка входа замера.
+     *
+     * @param args Необязательное количество роботов (по умолчанию 50000).
+     */
+    public static void main(String[] args) {
+        int robots = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        RobotSwarm swarm = new RobotSwarm(robots, WIDTH, HEIGHT, 1);
+        MultiRobotVisualizer visualizer = new MultiRobotVisualizer(swarm);
+        visualizer.setSize(WIDTH, HEIGHT);
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Point center = new Point(WIDTH / 2, HEIGHT / 2);
+
+        // Прогрев
+        for (int zoomLevel : ZOOM_LEVELS) {
+            visualizer.setZoomLevel(zoomLevel, center);
+            run(visualizer, frame, FRAMES / 4);
+        }
+        for (int zoomLevel : ZOOM_LEVELS) {
+            visualizer.setZoomLevel(zoomLevel, center);
+            System.out.printf(Locale.ROOT, "robots=%d zoomLevel=%d %.2f ms/frame%n",
+                    robots, visualizer.getZoomLevel(), run(visualizer, frame, FRAMES));
+        }
+    }
+
+    /**
+     * Перерисовывает панель целиком заданное количество раз.
+     *
+     * @param visualizer Визуализатор роя.
+     * @param frame      Изображение, в которое рисуется кадр.
+     * @param frames     Количество кадров.
+     * @return Среднее время кадра в миллисекундах.
+     */
+    private static double run(MultiRobotVisualizer visualizer, BufferedImage frame, int frames) {
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            Graphics2D g = frame.createGraphics();
+            try {
+                g.setClip(0, 0, WIDTH, HEIGHT);
+                visualizer.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / frames;
+    }
+}
@@ -0,0 +1,95 @@
+package gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Замер пропускной способности {@link ReplayExporter}: кадров в секунду при экспорте в PNG 1920x1080.
+ * <p>
+ * Запуск: {@code java -Djava.awt.headless=true -cp target/classes:target/test-classes gui.ReplayExportBenchmark [кадров]}.
+ * Повтор экспортируется сначала в одном потоке, затем во всех доступных процессорах.
+ * </p>
+ */
+public class ReplayExportBenchmark {
+
+    /**
+     * Ширина кадра.
+     */
+    private static final int WIDTH = 1920;
+
+    /**
+     * Высота кадра.
+     */
+    private static final int HEIGHT = 1080;
+
+    /**
+     * Частота кадров повтора.
+     */
+    private static final double FRAMES_PER_SECOND = 30;
+
+    /**
+     * Точка входа замера.
+     *
+     * @param args Необязательное количество кадров (по умолчанию 300).
+     * @throws Exception Если экспорт не удался.
+     */
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        List<RobotPose> session = createSession(frames);
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        // Прогрев
+        run(session.subList(0, Math.min(session.size(), 30)), processors);
+        for (int threads : new int[]{1, processors}) {
+            long start = System.nanoTime();
+            int exported = run(session, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "threads=%d frames=%d %.1f frames/s%n", threads, exported, exported / seconds);
+        }
+    }
+
+    /**
+     * Создает повтор, в котором робот едет по окружности.
+     *
+     * @param frames Количество кадров повтора.
+     * @return Положения робота.
+     */
+    private static List<RobotPose> createSession(int frames) {
+        List<RobotPose> session = new ArrayList<>();
+        long frameNanos = (long) (1_000_000_000L / FRAMES_PER_SECOND);
+        for (int i = 0; i < frames; i++) {
+            double angle = 2 * Math.PI * i / frames;
+            session.add(new RobotPose(WIDTH / 2.0 + 400 * Math.cos(angle), HEIGHT / 2.0 + 400 * Math.sin(angle),
+                    angle + Math.PI / 2, i * frameNanos));
+        }
+        return session;
+    }
+
+    /**
+     * Экспортирует повтор во временный каталог и удаляет его.
+     *
+     * @param session Положения робота.
+     * @param threads Количество потоков.
+     * @return Количество кадров.
+     * @throws IOException          Если экспорт не удался.
+     * @throws InterruptedException Если поток был прерван.
+     */
+    private static int run(List<RobotPose> session, int threads) throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory("replay-benchmark").toFile();
+        try {
+            return new ReplayExporter(WIDTH, HEIGHT, FRAMES_PER_SECOND, threads).exportPngSequence(session, directory);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package log;
+
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Замер конкурентной записи в протокол: сообщений в секунду при 1, 2, 4, 8, 16 и 32 пишущих потоках.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes log.LogRingBufferBenchmark [сообщений на поток]}.
+ * Замеряется сам кольцевой буфер {@link LogRingBuffer}, без сворачивания повторов и ограничителя
+ * частоты источника окна: иначе одинаковые сообщения сворачивались бы в одну запись.
+ * Для сравнения тот же объем пишется в связный список под монитором, как было раньше
+ * в {@link LogWindowSource}.
+ * </p>
+ */
+public class LogRingBufferBenchmark {
+
+    /**
+     * Размер протокола в замере.
+     */
+    private static final int QUEUE_LENGTH = 1 << 16;
+
+    /**
+     * Числа пишущих потоков.
+     */
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    /**
+     * Запись одного сообщения в проверяемое хранилище.
+     */
+    private interface Writer {
+        void append(LogLevel logLevel, String strMessage);
+    }
+
+    /**
+     * Точка входа замера.
+     *
+     * @param args Необязательное количество сообщений на поток (по умолчанию 200000).
+     * @throws InterruptedException Если поток был прерван.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int messagesPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        // Прогрев
+        run(new LogRingBuffer(QUEUE_LENGTH)::append, 4, messagesPerThread / 4);
+        run(lockedList(), 4, messagesPerThread / 4);
+
+        for (int threads : THREAD_COUNTS) {
+            double ring = run(new LogRingBuffer(QUEUE_LENGTH)::append, threads, messagesPerThread);
+            double locked = run(lockedList(), threads, messagesPerThread);
+            System.out.printf(Locale.ROOT, "threads=%d ring=%.2f M/s locked list=%.2f M/s%n",
+                    threads, ring / 1e6, locked / 1e6);
+        }
+    }
+
+    /**
+     * Создает хранилище, повторяющее прежнюю реализацию: связный список под монитором.
+     *
+     * @return Запись в связный список.
+     */
+    private static Writer lockedList() {
+        LinkedList<LogEntry> messages = new LinkedList<>();
+        return (logLevel, strMessage) -> {
+            LogEntry entry = new LogEntry(logLevel, strMessage);
+            synchronized (messages) {
+                if (messages.size() >= QUEUE_LENGTH) {
+                    messages.removeFirst();
+                }
+                messages.addLast(entry);
+            }
+        };
+    }
+
+    /**
+     * Запускает пишущие потоки одновременно и ждет их завершения.
+     *
+     * @param writer            Хранилище.
+     * @param threads           Количество пишущих потоков.
+     * @param messagesPerThread Количество сообщений на поток.
+     * @return Сообщений в секунду.
+     * @throws InterruptedException Если поток был прерван.
+     */
+    private static double run(Writer writer, int threads, int messagesPerThread) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        writer.append(LogLevel.Debug, "benchmark");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return (double) threads * messagesPerThread / seconds;
+    }
+}
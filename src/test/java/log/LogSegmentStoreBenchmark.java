@@ -0,0 +1,101 @@
+package log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Замер {@link LogSegmentStore}: частота добавления записей и скорость чтения истории.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes log.LogSegmentStoreBenchmark [записей]}.
+ * Хранилище создается во временном каталоге с сегментами по 16 МБ, чтобы замер захватил смену
+ * сегментов и удаление по объему. После добавления читается вся сохраненная история без копирования
+ * сообщений и случайные страницы по 256 записей через разреженный индекс.
+ * </p>
+ */
+public class LogSegmentStoreBenchmark {
+
+    /**
+     * Размер сегмента в замере.
+     */
+    private static final int SEGMENT_BYTES = 16 << 20;
+
+    /**
+     * Объем хранения в замере.
+     */
+    private static final long RETENTION_BYTES = 256L << 20;
+
+    /**
+     * Количество страниц, читаемых в случайном порядке.
+     */
+    private static final int RANDOM_PAGES = 10_000;
+
+    /**
+     * Размер страницы при случайном чтении.
+     */
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * Точка входа замера.
+     *
+     * @param args Необязательное количество записей (по умолчанию 5000000).
+     * @throws IOException Если не удалось создать временный каталог.
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path directory = Files.createTempDirectory("log-store-benchmark");
+        try {
+            LogSegmentStore store = new LogSegmentStore(directory, SEGMENT_BYTES, LogSegmentStore.DEFAULT_SEGMENT_MILLIS,
+                    RETENTION_BYTES, LogSegmentStore.DEFAULT_RETENTION_MILLIS);
+
+            long appendStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                store.append(new LogEntry(i, LogClock.currentTimeNanos(), LogLevel.values()[i % 6],
+                        "Робот переместился в точку " + i));
+            }
+            store.flush();
+            double appendSeconds = (System.nanoTime() - appendStart) / 1e9;
+            System.out.printf(Locale.ROOT, "append %.0f entries/s, stored %d..%d, %d MB%n", count / appendSeconds,
+                    store.getOldestSequence(), store.getNextSequence(), store.getUsedBytes() >> 20);
+
+            long[] bytes = new long[1];
+            long scanStart = System.nanoTime();
+            store.read(store.getOldestSequence(), store.getNextSequence(), (sequence, timestampNanos, level, message) -> {
+                bytes[0] += message.remaining();
+                return true;
+            });
+            double scanSeconds = (System.nanoTime() - scanStart) / 1e9;
+            long stored = store.getNextSequence() - store.getOldestSequence();
+            System.out.printf(Locale.ROOT, "scan %.0f entries/s, %.0f MB/s%n", stored / scanSeconds,
+                    bytes[0] / scanSeconds / (1 << 20));
+
+            Random random = new Random(1);
+            long pageStart = System.nanoTime();
+            long pageEntries = 0;
+            for (int i = 0; i < RANDOM_PAGES; i++) {
+                long from = store.getOldestSequence() + (long) (random.nextDouble() * (stored - PAGE_SIZE));
+                pageEntries += store.read(from, from + PAGE_SIZE).size();
+            }
+            double pageMicros = (System.nanoTime() - pageStart) / 1e3 / RANDOM_PAGES;
+            System.out.printf(Locale.ROOT, "random page of %d: %.1f us (%d entries read)%n", PAGE_SIZE, pageMicros, pageEntries);
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Удаляет временный каталог замера со всем содержимым.
+     *
+     * @param directory Каталог.
+     * @throws IOException Если каталог не удалось обойти.
+     */
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
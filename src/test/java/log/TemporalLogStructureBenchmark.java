@@ -0,0 +1,80 @@
+package log;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Замер {@link TemporalLogStructure} при потоке 100000 записей в секунду.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes log.TemporalLogStructureBenchmark [секунд]}.
+ * Записи добавляются равномерно с заданной частотой в структуру с окном в одну секунду; каждую секунду
+ * печатаются среднее время добавления, размер структуры и время его вычисления. В конце замеряется
+ * наибольшая частота добавления без ограничения.
+ * </p>
+ */
+public class TemporalLogStructureBenchmark {
+
+    /**
+     * Частота добавления записей в секунду.
+     */
+    private static final int ENTRIES_PER_SECOND = 100_000;
+
+    /**
+     * Длительность окна хранения в миллисекундах.
+     */
+    private static final long WINDOW_MILLIS = 1000;
+
+    /**
+     * Количество записей, добавляемых за одну порцию.
+     */
+    private static final int BATCH = 100;
+
+    /**
+     * Точка входа замера.
+     *
+     * @param args Необязательная длительность замера в секундах (по умолчанию 10).
+     */
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        TemporalLogStructure structure = new TemporalLogStructure(WINDOW_MILLIS);
+
+        long batchNanos = 1_000_000_000L * BATCH / ENTRIES_PER_SECOND;
+        long start = System.nanoTime();
+        long nextBatch = start;
+        long appendNanos = 0;
+        long appended = 0;
+        for (int second = 1; second <= seconds; second++) {
+            long secondEnd = start + second * 1_000_000_000L;
+            while (System.nanoTime() < secondEnd) {
+                long batchStart = System.nanoTime();
+                for (int i = 0; i < BATCH; i++) {
+                    structure.append(LogLevel.values()[i % 6], "benchmark");
+                }
+                long batchEnd = System.nanoTime();
+                appendNanos += batchEnd - batchStart;
+                appended += BATCH;
+                // Расписание не сдвигается от задержек: отставшие порции догоняются без паузы
+                nextBatch += batchNanos;
+                long wait = nextBatch - batchEnd;
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long sizeStart = System.nanoTime();
+            int size = structure.size();
+            long sizeNanos = System.nanoTime() - sizeStart;
+            System.out.printf(Locale.ROOT, "second=%d appended=%d avg append=%.0f ns size=%d size()=%d ns%n",
+                    second, appended, (double) appendNanos / appended, size, sizeNanos);
+            appendNanos = 0;
+            appended = 0;
+        }
+
+        long count = 2_000_000;
+        long unthrottledStart = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            structure.append(LogLevel.Debug, "benchmark");
+        }
+        double unthrottledSeconds = (System.nanoTime() - unthrottledStart) / 1e9;
+        System.out.printf(Locale.ROOT, "unthrottled %.0f entries/s, size=%d%n", count / unthrottledSeconds, structure.size());
+    }
+}